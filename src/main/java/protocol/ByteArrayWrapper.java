@@ -1,6 +1,6 @@
 package protocol;
 
-import org.bouncycastle.crypto.digests.SHA3Digest;
+import protocol.hash.HashProviders;
 import protocol.random.RandomCustom;
 
 import java.util.Arrays;
@@ -78,16 +78,12 @@ public class ByteArrayWrapper {
     }
 
     /**
-     * Hash byte array data using Sha3-256 digest.
+     * Hash byte array data using Sha3-256 digest of the default {@link protocol.hash.HashProvider}.
      *
      * @return hash as byte[] object
      */
     public byte[] hash() {
-        byte[] hash = new byte[32];
-        SHA3Digest sha3Digest256 = new SHA3Digest(256);
-        sha3Digest256.update(data, 0, data.length);
-        sha3Digest256.doFinal(hash, 0);
-        return hash;
+        return HashProviders.getDefault().sha3256(data, 0, data.length);
     }
 
     /**
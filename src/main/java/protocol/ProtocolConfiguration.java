@@ -1,5 +1,7 @@
 package protocol;
 
+import protocol.random.SamplingMode;
+
 import java.math.BigInteger;
 
 /**
@@ -14,6 +16,8 @@ import java.math.BigInteger;
  *                     Must be prime so that generator exists, and we can compute n-root of one in NTT</li>
  *   <li>{@code eta} – {@code int}, bounds error polynomial values in range [-eta; +eta], sampled from a Centered
  *                                  Binomial Distribution</li>
+ *   <li>{@code samplingMode} – {@code SamplingMode}, primitive used to expand seeds into polynomials;
+ *                              SHAKE unless set otherwise</li>
  * </ul>
  *
  * <p>These parameters are set at the beginning and everything in the protocol is set according to that setting.</p>
@@ -25,11 +29,17 @@ public class ProtocolConfiguration {
     private final int n;
     private final BigInteger q;
     private final int eta;
+    private final SamplingMode samplingMode;
 
     public ProtocolConfiguration(int n, BigInteger q, int eta) {
+        this(n, q, eta, SamplingMode.SHAKE);
+    }
+
+    public ProtocolConfiguration(int n, BigInteger q, int eta, SamplingMode samplingMode) {
         this.n = n;
         this.q = q;
         this.eta = eta;
+        this.samplingMode = samplingMode;
     }
 
     public int getN() {
@@ -43,4 +53,8 @@ public class ProtocolConfiguration {
     public int getEta() {
         return eta;
     }
+
+    public SamplingMode getSamplingMode() {
+        return samplingMode;
+    }
 }
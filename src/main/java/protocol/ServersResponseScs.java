@@ -1,8 +1,11 @@
 package protocol;
 
 import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PackedPolynomialCodec;
 import protocol.server.SessionConfigurationServer;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,6 +22,11 @@ import java.util.List;
  *     <li>{@code scs}   - {@code SessionConfigurationServer}, server's session configuration</li>
  * </ul>
  *
+ * <p>Salt, {@code pjNtt} and {@code wj} have a binary wire form, written by {@link #writeTo(ByteBuffer, PackedPolynomialCodec)}
+ * and read by {@link #readFrom(ByteBuffer, PackedPolynomialCodec, SessionConfigurationServer)}: salt as unsigned
+ * {@code short} length and bytes, {@code pjNtt} bit-packed by {@link PackedPolynomialCodec} and {@code wj} as one bit
+ * per Signal function output, the lowest bit of a byte first. Server's session configuration is not part of it.</p>
+ *
  * @author Martin Zimka
  */
 public class ServersResponseScs {
@@ -60,4 +68,81 @@ public class ServersResponseScs {
     public SessionConfigurationServer getScs() {
         return scs;
     }
+
+    /**
+     * @param codec codec of server's ephemeral public keys
+     * @return number of bytes of the wire form of a response with a salt of {@code saltLength} bytes
+     */
+    public static int getEncodedLength(PackedPolynomialCodec codec, int saltLength) {
+        return Short.BYTES + saltLength + codec.getPackedLength() + (codec.getN() + 7) / 8;
+    }
+
+    /**
+     * Writes the wire form of salt, {@code pjNtt} and {@code wj} at the position of {@code out}
+     * and advances the position past it.
+     *
+     * @param out buffer with at least {@link #getEncodedLength(PackedPolynomialCodec, int)} bytes remaining
+     * @param codec codec of server's ephemeral public keys
+     * @throws IllegalArgumentException if the salt is too long or a Signal function output is not 0 or 1
+     */
+    public void writeTo(ByteBuffer out, PackedPolynomialCodec codec) {
+        byte[] saltData = salt.getData();
+        if (saltData.length > 0xFFFF) {
+            throw new IllegalArgumentException("Salt is too long for the wire form");
+        }
+        out.putShort((short) saltData.length);
+        out.put(saltData);
+        pjNtt.writeTo(out, codec);
+        int packed = 0;
+        for (int i = 0; i < wj.size(); i++) {
+            int w = wj.get(i);
+            if (w != 0 && w != 1) {
+                throw new IllegalArgumentException("Signal function output is not a bit");
+            }
+            packed |= w << (i & 7);
+            if ((i & 7) == 7) {
+                out.put((byte) packed);
+                packed = 0;
+            }
+        }
+        if ((wj.size() & 7) != 0) {
+            out.put((byte) packed);
+        }
+    }
+
+    /**
+     * Reads the wire form of salt, {@code pjNtt} and {@code wj} from the position of {@code in}
+     * and advances the position past it. The polynomial is decoded straight from the buffer.
+     *
+     * @param in buffer positioned at the wire form
+     * @param codec codec of server's ephemeral public keys
+     * @param scs server's session configuration of the response
+     * @return decoded response
+     * @throws IllegalArgumentException if the wire form is truncated or malformed
+     */
+    public static ServersResponseScs readFrom(ByteBuffer in, PackedPolynomialCodec codec, SessionConfigurationServer scs) {
+        int n = codec.getN();
+        if (in.remaining() < Short.BYTES) {
+            throw new IllegalArgumentException("Wire form of server's response is truncated");
+        }
+        int saltLength = Short.toUnsignedInt(in.getShort());
+        if (in.remaining() < saltLength + codec.getPackedLength() + (n + 7) / 8) {
+            throw new IllegalArgumentException("Wire form of server's response is truncated");
+        }
+        byte[] saltData = new byte[saltLength];
+        in.get(saltData);
+        NttPolynomial pjNtt = NttPolynomial.readFrom(in, codec);
+        List<Integer> wj = new ArrayList<>(n);
+        int packed = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i & 7) == 0) {
+                packed = in.get() & 0xFF;
+            }
+            wj.add((packed >>> (i & 7)) & 1);
+        }
+        if ((n & 7) != 0 && packed >>> (n & 7) != 0) {
+            throw new IllegalArgumentException("Padding bits of Signal function outputs are not zero");
+        }
+        return new ServersResponseScs(new ByteArrayWrapper(saltData), pjNtt, wj, scs);
+    }
 }
@@ -0,0 +1,43 @@
+package protocol.client;
+
+import protocol.polynomial.NttPolynomial;
+
+/**
+ * The {@code ClientEphemeralKey} class represents the part of the client's login computation
+ * that does not depend on anything received from the server.
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code s1Ntt}            – {@code NttPolynomial}, client's ephemeral secret s1</li>
+ *   <li>{@code piNtt}            – {@code NttPolynomial}, client's ephemeral public key pi = as1 + 2e1</li>
+ *   <li>{@code e1DoublePrimeNtt} – {@code NttPolynomial}, error polynomial e1''</li>
+ * </ul>
+ *
+ * <p>Every instance must be used for one login only.</p>
+ *
+ * @author Martin Zimka
+ */
+final class ClientEphemeralKey {
+
+    private final NttPolynomial s1Ntt;
+    private final NttPolynomial piNtt;
+    private final NttPolynomial e1DoublePrimeNtt;
+
+    ClientEphemeralKey(NttPolynomial s1Ntt, NttPolynomial piNtt, NttPolynomial e1DoublePrimeNtt) {
+        this.s1Ntt = s1Ntt;
+        this.piNtt = piNtt;
+        this.e1DoublePrimeNtt = e1DoublePrimeNtt;
+    }
+
+    NttPolynomial getS1Ntt() {
+        return s1Ntt;
+    }
+
+    NttPolynomial getPiNtt() {
+        return piNtt;
+    }
+
+    NttPolynomial getE1DoublePrimeNtt() {
+        return e1DoublePrimeNtt;
+    }
+}
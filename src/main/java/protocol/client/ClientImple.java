@@ -8,10 +8,19 @@ import protocol.polynomial.ClassicalPolynomial;
 import protocol.polynomial.NttPolynomial;
 import protocol.polynomial.PolynomialConfig;
 import protocol.random.RandomCustom;
+import protocol.server.AsyncServer;
+import protocol.server.ExecutorAsyncServer;
 import protocol.server.Server;
 
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 import static protocol.polynomial.Utils.*;
@@ -25,6 +34,18 @@ import static protocol.polynomial.Utils.*;
  * <p>This class provides methods for client enrollment and login via
  * {@link #enroll(ClientsKnowledge)} and {@link #login(ClientsKnowledge)}.</p>
  *
+ * <p>{@link #loginAsync(ClientsKnowledge)} is the asynchronous variant of the login. It takes ephemeral keys
+ * (s1, pi, e1'') generated ahead of time on the client's {@code Executor}, so the first message is sent to the server
+ * without any computation, and computes {@code u} and the salt-dependent {@code sv, ev} in parallel.
+ * Up to {@code ephemeralKeyDepth} ephemeral keys are kept ready.</p>
+ *
+ * <p>The client talks either to a blocking {@link Server} or to an {@link AsyncServer}. With an {@code AsyncServer},
+ * {@link #loginAsync(ClientsKnowledge)} does not block any thread while waiting for the server's responses;
+ * a {@code Server} is called directly on the thread running the login, unless it is an {@code AsyncServer} too.</p>
+ *
+ * <p>The public seed of a client never changes, so its public polynomial {@code a} is expanded at most once
+ * (at the first login) and kept for all following logins.</p>
+ *
  * <p>Parameters:</p>
  * <ul>
  *   <li>{@code PUBLICSEEDFORASIZE} – {@code int}, size of the public seed generated by the client,
@@ -39,22 +60,68 @@ public class ClientImple {
     private static final int PUBLICSEEDFORASIZE = 32;  // Size could be changed however you wish.
     private static final int SALTSIZE = 32;  // Size could be changed however you wish.
 
-    private final Server server;
+    private final AsyncServer server;
     private final RandomCustom randomCustomImple;
     private final int n;
     private final ByteArrayWrapper publicSeedForA;
     private final Ding12Imple ding12;
     private final PolynomialConfig polynomialConfig;
+    private volatile NttPolynomial aNtt;  // expanded from publicSeedForA lazily
+    private final Executor executor;
+    private final Queue<CompletableFuture<ClientEphemeralKey>> ephemeralKeys = new ConcurrentLinkedQueue<>();
 
+    /**
+     * @param random object of a class implementing {@link RandomCustom}, must use the server's sampling mode
+     * @param server server the client enrolls to and logs in
+     * @throws IllegalArgumentException if {@code random} uses different sampling mode than the server
+     */
     public ClientImple(RandomCustom random, Server server) {
+        this(random, server, ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * @param random object of a class implementing {@link RandomCustom}, must use the server's sampling mode
+     *               and must be thread-safe
+     * @param server server the client enrolls to and logs in, called through its asynchronous methods
+     *               if it is an {@link AsyncServer} too
+     * @param executor executor of the asynchronous login and of the generation of ephemeral keys
+     * @param ephemeralKeyDepth number of ephemeral keys generated ahead of time for {@link #loginAsync(ClientsKnowledge)}
+     * @throws IllegalArgumentException if {@code random} uses different sampling mode than the server
+     *                                  or {@code ephemeralKeyDepth} is negative
+     */
+    public ClientImple(RandomCustom random, Server server, Executor executor, int ephemeralKeyDepth) {
+        this(random, server instanceof AsyncServer asyncServer ? asyncServer : new ExecutorAsyncServer(server, Runnable::run),
+                executor, ephemeralKeyDepth);
+    }
+
+    /**
+     * @param random object of a class implementing {@link RandomCustom}, must use the server's sampling mode
+     *               and must be thread-safe
+     * @param server asynchronous server the client enrolls to and logs in
+     * @param executor executor of the asynchronous login and of the generation of ephemeral keys
+     * @param ephemeralKeyDepth number of ephemeral keys generated ahead of time for {@link #loginAsync(ClientsKnowledge)}
+     * @throws IllegalArgumentException if {@code random} uses different sampling mode than the server
+     *                                  or {@code ephemeralKeyDepth} is negative
+     */
+    public ClientImple(RandomCustom random, AsyncServer server, Executor executor, int ephemeralKeyDepth) {
+        if (ephemeralKeyDepth < 0) {
+            throw new IllegalArgumentException("Number of ephemeral keys generated ahead of time must not be negative");
+        }
         this.server = server;
+        this.executor = executor;
         ProtocolConfiguration protocolConfiguration = server.getProtocolConfiguration();
+        if (random.getSamplingMode() != protocolConfiguration.getSamplingMode()) {
+            throw new IllegalArgumentException("RandomCustom must use the sampling mode of the server");
+        }
         this.n = protocolConfiguration.getN();
         BigInteger q = protocolConfiguration.getQ();
         this.randomCustomImple = random;
         this.publicSeedForA = new ByteArrayWrapper(randomCustomImple, PUBLICSEEDFORASIZE);
         this.polynomialConfig = new PolynomialConfig(this.n, q);
         this.ding12 = new Ding12Imple(q);
+        for (int i = 0; i < ephemeralKeyDepth; i++) {
+            ephemeralKeys.add(CompletableFuture.supplyAsync(this::generateEphemeralKey, executor));
+        }
     }
 
     private ByteArrayWrapper computeSeed1(ClientsKnowledge ck, ByteArrayWrapper salt) {
@@ -64,70 +131,128 @@ public class ClientImple {
         return salt.concatWith(identity.concatWith(password).hashWrapped()).hashWrapped();
     }
 
-    private NttPolynomial computeVNttFromANttAndSalt(ClientsKnowledge ck, NttPolynomial aNtt, ByteArrayWrapper salt) {
-        // v = asv + 2ev //
+    private List<NttPolynomial> computeSvEvNtt(ClientsKnowledge ck, ByteArrayWrapper salt) {
         // Compute seeds.
         ByteArrayWrapper seed1 = computeSeed1(ck, salt);
         ByteArrayWrapper seed2 = seed1.hashWrapped();
-        // Based on seeds (computed from private values) generate sv, ev.
-        NttPolynomial svNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple, seed1);
-        NttPolynomial evNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple, seed2);
+        // Based on seeds (computed from private values) generate sv, ev together.
+        return generateRandomErrorPolysNtt(polynomialConfig, randomCustomImple, List.of(seed1, seed2));
+    }
+
+    private NttPolynomial computeVNttFromANttAndSalt(ClientsKnowledge ck, NttPolynomial aNtt, ByteArrayWrapper salt) {
+        // v = asv + 2ev //
+        List<NttPolynomial> svEvNtt = computeSvEvNtt(ck, salt);
         // Do all the math.
         NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
-        return multiply2NttTuplesAddThemTogetherNtt(aNtt, svNtt, constantTwoPolyNtt, evNtt);
+        return multiply2NttTuplesAddThemTogetherNtt(aNtt, svEvNtt.get(0), constantTwoPolyNtt, svEvNtt.get(1));
     }
 
-    private SessionConfigurationClient computeSharedSecret(ClientsKnowledge ck) {
+    private NttPolynomial computeVNttFromPublicSeedAndSalt(ClientsKnowledge ck, ByteArrayWrapper salt) {
+        // v = asv + 2ev //
+        List<NttPolynomial> svEvNtt = computeSvEvNtt(ck, salt);
+        // Do all the math. Polynomial a is created from public seed on the fly.
+        NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
+        return multiply2NttTuplesAddThemTogetherNtt(polynomialConfig, randomCustomImple, publicSeedForA, svEvNtt.get(0), constantTwoPolyNtt, svEvNtt.get(1));
+    }
+
+    private NttPolynomial getANtt() {
+        NttPolynomial result = aNtt;
+        if (result == null) {  // Expansion is deterministic, concurrent first logins may both expand it.
+            result = generateUniformPolyNtt(polynomialConfig, randomCustomImple, publicSeedForA);
+            aNtt = result;
+        }
+        return result;
+    }
+
+    private ClientEphemeralKey generateEphemeralKey() {
         NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
         // pi = as1 + 2e1 //
-        // Create polynomial a from public seed.
-        NttPolynomial aNtt = generateUniformPolyNtt(polynomialConfig, randomCustomImple, publicSeedForA);
-        // Compute s1.
-        NttPolynomial s1Ntt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
-        // Compute e1.
-        NttPolynomial e1Ntt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
+        // Polynomial a is used twice (for pi and v) and in every login, so it is materialized once and kept.
+        NttPolynomial aNtt = getANtt();
+        // Compute s1, e1 and e1'' (needed later) together.
+        List<NttPolynomial> errorPolysNtt = generateRandomErrorPolysNtt(polynomialConfig, randomCustomImple, 3);
+        NttPolynomial s1Ntt = errorPolysNtt.get(0);
+        NttPolynomial e1Ntt = errorPolysNtt.get(1);
         // Do all the math.
         NttPolynomial piNtt = multiply2NttTuplesAddThemTogetherNtt(aNtt, s1Ntt, constantTwoPolyNtt, e1Ntt);
+        return new ClientEphemeralKey(s1Ntt, piNtt, errorPolysNtt.get(2));
+    }
+
+    private SessionConfigurationClient computeSharedSecret(ClientsKnowledge ck) {
+        ClientEphemeralKey ephemeralKey = generateEphemeralKey();
         // Send identity and ephemeral public key pi in NTT form to the server. //
         // Receive salt, ephemeral public key pj in NTT form and wj. //
-        ServersResponseScs serversResponseScs = server.computeSharedSecret(ck.getIdentity(), piNtt);
+        ServersResponseScs serversResponseScs = await(server.computeSharedSecretAsync(ck.getIdentity(), ephemeralKey.getPiNtt()));
         if (serversResponseScs == null) {  // Client was not found in the server's database.
             return null;
         }
-        ByteArrayWrapper salt = serversResponseScs.getSalt();
+        // u = XOF(H(pi || pj)) //
+        NttPolynomial uNtt = computeUNtt(polynomialConfig, randomCustomImple, ephemeralKey.getPiNtt(), serversResponseScs.getPjNtt());
+        // Compute sv, ev.
+        List<NttPolynomial> svEvNtt = computeSvEvNtt(ck, serversResponseScs.getSalt());
+        return computeSharedSecret(ephemeralKey, serversResponseScs, uNtt, svEvNtt);
+    }
+
+    /**
+     * Takes one ephemeral key generated ahead of time (or starts generating a new one) and starts generating
+     * its replacement, so that {@code ephemeralKeyDepth} keys are kept ready.
+     */
+    private CompletableFuture<ClientEphemeralKey> takeEphemeralKey() {
+        CompletableFuture<ClientEphemeralKey> ephemeralKey = ephemeralKeys.poll();
+        if (ephemeralKey == null) {
+            return CompletableFuture.supplyAsync(this::generateEphemeralKey, executor);
+        }
+        ephemeralKeys.add(CompletableFuture.supplyAsync(this::generateEphemeralKey, executor));
+        return ephemeralKey;
+    }
+
+    private SessionConfigurationClient computeSharedSecret(ClientEphemeralKey ephemeralKey, ServersResponseScs serversResponseScs,
+                                                           NttPolynomial uNtt, List<NttPolynomial> svEvNtt) {
+        NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
+        NttPolynomial piNtt = ephemeralKey.getPiNtt();
         NttPolynomial pjNtt = serversResponseScs.getPjNtt();
         List<Integer> wj = serversResponseScs.getWj();
-        // u = XOF(H(pi || pj)) //
-        NttPolynomial uNtt = computeUNtt(polynomialConfig, randomCustomImple, piNtt, pjNtt);
         // v = asv + 2ev //
-        NttPolynomial vNtt = computeVNttFromANttAndSalt(ck, aNtt, salt);
+        // Salt-dependent sv and ev are derived once and sv is reused below.
+        NttPolynomial svNtt = svEvNtt.get(0);
+        NttPolynomial vNtt = multiply2NttTuplesAddThemTogetherNtt(getANtt(), svNtt, constantTwoPolyNtt, svEvNtt.get(1));
         // ki = (pj − v)(sv + s1) + uv + 2e1'' //
-        // Compute e1''.
-        NttPolynomial e1DoublePrimeNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
-        // Compute sv.
-        NttPolynomial svNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple, computeSeed1(ck, salt));
+        NttPolynomial e1DoublePrimeNtt = ephemeralKey.getE1DoublePrimeNtt();
         // Do all the math.
         NttPolynomial fstBracket = pjNtt.subtract(vNtt);
-        NttPolynomial sndBracket = svNtt.add(s1Ntt);
+        NttPolynomial sndBracket = svNtt.add(ephemeralKey.getS1Ntt());
         ClassicalPolynomial ki = multiply3NttTuplesAndAddThemTogether(polynomialConfig, fstBracket, sndBracket, uNtt, vNtt, constantTwoPolyNtt, e1DoublePrimeNtt);
         // sigmai = Mod_2(ki, wj) //
         List<Integer> sigmai = IntStream.range(0, n).mapToObj(i -> ding12.robustExtractor(ki.getCoefficients().get(i), wj.get(i))).toList();
         // ski = SHA3-256(sigmai) //
         ByteArrayWrapper ski = new ByteArrayWrapper(sigmai).hashWrapped();
-        return new SessionConfigurationClient(piNtt, pjNtt, ski, serversResponseScs.getScs());
-    }
-
-    private LoginResponse verifyKeysEntities(SessionConfigurationClient scs) {
-        NttPolynomial piNtt = scs.getClientsEphPubKey();
-        NttPolynomial pjNtt = scs.getServersEphPubKey();
-        ByteArrayWrapper ski = scs.getSharedSecret();
+        // Compute M1 and M2 now, so the session does not need to keep pi and pj.
+        ByteArrayWrapper piBytes = piNtt.toByteArrayWrapper();
         // M1 = SHA3-256(pi || pj || ski) //
-        ByteArrayWrapper m1 = piNtt.concatWith(pjNtt).toByteArrayWrapper().concatWith(ski).hashWrapped();
+        ByteArrayWrapper m1 = piBytes.concatWith(pjNtt.toByteArrayWrapper()).concatWith(ski).hashWrapped();
         // M2 = SHA3-256(pi || M1 || ski) //
-        ByteArrayWrapper m2Prime = server.verifyKeysEntities(scs.getServersSessionConfiguration(), m1);
-        ByteArrayWrapper m2 = piNtt.toByteArrayWrapper().concatWith(m1).concatWith(ski).hashWrapped();
-        // VERIFY that M2 == M2'.
-        return new LoginResponse(m2.equals(m2Prime), ski);
+        ByteArrayWrapper m2 = piBytes.concatWith(m1).concatWith(ski).hashWrapped();
+        return new SessionConfigurationClient(m1, m2, ski, serversResponseScs.getScs());
+    }
+
+    private CompletionStage<LoginResponse> verifyKeysEntities(SessionConfigurationClient scs) {
+        return server.verifyKeysEntitiesAsync(scs.getServersSessionConfiguration(), scs.getM1())
+                // VERIFY that M2 == M2'.
+                .thenApply(m2Prime -> new LoginResponse(scs.getExpectedM2().equals(m2Prime), scs.getSharedSecret()));
+    }
+
+    /**
+     * Waits for the stage of a server's method and throws its failure as the method would throw it.
+     */
+    private static <T> T await(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -151,14 +276,15 @@ public class ClientImple {
     public void enroll(ClientsKnowledge ck) {
         // PHASE 0 //
         // v = asv + 2ev //
-        // Create polynomial a from public seed.
-        NttPolynomial aNtt = generateUniformPolyNtt(polynomialConfig, randomCustomImple, publicSeedForA);
         // Generate salt.
         ByteArrayWrapper salt = new ByteArrayWrapper(randomCustomImple, SALTSIZE);
-        // Compute v.
-        NttPolynomial vNtt = computeVNttFromANttAndSalt(ck, aNtt, salt);
+        // Compute v. Unless a was already expanded by a login, it is used only once, so it is not materialized.
+        NttPolynomial expandedANtt = aNtt;
+        NttPolynomial vNtt = expandedANtt != null
+                ? computeVNttFromANttAndSalt(ck, expandedANtt, salt)
+                : computeVNttFromPublicSeedAndSalt(ck, salt);
         // Send public seed for a, identity, salt and v in NTT form to the server. //
-        server.enrollClient(publicSeedForA, ck.getIdentity(), salt, vNtt);
+        await(server.enrollClientAsync(publicSeedForA, ck.getIdentity(), salt, vNtt));
     }
 
     /**
@@ -202,6 +328,32 @@ public class ClientImple {
             return new LoginResponse(false, null);
         }
         // PHASE 2 //
-        return verifyKeysEntities(scc);
+        return await(verifyKeysEntities(scc));
+    }
+
+    /**
+     * Performs the same login procedure as {@link #login(ClientsKnowledge)} asynchronously on the client's
+     * {@code Executor}.
+     *
+     * <p>Ephemeral key pi is taken from the keys generated ahead of time. After the server's response,
+     * {@code u} and the salt-dependent {@code sv, ev} are computed in parallel, each of them exactly once.</p>
+     *
+     * @param ck the client’s identity and password, encapsulated in a {@link ClientsKnowledge} object
+     * @return future completed with a {@link LoginResponse} containing the login status and the computed shared secret
+     */
+    public CompletableFuture<LoginResponse> loginAsync(ClientsKnowledge ck) {
+        return takeEphemeralKey().thenComposeAsync(ephemeralKey ->
+                // PHASE 1 //
+                server.computeSharedSecretAsync(ck.getIdentity(), ephemeralKey.getPiNtt()).thenComposeAsync(serversResponseScs -> {
+                    if (serversResponseScs == null) {  // Client was not found in the server's database.
+                        return CompletableFuture.completedFuture(new LoginResponse(false, null));
+                    }
+                    // sv, ev do not depend on u, so they are computed in parallel with it.
+                    CompletableFuture<List<NttPolynomial>> svEvNtt =
+                            CompletableFuture.supplyAsync(() -> computeSvEvNtt(ck, serversResponseScs.getSalt()), executor);
+                    NttPolynomial uNtt = computeUNtt(polynomialConfig, randomCustomImple, ephemeralKey.getPiNtt(), serversResponseScs.getPjNtt());
+                    // PHASE 2 //
+                    return svEvNtt.thenCompose(svEv -> verifyKeysEntities(computeSharedSecret(ephemeralKey, serversResponseScs, uNtt, svEv)));
+                }, executor), executor);
     }
 }
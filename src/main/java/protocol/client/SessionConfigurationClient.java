@@ -1,7 +1,6 @@
 package protocol.client;
 
 import protocol.ByteArrayWrapper;
-import protocol.polynomial.NttPolynomial;
 import protocol.server.SessionConfigurationServer;
 
 /**
@@ -9,35 +8,37 @@ import protocol.server.SessionConfigurationServer;
  *
  * <p>The session configuration consists of:</p>
  * <ul>
- *   <li>{@code piNtt} – {@code NttPolynomial}, the NTT (Number Theoretic Transform) representation of the client’s
- *                                              ephemeral public key</li>
- *   <li>{@code pjNtt} – {@code NttPolynomial}, the NTT representation of the server’s ephemeral public key</li>
- *   <li>{@code ski}   – {@code ByteArrayWrapper}, the shared secret computed on the client’s side</li>
- *   <li>{@code scs}   – {@code SessionConfigurationServer}, the server’s corresponding session configuration</li>
+ *   <li>{@code m1}  – {@code ByteArrayWrapper}, M1 = SHA3-256(pi || pj || ski), sent to the server</li>
+ *   <li>{@code m2}  – {@code ByteArrayWrapper}, M2 = SHA3-256(pi || M1 || ski), expected from the server</li>
+ *   <li>{@code ski} – {@code ByteArrayWrapper}, the shared secret computed on the client’s side</li>
+ *   <li>{@code scs} – {@code SessionConfigurationServer}, the server’s corresponding session configuration</li>
  * </ul>
  *
+ * <p>Both digests are computed as soon as the shared secret is, so ephemeral public keys pi and pj
+ * are not kept.</p>
+ *
  * @author Martin Zimka
  */
 class SessionConfigurationClient {
 
-    private final NttPolynomial piNtt;
-    private final NttPolynomial pjNtt;
+    private final ByteArrayWrapper m1;
+    private final ByteArrayWrapper m2;
     private final ByteArrayWrapper ski;
     private final SessionConfigurationServer scs;
 
-    SessionConfigurationClient(NttPolynomial piNtt, NttPolynomial pjNtt, ByteArrayWrapper ski, SessionConfigurationServer scs) {
-        this.piNtt = piNtt;
-        this.pjNtt = pjNtt;
+    SessionConfigurationClient(ByteArrayWrapper m1, ByteArrayWrapper m2, ByteArrayWrapper ski, SessionConfigurationServer scs) {
+        this.m1 = m1;
+        this.m2 = m2;
         this.ski = ski;
         this.scs = scs;
     }
 
-    NttPolynomial getClientsEphPubKey() {
-        return piNtt;
+    ByteArrayWrapper getM1() {
+        return m1;
     }
 
-    NttPolynomial getServersEphPubKey() {
-        return pjNtt;
+    ByteArrayWrapper getExpectedM2() {
+        return m2;
     }
 
     ByteArrayWrapper getSharedSecret() {
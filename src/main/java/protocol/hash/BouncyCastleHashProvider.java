@@ -0,0 +1,78 @@
+package protocol.hash;
+
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+
+/**
+ * The {@code BouncyCastleHashProvider} class implements {@link HashProvider} using
+ * {@code SHA3Digest} and {@code SHAKEDigest} from BouncyCastle.
+ *
+ * <p>This provider serves as a reference for all others.</p>
+ *
+ * @author Martin Zimka
+ */
+public class BouncyCastleHashProvider implements HashProvider {
+
+    public static final String NAME = "bc";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] sha3256(byte[] data, int off, int len) {
+        byte[] hash = new byte[32];
+        SHA3Digest sha3Digest256 = new SHA3Digest(256);
+        sha3Digest256.update(data, off, len);
+        sha3Digest256.doFinal(hash, 0);
+        return hash;
+    }
+
+    @Override
+    public Xof newShake128() {
+        return new ShakeXof(128);
+    }
+
+    @Override
+    public Xof newShake256() {
+        return new ShakeXof(256);
+    }
+
+    /**
+     * Adapts {@code SHAKEDigest} to the {@link Xof} interface.
+     */
+    private static final class ShakeXof implements Xof {
+
+        private final SHAKEDigest shake;
+
+        private ShakeXof(int bitLength) {
+            this.shake = new SHAKEDigest(bitLength);
+        }
+
+        @Override
+        public void update(byte[] in, int inOff, int len) {
+            shake.update(in, inOff, len);
+        }
+
+        @Override
+        public void doOutput(byte[] out, int outOff, int outLen) {
+            shake.doOutput(out, outOff, outLen);
+        }
+
+        @Override
+        public void doFinal(byte[] out, int outOff, int outLen) {
+            shake.doFinal(out, outOff, outLen);
+        }
+
+        @Override
+        public void reset() {
+            shake.reset();
+        }
+
+        @Override
+        public int getByteLength() {
+            return shake.getByteLength();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package protocol.hash;
+
+/**
+ * The {@code HashProvider} interface defines a source of all hash functions and extendable-output functions
+ * used in <a href="https://doi.org/10.1007/978-3-319-75160-3_8">the protocol</a>.
+ *
+ * <p>It defines the following methods:</p>
+ * <ul>
+ *   <li>{@link #getName()}                  – returns short name of the provider, used in configuration</li>
+ *   <li>{@link #sha3256(byte[], int, int)}  – computes SHA3-256 digest</li>
+ *   <li>{@link #newShake128()}              – creates a new SHAKE-128 instance (XOF for the uniform polynomials)</li>
+ *   <li>{@link #newShake256()}              – creates a new SHAKE-256 instance (PRF for the CBD polynomials)</li>
+ * </ul>
+ *
+ * <p>Implementations must be thread-safe. Returned {@link Xof} instances are not, every thread shall use its own.</p>
+ *
+ * @author Martin Zimka
+ */
+public interface HashProvider {
+
+    /**
+     * Returns short name of the provider.
+     *
+     * @return name under which the provider can be selected by {@link HashProviders#byName(String)}
+     */
+    String getName();
+
+    /**
+     * Computes SHA3-256 digest of {@code len} bytes of {@code data} starting at {@code off}.
+     *
+     * @param data - input buffer
+     * @param off - offset in the input buffer
+     * @param len - number of bytes to hash
+     * @return 32-byte digest
+     */
+    byte[] sha3256(byte[] data, int off, int len);
+
+    /**
+     * Creates new SHAKE-128 instance.
+     *
+     * @return fresh SHAKE-128 instance
+     */
+    Xof newShake128();
+
+    /**
+     * Creates new SHAKE-256 instance.
+     *
+     * @return fresh SHAKE-256 instance
+     */
+    Xof newShake256();
+}
@@ -0,0 +1,140 @@
+package protocol.hash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code HashProviders} class selects the {@link HashProvider} used by default in the whole application.
+ *
+ * <p>The default provider is chosen once, when it is needed for the first time:</p>
+ * <ol>
+ *   <li>If the system property {@value #PROPERTY} is set to a provider name
+ *       ({@code bc}, {@code jdk} or {@code keccak}), that provider is used.</li>
+ *   <li>Otherwise (or if it is set to {@code benchmark}), all available providers are checked against
+ *       the reference {@link BouncyCastleHashProvider} and the fastest correct one in a short
+ *       micro-benchmark is used.</li>
+ * </ol>
+ *
+ * @author Martin Zimka
+ */
+public final class HashProviders {
+
+    public static final String PROPERTY = "protocol.hashProvider";
+    public static final String BENCHMARK = "benchmark";
+
+    // Sizes of the benchmark inputs roughly correspond to one login: pi || pj is hashed, u and a are expanded.
+    private static final int BENCHMARKHASHLEN = 8 * 1024;
+    private static final int BENCHMARKXOFLEN = 5 * 1024;
+    private static final int BENCHMARKWARMUPS = 200;
+    private static final int BENCHMARKROUNDS = 5;
+    private static final int BENCHMARKITERATIONS = 50;
+
+    private HashProviders() {}
+
+    private static final class DefaultHolder {
+        private static final HashProvider DEFAULT = select(System.getProperty(PROPERTY, BENCHMARK));
+    }
+
+    /**
+     * Returns the default provider, selected according to the system property {@value #PROPERTY}.
+     *
+     * @return default {@link HashProvider}
+     */
+    public static HashProvider getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    /**
+     * Returns all providers available on this JVM.
+     *
+     * @return list of available providers, the reference {@link BouncyCastleHashProvider} is always the first
+     */
+    public static List<HashProvider> available() {
+        List<HashProvider> providers = new ArrayList<>(3);
+        providers.add(new BouncyCastleHashProvider());
+        if (JdkHashProvider.isAvailable()) {
+            providers.add(new JdkHashProvider());
+        }
+        providers.add(new KeccakHashProvider());
+        return providers;
+    }
+
+    /**
+     * Returns the provider with the given name.
+     *
+     * @param name - name of the provider
+     * @return provider with the given name
+     * @throws IllegalArgumentException if no provider of such name is available
+     */
+    public static HashProvider byName(String name) {
+        for (HashProvider provider : available()) {
+            if (provider.getName().equals(name)) {
+                return provider;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash provider: " + name);
+    }
+
+    private static HashProvider select(String name) {
+        return BENCHMARK.equals(name) ? fastest(available()) : byName(name);
+    }
+
+    /**
+     * Returns the fastest of the given providers, among those producing the same output as the reference provider.
+     *
+     * @param providers - candidate providers
+     * @return the fastest correct provider, or the reference provider if no candidate is correct
+     */
+    public static HashProvider fastest(List<HashProvider> providers) {
+        HashProvider reference = new BouncyCastleHashProvider();
+        byte[] hashInput = new byte[BENCHMARKHASHLEN];
+        new Random(BENCHMARKHASHLEN).nextBytes(hashInput);  // any fixed input is fine
+
+        HashProvider best = reference;
+        long bestTime = Long.MAX_VALUE;
+        for (HashProvider provider : providers) {
+            if (!agreesWith(reference, provider, hashInput)) {
+                continue;
+            }
+            for (int i = 0; i < BENCHMARKWARMUPS; i++) {
+                runOnce(provider, hashInput);
+            }
+            long time = Long.MAX_VALUE;
+            for (int round = 0; round < BENCHMARKROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < BENCHMARKITERATIONS; i++) {
+                    runOnce(provider, hashInput);
+                }
+                time = Math.min(time, System.nanoTime() - start);  // the best round is the least noisy one
+            }
+            if (time < bestTime) {
+                bestTime = time;
+                best = provider;
+            }
+        }
+        return best;
+    }
+
+    private static byte[][] runOnce(HashProvider provider, byte[] input) {
+        byte[] hash = provider.sha3256(input, 0, input.length);
+        byte[] out128 = new byte[BENCHMARKXOFLEN];
+        Xof shake128 = provider.newShake128();
+        shake128.update(hash, 0, hash.length);
+        shake128.doFinal(out128, 0, out128.length);
+        byte[] out256 = new byte[BENCHMARKXOFLEN];
+        Xof shake256 = provider.newShake256();
+        shake256.update(input, 0, input.length);
+        shake256.doFinal(out256, 0, out256.length);
+        return new byte[][]{hash, out128, out256};
+    }
+
+    private static boolean agreesWith(HashProvider reference, HashProvider provider, byte[] input) {
+        try {
+            return Arrays.deepEquals(runOnce(reference, input), runOnce(provider, input));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package protocol.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The {@code JdkHashProvider} class implements {@link HashProvider} using {@code MessageDigest} of the JDK
+ * for SHA3-256. The JDK SHA3 implementation is intrinsified on some platforms.
+ *
+ * <p>The JDK does not offer a public SHAKE API, so SHAKE-128 and SHAKE-256 are delegated
+ * to {@link BouncyCastleHashProvider}.</p>
+ *
+ * @author Martin Zimka
+ */
+public class JdkHashProvider implements HashProvider {
+
+    public static final String NAME = "jdk";
+
+    private final HashProvider shakeDelegate = new BouncyCastleHashProvider();
+    // MessageDigest.getInstance is relatively expensive, so every thread keeps its own instance.
+    private final ThreadLocal<MessageDigest> sha3Digest256 = ThreadLocal.withInitial(JdkHashProvider::createSha3256);
+
+    /**
+     * Checks that the running JDK provides SHA3-256.
+     *
+     * @return true if {@code MessageDigest.getInstance("SHA3-256")} succeeds
+     */
+    public static boolean isAvailable() {
+        try {
+            MessageDigest.getInstance("SHA3-256");
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest createSha3256() {
+        try {
+            return MessageDigest.getInstance("SHA3-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA3-256 is not available in this JDK", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] sha3256(byte[] data, int off, int len) {
+        MessageDigest md = sha3Digest256.get();
+        md.update(data, off, len);
+        return md.digest();  // also resets the digest
+    }
+
+    @Override
+    public Xof newShake128() {
+        return shakeDelegate.newShake128();
+    }
+
+    @Override
+    public Xof newShake256() {
+        return shakeDelegate.newShake256();
+    }
+}
@@ -0,0 +1,76 @@
+package protocol.hash;
+
+/**
+ * The {@code KeccakHashProvider} class implements {@link HashProvider} using the in-house {@link KeccakSponge}.
+ *
+ * @author Martin Zimka
+ */
+public class KeccakHashProvider implements HashProvider {
+
+    public static final String NAME = "keccak";
+
+    private static final byte SHA3DOMAIN = 0x06;
+    private static final byte SHAKEDOMAIN = 0x1F;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] sha3256(byte[] data, int off, int len) {
+        KeccakSponge sponge = new KeccakSponge(512, SHA3DOMAIN);
+        sponge.absorb(data, off, len);
+        byte[] hash = new byte[32];
+        sponge.squeeze(hash, 0, hash.length);
+        return hash;
+    }
+
+    @Override
+    public Xof newShake128() {
+        return new KeccakXof(256);
+    }
+
+    @Override
+    public Xof newShake256() {
+        return new KeccakXof(512);
+    }
+
+    /**
+     * Adapts {@link KeccakSponge} with SHAKE padding to the {@link Xof} interface.
+     */
+    private static final class KeccakXof implements Xof {
+
+        private final KeccakSponge sponge;
+
+        private KeccakXof(int capacityBits) {
+            this.sponge = new KeccakSponge(capacityBits, SHAKEDOMAIN);
+        }
+
+        @Override
+        public void update(byte[] in, int inOff, int len) {
+            sponge.absorb(in, inOff, len);
+        }
+
+        @Override
+        public void doOutput(byte[] out, int outOff, int outLen) {
+            sponge.squeeze(out, outOff, outLen);
+        }
+
+        @Override
+        public void doFinal(byte[] out, int outOff, int outLen) {
+            sponge.squeeze(out, outOff, outLen);
+            sponge.reset();
+        }
+
+        @Override
+        public void reset() {
+            sponge.reset();
+        }
+
+        @Override
+        public int getByteLength() {
+            return sponge.getRate();
+        }
+    }
+}
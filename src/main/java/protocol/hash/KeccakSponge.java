@@ -0,0 +1,243 @@
+package protocol.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The {@code KeccakSponge} class is an in-house implementation of the Keccak sponge construction
+ * over the Keccak-f[1600] permutation.
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code rate}      – {@code int}, rate of the sponge in bytes</li>
+ *   <li>{@code domain}    – {@code byte}, domain separation bits together with the first padding bit
+ *                           ({@code 0x06} for SHA3, {@code 0x1F} for SHAKE)</li>
+ *   <li>{@code state}     – {@code long[]}, 25 words of the Keccak state</li>
+ *   <li>{@code position}  – {@code int}, position within the current block (in bytes)</li>
+ *   <li>{@code squeezing} – {@code boolean}, whether the sponge already switched from absorbing to squeezing</li>
+ * </ul>
+ *
+ * <p>The permutation keeps the whole state in local variables and aligned 8-byte words are moved
+ * in and out of the state at once. Both make the sponge noticeably faster than byte-oriented implementations.</p>
+ *
+ * @author Martin Zimka
+ */
+final class KeccakSponge {
+
+    private static final VarHandle LONGLE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long[] ROUNDCONSTANTS = {
+            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808AL, 0x8000000080008000L,
+            0x000000000000808BL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+            0x000000000000008AL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000AL,
+            0x000000008000808BL, 0x800000000000008BL, 0x8000000000008089L, 0x8000000000008003L,
+            0x8000000000008002L, 0x8000000000000080L, 0x000000000000800AL, 0x800000008000000AL,
+            0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+
+    private final int rate;
+    private final byte domain;
+    private final long[] state = new long[25];
+    private int position;
+    private boolean squeezing;
+
+    /**
+     * @param capacityBits capacity of the sponge in bits (twice the security strength)
+     * @param domain domain separation bits together with the first padding bit
+     */
+    KeccakSponge(int capacityBits, byte domain) {
+        this.rate = (1600 - capacityBits) / 8;
+        this.domain = domain;
+    }
+
+    int getRate() {
+        return rate;
+    }
+
+    void reset() {
+        Arrays.fill(state, 0L);
+        position = 0;
+        squeezing = false;
+    }
+
+    /**
+     * Absorbs {@code len} bytes of {@code in} starting at {@code off}.
+     *
+     * @throws IllegalStateException if the sponge is already squeezing
+     */
+    void absorb(byte[] in, int off, int len) {
+        if (squeezing) {
+            throw new IllegalStateException("Sponge is already squeezing, reset it first");
+        }
+        while (len > 0) {
+            if ((position & 7) == 0 && len >= 8) {  // whole aligned words
+                int words = Math.min(len, rate - position) >>> 3;
+                int word = position >>> 3;
+                for (int i = 0; i < words; i++) {
+                    state[word + i] ^= (long) LONGLE.get(in, off + 8 * i);
+                }
+                position += 8 * words;
+                off += 8 * words;
+                len -= 8 * words;
+            } else {
+                state[position >>> 3] ^= (in[off] & 0xFFL) << ((position & 7) << 3);
+                position++;
+                off++;
+                len--;
+            }
+            if (position == rate) {
+                permute(state);
+                position = 0;
+            }
+        }
+    }
+
+    /**
+     * Squeezes {@code len} bytes into {@code out} starting at {@code off}. The first call pads the absorbed input.
+     */
+    void squeeze(byte[] out, int off, int len) {
+        if (!squeezing) {
+            state[position >>> 3] ^= (domain & 0xFFL) << ((position & 7) << 3);
+            state[(rate - 1) >>> 3] ^= 0x80L << (((rate - 1) & 7) << 3);
+            permute(state);
+            position = 0;
+            squeezing = true;
+        }
+        while (len > 0) {
+            if (position == rate) {
+                permute(state);
+                position = 0;
+            }
+            if ((position & 7) == 0 && len >= 8) {  // whole aligned words
+                int words = Math.min(len, rate - position) >>> 3;
+                int word = position >>> 3;
+                for (int i = 0; i < words; i++) {
+                    LONGLE.set(out, off + 8 * i, state[word + i]);
+                }
+                position += 8 * words;
+                off += 8 * words;
+                len -= 8 * words;
+            } else {
+                out[off] = (byte) (state[position >>> 3] >>> ((position & 7) << 3));
+                position++;
+                off++;
+                len--;
+            }
+        }
+    }
+
+    /**
+     * Applies Keccak-f[1600] to the given state.
+     *
+     * <p>Steps theta, rho, pi, chi and iota are fully unrolled over the 25 words of the state.</p>
+     *
+     * @param a 25 words of the Keccak state
+     */
+    private static void permute(long[] a) {
+        long a00 = a[0], a01 = a[1], a02 = a[2], a03 = a[3], a04 = a[4];
+        long a05 = a[5], a06 = a[6], a07 = a[7], a08 = a[8], a09 = a[9];
+        long a10 = a[10], a11 = a[11], a12 = a[12], a13 = a[13], a14 = a[14];
+        long a15 = a[15], a16 = a[16], a17 = a[17], a18 = a[18], a19 = a[19];
+        long a20 = a[20], a21 = a[21], a22 = a[22], a23 = a[23], a24 = a[24];
+
+        for (int round = 0; round < 24; round++) {
+            // theta
+            long c0 = a00 ^ a05 ^ a10 ^ a15 ^ a20;
+            long c1 = a01 ^ a06 ^ a11 ^ a16 ^ a21;
+            long c2 = a02 ^ a07 ^ a12 ^ a17 ^ a22;
+            long c3 = a03 ^ a08 ^ a13 ^ a18 ^ a23;
+            long c4 = a04 ^ a09 ^ a14 ^ a19 ^ a24;
+
+            long d0 = c4 ^ Long.rotateLeft(c1, 1);
+            long d1 = c0 ^ Long.rotateLeft(c2, 1);
+            long d2 = c1 ^ Long.rotateLeft(c3, 1);
+            long d3 = c2 ^ Long.rotateLeft(c4, 1);
+            long d4 = c3 ^ Long.rotateLeft(c0, 1);
+
+            a00 ^= d0; a05 ^= d0; a10 ^= d0; a15 ^= d0; a20 ^= d0;
+            a01 ^= d1; a06 ^= d1; a11 ^= d1; a16 ^= d1; a21 ^= d1;
+            a02 ^= d2; a07 ^= d2; a12 ^= d2; a17 ^= d2; a22 ^= d2;
+            a03 ^= d3; a08 ^= d3; a13 ^= d3; a18 ^= d3; a23 ^= d3;
+            a04 ^= d4; a09 ^= d4; a14 ^= d4; a19 ^= d4; a24 ^= d4;
+
+            // rho and pi (word x + 5y moves to y + 5 * ((2x + 3y) mod 5))
+            long tmp = Long.rotateLeft(a01, 1);
+            a01 = Long.rotateLeft(a06, 44);
+            a06 = Long.rotateLeft(a09, 20);
+            a09 = Long.rotateLeft(a22, 61);
+            a22 = Long.rotateLeft(a14, 39);
+            a14 = Long.rotateLeft(a20, 18);
+            a20 = Long.rotateLeft(a02, 62);
+            a02 = Long.rotateLeft(a12, 43);
+            a12 = Long.rotateLeft(a13, 25);
+            a13 = Long.rotateLeft(a19, 8);
+            a19 = Long.rotateLeft(a23, 56);
+            a23 = Long.rotateLeft(a15, 41);
+            a15 = Long.rotateLeft(a04, 27);
+            a04 = Long.rotateLeft(a24, 14);
+            a24 = Long.rotateLeft(a21, 2);
+            a21 = Long.rotateLeft(a08, 55);
+            a08 = Long.rotateLeft(a16, 45);
+            a16 = Long.rotateLeft(a05, 36);
+            a05 = Long.rotateLeft(a03, 28);
+            a03 = Long.rotateLeft(a18, 21);
+            a18 = Long.rotateLeft(a17, 15);
+            a17 = Long.rotateLeft(a11, 10);
+            a11 = Long.rotateLeft(a07, 6);
+            a07 = Long.rotateLeft(a10, 3);
+            a10 = tmp;
+
+            // chi
+            c0 = a00 ^ (~a01 & a02);
+            c1 = a01 ^ (~a02 & a03);
+            a02 ^= ~a03 & a04;
+            a03 ^= ~a04 & a00;
+            a04 ^= ~a00 & a01;
+            a00 = c0;
+            a01 = c1;
+
+            c0 = a05 ^ (~a06 & a07);
+            c1 = a06 ^ (~a07 & a08);
+            a07 ^= ~a08 & a09;
+            a08 ^= ~a09 & a05;
+            a09 ^= ~a05 & a06;
+            a05 = c0;
+            a06 = c1;
+
+            c0 = a10 ^ (~a11 & a12);
+            c1 = a11 ^ (~a12 & a13);
+            a12 ^= ~a13 & a14;
+            a13 ^= ~a14 & a10;
+            a14 ^= ~a10 & a11;
+            a10 = c0;
+            a11 = c1;
+
+            c0 = a15 ^ (~a16 & a17);
+            c1 = a16 ^ (~a17 & a18);
+            a17 ^= ~a18 & a19;
+            a18 ^= ~a19 & a15;
+            a19 ^= ~a15 & a16;
+            a15 = c0;
+            a16 = c1;
+
+            c0 = a20 ^ (~a21 & a22);
+            c1 = a21 ^ (~a22 & a23);
+            a22 ^= ~a23 & a24;
+            a23 ^= ~a24 & a20;
+            a24 ^= ~a20 & a21;
+            a20 = c0;
+            a21 = c1;
+
+            // iota
+            a00 ^= ROUNDCONSTANTS[round];
+        }
+
+        a[0] = a00; a[1] = a01; a[2] = a02; a[3] = a03; a[4] = a04;
+        a[5] = a05; a[6] = a06; a[7] = a07; a[8] = a08; a[9] = a09;
+        a[10] = a10; a[11] = a11; a[12] = a12; a[13] = a13; a[14] = a14;
+        a[15] = a15; a[16] = a16; a[17] = a17; a[18] = a18; a[19] = a19;
+        a[20] = a20; a[21] = a21; a[22] = a22; a[23] = a23; a[24] = a24;
+    }
+}
@@ -0,0 +1,60 @@
+package protocol.hash;
+
+/**
+ * The {@code Xof} interface defines an extendable-output function (SHAKE-128 or SHAKE-256) as it is used in the protocol.
+ *
+ * <p>It defines the following methods:</p>
+ * <ul>
+ *   <li>{@link #update(byte[], int, int)}   – absorbs input bytes</li>
+ *   <li>{@link #doOutput(byte[], int, int)} – squeezes output bytes, consecutive calls continue the output stream</li>
+ *   <li>{@link #doFinal(byte[], int, int)}  – squeezes output bytes and resets the function</li>
+ *   <li>{@link #reset()}                    – resets the function to its initial state</li>
+ *   <li>{@link #getByteLength()}            – returns the rate (block size) in bytes</li>
+ * </ul>
+ *
+ * <p>Semantics of the methods follow {@code Xof} from BouncyCastle, so that its {@code SHAKEDigest} can be used
+ * directly as one of the implementations.</p>
+ *
+ * @author Martin Zimka
+ */
+public interface Xof {
+
+    /**
+     * Absorbs {@code len} bytes of {@code in} starting at {@code inOff}.
+     *
+     * @param in - input buffer
+     * @param inOff - offset in the input buffer
+     * @param len - number of bytes to absorb
+     */
+    void update(byte[] in, int inOff, int len);
+
+    /**
+     * Squeezes {@code outLen} bytes into {@code out} starting at {@code outOff}, without resetting.
+     *
+     * @param out - output buffer
+     * @param outOff - offset in the output buffer
+     * @param outLen - number of bytes to squeeze
+     */
+    void doOutput(byte[] out, int outOff, int outLen);
+
+    /**
+     * Squeezes {@code outLen} bytes into {@code out} starting at {@code outOff} and resets the function.
+     *
+     * @param out - output buffer
+     * @param outOff - offset in the output buffer
+     * @param outLen - number of bytes to squeeze
+     */
+    void doFinal(byte[] out, int outOff, int outLen);
+
+    /**
+     * Resets the function to its initial state.
+     */
+    void reset();
+
+    /**
+     * Returns the rate of the function in bytes.
+     *
+     * @return 168 for SHAKE-128, 136 for SHAKE-256
+     */
+    int getByteLength();
+}
@@ -5,7 +5,9 @@ import protocol.ByteArrayWrapper;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -46,6 +48,8 @@ import java.util.List;
  *                                                   of the constant polynomial {@code 2}</li>
  *   <li>{@link #toByteArrayWrapper()}             – returns a {@code ByteArrayWrapper} representation</li>
  *   <li>{@link #concatWith(NttPolynomial)}        – returns the NTT representation of {@code this * X^N + argument}</li>
+ *   <li>{@link #writeTo(ByteBuffer, PackedPolynomialCodec)} and {@link #readFrom(ByteBuffer, PackedPolynomialCodec)}
+ *       – bit-packed wire form read and written in place</li>
  * </ul>
  *
  * <p>Conversion to NTT inspired by
@@ -62,10 +66,19 @@ public class NttPolynomial {
         this.pc = pc;
     }
 
+    private NttPolynomial(BigInteger[] nttCoeffs, PolynomialConfig pc) {
+        this.coefficients = Collections.unmodifiableList(Arrays.asList(nttCoeffs));  // the array is owned, no copy
+        this.pc = pc;
+    }
+
     List<BigInteger> getCoefficients() {
         return coefficients;
     }
 
+    PolynomialConfig getConfig() {
+        return pc;
+    }
+
     /**
      * Converts a polynomial from its standard coefficient representation
      * into the Number Theoretic Transform (NTT) representation.
@@ -129,6 +142,13 @@ public class NttPolynomial {
         return new NttPolynomial(nttCoeffs, pc);
     }
 
+    /**
+     * Creates a polynomial backed by {@code nttCoeffs} without copying them; the caller must not keep the array.
+     */
+    static NttPolynomial fromOwnedNttCoefficients(BigInteger[] nttCoeffs, PolynomialConfig pc) {
+        return new NttPolynomial(nttCoeffs, pc);
+    }
+
     public static NttPolynomial fromClassicalCoefficients(List<BigInteger> classicalCoeffs, PolynomialConfig pc) {
         return new NttPolynomial(convertToNtt(classicalCoeffs, pc), pc);
     }
@@ -230,6 +250,37 @@ public class NttPolynomial {
         return new ByteArrayWrapper(out.toByteArray());
     }
 
+    /**
+     * Writes this polynomial bit-packed by {@code codec} at the position of {@code out} and advances the position
+     * past it.
+     *
+     * @param out buffer with at least {@link PackedPolynomialCodec#getPackedLength()} bytes remaining
+     * @param codec codec of the configuration of this polynomial
+     */
+    public void writeTo(ByteBuffer out, PackedPolynomialCodec codec) {
+        codec.encode(this, out, out.position());
+        out.position(out.position() + codec.getPackedLength());
+    }
+
+    /**
+     * Reads a polynomial bit-packed by {@code codec} straight from the position of {@code in}
+     * and advances the position past it.
+     *
+     * @param in buffer positioned at the packed polynomial
+     * @param codec codec of the configuration of the polynomial
+     * @return decoded polynomial in NTT form
+     * @throws IllegalArgumentException if fewer bytes remain than the packed polynomial has,
+     *                                  or a coefficient is not reduced modulo q
+     */
+    public static NttPolynomial readFrom(ByteBuffer in, PackedPolynomialCodec codec) {
+        if (in.remaining() < codec.getPackedLength()) {
+            throw new IllegalArgumentException("Buffer is too short for a packed polynomial");
+        }
+        NttPolynomial polynomial = codec.decode(in, in.position());
+        in.position(in.position() + codec.getPackedLength());
+        return polynomial;
+    }
+
     /**
      * Returns NTT representation of polynomial this * X^N + b.
      *
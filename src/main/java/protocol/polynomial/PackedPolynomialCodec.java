@@ -0,0 +1,153 @@
+package protocol.polynomial;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code PackedPolynomialCodec} class encodes NTT polynomials into a fixed number of bytes, every coefficient
+ * packed into exactly {@code ceil(log2 q)} bits.
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code pc}             – {@code PolynomialConfig}, configuration of encoded polynomials</li>
+ *   <li>{@code bitsPerCoeff}   – {@code int}, number of bits of one coefficient, i.e. bit length of q - 1</li>
+ *   <li>{@code packedLength}   – {@code int}, number of bytes of one encoded polynomial</li>
+ * </ul>
+ *
+ * <p>Coefficients are written as one little-endian bit stream, the last byte is padded with zero bits.
+ * The codec reads and writes {@code ByteBuffer}s at absolute positions, so it works directly on memory-mapped
+ * and off-heap buffers without any intermediate copy: decoded coefficients become the polynomial's own.
+ * Both encoding and decoding reject coefficients that are not reduced modulo q. Coefficients are limited to 56 bits.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class PackedPolynomialCodec {
+
+    private static final int MAXBITSPERCOEFF = 56;  // with up to 7 pending bits it still fits into one long
+
+    private final PolynomialConfig pc;
+    private final int bitsPerCoeff;
+    private final int packedLength;
+
+    /**
+     * @param pc configuration of encoded polynomials
+     * @throws IllegalArgumentException if coefficients do not fit into {@code MAXBITSPERCOEFF} bits
+     */
+    public PackedPolynomialCodec(PolynomialConfig pc) {
+        this.pc = pc;
+        this.bitsPerCoeff = pc.getQ().subtract(BigInteger.ONE).bitLength();
+        if (bitsPerCoeff > MAXBITSPERCOEFF) {
+            throw new IllegalArgumentException("Modulus q is too large for packed encoding");
+        }
+        this.packedLength = (int) (((long) pc.getN() * bitsPerCoeff + 7) / 8);
+    }
+
+    /**
+     * @return number of coefficients of encoded polynomials
+     */
+    public int getN() {
+        return pc.getN();
+    }
+
+    public int getBitsPerCoeff() {
+        return bitsPerCoeff;
+    }
+
+    /**
+     * @return number of bytes of one encoded polynomial
+     */
+    public int getPackedLength() {
+        return packedLength;
+    }
+
+    /**
+     * Writes packed coefficients of {@code polynomial} into {@code out} starting at absolute position {@code offset}.
+     * Position of {@code out} is not changed.
+     *
+     * @param polynomial polynomial in NTT form
+     * @param out buffer with at least {@link #getPackedLength()} bytes from {@code offset}
+     * @param offset absolute position in {@code out}
+     * @throws IllegalArgumentException if a coefficient is not reduced modulo q; nothing is written then
+     */
+    public void encode(NttPolynomial polynomial, ByteBuffer out, int offset) {
+        pc.assertCompatibleWith(polynomial.getConfig());
+        BigInteger q = pc.getQ();
+        for (BigInteger coeff : polynomial.getCoefficients()) {  // its bits would corrupt the neighbouring coefficients
+            if (coeff.signum() < 0 || coeff.compareTo(q) >= 0) {
+                throw new IllegalArgumentException("Coefficient is not reduced modulo q");
+            }
+        }
+        long acc = 0;  // bits not written yet, the lowest first
+        int accBits = 0;
+        int pos = offset;
+        for (BigInteger coeff : polynomial.getCoefficients()) {
+            acc |= coeff.longValue() << accBits;
+            accBits += bitsPerCoeff;
+            while (accBits >= 8) {
+                out.put(pos++, (byte) acc);
+                acc >>>= 8;
+                accBits -= 8;
+            }
+        }
+        if (accBits > 0) {
+            out.put(pos, (byte) acc);
+        }
+    }
+
+    /**
+     * Encodes {@code polynomial} into a new byte array.
+     *
+     * @param polynomial polynomial in NTT form
+     * @return packed coefficients, {@link #getPackedLength()} bytes
+     * @throws IllegalArgumentException if a coefficient is not reduced modulo q
+     */
+    public byte[] encode(NttPolynomial polynomial) {
+        byte[] out = new byte[packedLength];
+        encode(polynomial, ByteBuffer.wrap(out), 0);
+        return out;
+    }
+
+    /**
+     * Reads packed coefficients from {@code in} starting at absolute position {@code offset}.
+     * Position of {@code in} is not changed.
+     *
+     * @param in buffer with at least {@link #getPackedLength()} bytes from {@code offset}
+     * @param offset absolute position in {@code in}
+     * @return decoded polynomial in NTT form
+     * @throws IllegalArgumentException if a coefficient is not reduced modulo q
+     */
+    public NttPolynomial decode(ByteBuffer in, int offset) {
+        int n = pc.getN();
+        long mask = (1L << bitsPerCoeff) - 1;
+        long q = pc.getQ().longValue();
+        BigInteger[] coeffs = new BigInteger[n];
+        long acc = 0;
+        int accBits = 0;
+        int pos = offset;
+        for (int i = 0; i < n; i++) {
+            while (accBits < bitsPerCoeff) {
+                acc |= (in.get(pos++) & 0xFFL) << accBits;
+                accBits += 8;
+            }
+            long coeff = acc & mask;
+            if (coeff >= q) {
+                throw new IllegalArgumentException("Packed coefficient is not reduced modulo q");
+            }
+            coeffs[i] = BigInteger.valueOf(coeff);
+            acc >>>= bitsPerCoeff;
+            accBits -= bitsPerCoeff;
+        }
+        return NttPolynomial.fromOwnedNttCoefficients(coeffs, pc);
+    }
+
+    /**
+     * Decodes polynomial from a byte array.
+     *
+     * @param in packed coefficients, {@link #getPackedLength()} bytes
+     * @return decoded polynomial in NTT form
+     * @throws IllegalArgumentException if a coefficient is not reduced modulo q
+     */
+    public NttPolynomial decode(byte[] in) {
+        return decode(ByteBuffer.wrap(in), 0);
+    }
+}
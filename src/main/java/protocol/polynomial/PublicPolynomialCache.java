@@ -0,0 +1,159 @@
+package protocol.polynomial;
+
+import protocol.ByteArrayWrapper;
+import protocol.random.RandomCustom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code PublicPolynomialCache} class is a bounded, thread-safe cache of public polynomials {@code a}
+ * in NTT form, keyed by the public seed they are expanded from.
+ *
+ * <p>Expansion of {@code a} (SHAKE-128 or AES-256-CTR with rejection sampling) is deterministic, so a returning
+ * client's {@code a} can be reused instead of being expanded again on every login.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code polynomialConfig} – {@code PolynomialConfig}, configuration of all cached polynomials</li>
+ *   <li>{@code capacity}         – {@code int}, maximal number of cached polynomials</li>
+ *   <li>{@code stripes}          – {@code Stripe[]}, independently locked LRU maps, a seed always falls into the same one</li>
+ *   <li>{@code hits}, {@code misses}, {@code evictions} – {@code LongAdder}, metrics of the cache</li>
+ * </ul>
+ *
+ * <p>Every stripe evicts its least recently used polynomial once it is full, so the capacity is never exceeded.
+ * Expansion on a miss runs outside the lock; two threads missing the same seed at once both expand it
+ * and the later one overwrites the (equal) polynomial of the former.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class PublicPolynomialCache {
+
+    private static final int MAXSTRIPES = 16;
+    private static final int MINSTRIPECAPACITY = 16;  // smaller stripes would make the LRU order too coarse
+
+    private final PolynomialConfig polynomialConfig;
+    private final int capacity;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param polynomialConfig configuration of all cached polynomials
+     * @param capacity maximal number of cached polynomials, 0 disables caching
+     * @throws IllegalArgumentException if {@code capacity} is negative
+     */
+    public PublicPolynomialCache(PolynomialConfig polynomialConfig, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.polynomialConfig = polynomialConfig;
+        this.capacity = capacity;
+        int stripeCount = Math.max(1, Math.min(MAXSTRIPES, capacity / MINSTRIPECAPACITY));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {  // capacities of stripes sum up exactly to capacity
+            stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the public polynomial {@code a} expanded from {@code seed}, from the cache if present,
+     * otherwise expands it (as by {@link Utils#generateUniformPolyNtt(PolynomialConfig, RandomCustom, ByteArrayWrapper)})
+     * and caches it.
+     *
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param seed public seed for {@code a}
+     * @return NTT domain polynomial {@code a}
+     */
+    public NttPolynomial getOrExpand(RandomCustom rc, ByteArrayWrapper seed) {
+        Stripe stripe = stripes[Math.floorMod(seed.hashCode(), stripes.length)];
+        NttPolynomial aNtt = stripe.get(seed);
+        if (aNtt != null) {
+            hits.increment();
+            return aNtt;
+        }
+        misses.increment();
+        aNtt = Utils.generateUniformPolyNtt(polynomialConfig, rc, seed);
+        stripe.put(seed, aNtt);
+        return aNtt;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of currently cached polynomials
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Removes all cached polynomials. Metrics are kept.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * LRU map of one stripe, all its methods are guarded by the stripe itself.
+     */
+    private final class Stripe {
+
+        private final int stripeCapacity;
+        private final LinkedHashMap<ByteArrayWrapper, NttPolynomial> map;
+
+        private Stripe(int stripeCapacity) {
+            this.stripeCapacity = stripeCapacity;
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {  // access order makes it LRU
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, NttPolynomial> eldest) {
+                    if (size() > Stripe.this.stripeCapacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized NttPolynomial get(ByteArrayWrapper seed) {
+            return map.get(seed);
+        }
+
+        private synchronized void put(ByteArrayWrapper seed, NttPolynomial aNtt) {
+            if (stripeCapacity > 0) {
+                map.put(seed, aNtt);
+            }
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+
+        private synchronized void clear() {
+            map.clear();
+        }
+    }
+}
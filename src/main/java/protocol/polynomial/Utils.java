@@ -4,6 +4,8 @@ import protocol.ByteArrayWrapper;
 import protocol.random.RandomCustom;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /** * The {@code Utils} class is utility class for polynomials in mostly NTT form.
@@ -12,6 +14,9 @@ import java.util.List;
  * <ul>
  *   <li>{@link #multiply2NttTuplesAddThemTogetherNtt(NttPolynomial, NttPolynomial, NttPolynomial, NttPolynomial)} –
  *       multiplies two pairs of NTT polynomials and adds the results</li>
+ *   <li>{@link #multiply2NttTuplesAddThemTogetherNtt(PolynomialConfig, RandomCustom, ByteArrayWrapper, NttPolynomial,
+ *       NttPolynomial, NttPolynomial)} – the same, but the first polynomial is a uniform polynomial expanded from the seed
+ *       on the fly, without materializing it</li>
  *   <li>{@link #multiply3NttTuplesAndAddThemTogether(PolynomialConfig, NttPolynomial, NttPolynomial,
  *       NttPolynomial, NttPolynomial, NttPolynomial, NttPolynomial)} –
  *       multiplies three pairs of NTT polynomials, adds the results and converts to standard form</li>
@@ -20,8 +25,14 @@ import java.util.List;
  *   <li>{@link #generateRandomErrorPolyNtt(PolynomialConfig, RandomCustom)} –
  *       generates a random error polynomial by creating a random seed and
  *       delegating to the previous method</li>
+ *   <li>{@link #generateRandomErrorPolysNtt(PolynomialConfig, RandomCustom, List)} –
+ *       generates several random error polynomials in NTT form at once, one from each given seed</li>
+ *   <li>{@link #generateRandomErrorPolysNtt(PolynomialConfig, RandomCustom, int)} –
+ *       generates several random error polynomials in NTT form at once from randomly generated seeds</li>
  *   <li>{@link #generateUniformPolyNtt(PolynomialConfig, RandomCustom, ByteArrayWrapper)} –
  *       generates a random polynomial (by Uniform distribution) in NTT form</li>
+ *   <li>{@link #generateUniformPolysNtt(PolynomialConfig, RandomCustom, List)} –
+ *       generates several uniform polynomials in NTT form at once, one from each given seed</li>
  *   <li>{@link #computeUNtt(PolynomialConfig, RandomCustom, NttPolynomial, NttPolynomial)} –
  *       computes the parameter {@code u} as defined in the protocol</li>
  * </ul>
@@ -47,6 +58,36 @@ public final class Utils {
         return ab.add(cd);
     }
 
+    /**
+     * Multiplies two pairs of NTT polynomials and adds the results, where polynomial {@code a} is the uniform polynomial
+     * generated from {@code seedForA} (as by {@link #generateUniformPolyNtt(PolynomialConfig, RandomCustom, ByteArrayWrapper)}).
+     *
+     * <p>Polynomial {@code a} is never materialized. Every coefficient is multiplied and accumulated into the result
+     * as soon as it is sampled, which saves an n-sized list and one full pass over it.</p>
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param seedForA Uniform distribution generator will be seeded by this
+     * @param b polynomial in NTT domain
+     * @param c polynomial in NTT domain
+     * @param d polynomial in NTT domain
+     * @return ab + cd, where each polynomial is in NTT form
+     */
+    public static NttPolynomial multiply2NttTuplesAddThemTogetherNtt(PolynomialConfig pc, RandomCustom rc, ByteArrayWrapper seedForA, NttPolynomial b, NttPolynomial c, NttPolynomial d) {
+        pc.assertCompatibleWith(b.getConfig());
+        pc.assertCompatibleWith(c.getConfig());
+        pc.assertCompatibleWith(d.getConfig());
+
+        BigInteger q = pc.getQ();
+        List<BigInteger> bCoeffs = b.getCoefficients();
+        List<BigInteger> cCoeffs = c.getCoefficients();
+        List<BigInteger> dCoeffs = d.getCoefficients();
+        BigInteger[] result = new BigInteger[pc.getN()];
+        rc.generateUniformCoefficients(seedForA.getData(), (i, aCoeff) ->
+                result[i] = aCoeff.multiply(bCoeffs.get(i)).add(cCoeffs.get(i).multiply(dCoeffs.get(i))).mod(q));
+        return NttPolynomial.fromNttCoefficients(Arrays.asList(result), pc);
+    }
+
     /**
      * Multiplies three pairs of NTT polynomials, adds the results and converts it to the standard form of a polynomial.
      *
@@ -88,6 +129,45 @@ public final class Utils {
         return generateRandomErrorPolyNtt(pc, rc, new ByteArrayWrapper(rc, 32));
     }
 
+    /**
+     * From each seed generates polynomial in NTT form where coefficients are distributed by CBD.
+     * <p>All seeds are handed to the {@code RandomCustom} together, so that it can expand them at once.</p>
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param seeds CBD generators will be seeded by these
+     * @return NTT domain polynomials, in the order of the given seeds
+     */
+    public static List<NttPolynomial> generateRandomErrorPolysNtt(PolynomialConfig pc, RandomCustom rc, List<ByteArrayWrapper> seeds) {
+        List<byte[]> rawSeeds = new ArrayList<>(seeds.size());
+        for (ByteArrayWrapper seed : seeds) {
+            rawSeeds.add(seed.getData());
+        }
+        List<NttPolynomial> out = new ArrayList<>(seeds.size());
+        for (List<BigInteger> eCoeffs : rc.generateCbdCoefficientsBatch(rawSeeds)) {
+            out.add(NttPolynomial.fromClassicalCoefficients(eCoeffs, pc));
+        }
+        return out;
+    }
+
+    /**
+     * Generates {@code count} random seeds and calls {@link #generateRandomErrorPolysNtt(PolynomialConfig, RandomCustom, List)}.
+     * <p>Seeds are generated in the same order as {@code count} calls of
+     * {@link #generateRandomErrorPolyNtt(PolynomialConfig, RandomCustom)} would generate them.</p>
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param count number of polynomials to generate
+     * @return {@code count} NTT domain polynomials - their coefficients are generated by CBD from randomly generated seeds
+     */
+    public static List<NttPolynomial> generateRandomErrorPolysNtt(PolynomialConfig pc, RandomCustom rc, int count) {
+        List<ByteArrayWrapper> seeds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            seeds.add(new ByteArrayWrapper(rc, 32));
+        }
+        return generateRandomErrorPolysNtt(pc, rc, seeds);
+    }
+
     /**
      * From seed generates polynomial in NTT form where coefficients are distributed by Uniform distribution.
      *
@@ -101,6 +181,27 @@ public final class Utils {
         return NttPolynomial.fromNttCoefficients(coeffs, pc);
     }
 
+    /**
+     * From each seed generates polynomial in NTT form where coefficients are distributed by Uniform distribution.
+     * <p>All seeds are handed to the {@code RandomCustom} together, so that it can expand them at once.</p>
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param seeds Uniform distribution generators will be seeded by these
+     * @return NTT domain polynomials, in the order of the given seeds
+     */
+    public static List<NttPolynomial> generateUniformPolysNtt(PolynomialConfig pc, RandomCustom rc, List<ByteArrayWrapper> seeds) {
+        List<byte[]> rawSeeds = new ArrayList<>(seeds.size());
+        for (ByteArrayWrapper seed : seeds) {
+            rawSeeds.add(seed.getData());
+        }
+        List<NttPolynomial> out = new ArrayList<>(seeds.size());
+        for (List<BigInteger> coeffs : rc.generateUniformCoefficientsBatch(rawSeeds)) {
+            out.add(NttPolynomial.fromNttCoefficients(coeffs, pc));
+        }
+        return out;
+    }
+
     /**
      * Computes variable u from <a href="https://doi.org/10.1007/978-3-319-75160-3_8">the protocol</a>.
      *
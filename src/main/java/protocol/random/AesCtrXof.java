@@ -0,0 +1,96 @@
+package protocol.random;
+
+import protocol.hash.HashProvider;
+import protocol.hash.Xof;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * The {@code AesCtrXof} class implements {@link Xof} as the keystream of AES-256 in counter mode.
+ *
+ * <p>All absorbed bytes form a seed. A 32-byte seed is used as the AES key directly, seed of any other length
+ * is first hashed by SHA3-256. The initial counter block consists of the one-byte {@code domain}
+ * (so that the same seed gives different streams for uniform and CBD sampling) followed by zeros.
+ * Squeezed bytes are the keystream, i.e. encryption of zeros.</p>
+ *
+ * <p>The JDK provides an intrinsified AES (AES-NI on x86, ARMv8 crypto extensions), so producing the keystream
+ * is several times faster than software Keccak.</p>
+ *
+ * @author Martin Zimka
+ */
+final class AesCtrXof implements Xof {
+
+    private static final int KEYSIZE = 32;
+    private static final int BLOCKSIZE = 16;
+
+    private final byte domain;
+    private final HashProvider hashProvider;
+    private final ByteArrayOutputStream seed = new ByteArrayOutputStream(KEYSIZE);
+    private Cipher keystream;  // null until squeezing starts
+
+    AesCtrXof(byte domain, HashProvider hashProvider) {
+        this.domain = domain;
+        this.hashProvider = hashProvider;
+    }
+
+    @Override
+    public void update(byte[] in, int inOff, int len) {
+        if (keystream != null) {
+            throw new IllegalStateException("Keystream already started, reset it first");
+        }
+        seed.write(in, inOff, len);
+    }
+
+    private Cipher startKeystream() {
+        byte[] key = seed.toByteArray();
+        if (key.length != KEYSIZE) {
+            key = hashProvider.sha3256(key, 0, key.length);
+        }
+        byte[] iv = new byte[BLOCKSIZE];
+        iv[0] = domain;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-256-CTR is not available", e);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    @Override
+    public void doOutput(byte[] out, int outOff, int outLen) {
+        if (keystream == null) {
+            keystream = startKeystream();
+        }
+        Arrays.fill(out, outOff, outOff + outLen, (byte) 0);
+        try {
+            keystream.update(out, outOff, outLen, out, outOff);  // encrypt zeros in place
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-256-CTR keystream failed", e);
+        }
+    }
+
+    @Override
+    public void doFinal(byte[] out, int outOff, int outLen) {
+        doOutput(out, outOff, outLen);
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        seed.reset();
+        keystream = null;
+    }
+
+    @Override
+    public int getByteLength() {
+        return BLOCKSIZE;
+    }
+}
@@ -0,0 +1,54 @@
+package protocol.random;
+
+import protocol.ProtocolConfiguration;
+import protocol.hash.HashProviders;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code BenchmarkSeededRandom} class is a <b>deterministic</b> variant of {@link RandomCustomImple}
+ * meant exclusively for benchmarks and load tests.
+ *
+ * <p>Instead of {@code SecureRandom}, all random bytes and integers are drawn from {@link CtrDrbg} seeded by the
+ * argument of the constructor. Client and server created with fixed seeds therefore replay exactly the same
+ * logins (same public seeds, salts, ephemeral keys, signals and shared secrets) in every run, which makes
+ * performance of different runs comparable.</p>
+ *
+ * <p><b>NEVER USE IT IN PRODUCTION.</b> Everybody who knows the seed knows all secrets.
+ * To prevent accidental use, the constructor throws {@link IllegalStateException} unless the system property
+ * {@value #ALLOWPROPERTY} is set to {@code true}, which benchmark and load-test harnesses do explicitly.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class BenchmarkSeededRandom extends RandomCustomImple {
+
+    public static final String ALLOWPROPERTY = "protocol.allowBenchmarkSeededRandom";
+
+    /**
+     * @param protocolConfiguration n, q, eta and sampling mode
+     * @param seed seed of the deterministic generator
+     * @throws IllegalStateException if the system property {@value #ALLOWPROPERTY} is not {@code true}
+     */
+    public BenchmarkSeededRandom(ProtocolConfiguration protocolConfiguration, byte[] seed) {
+        super(protocolConfiguration.getN(), protocolConfiguration.getQ(), protocolConfiguration.getEta(),
+                HashProviders.getDefault(), protocolConfiguration.getSamplingMode(),
+                new CtrDrbg(checkAllowed(seed), HashProviders.getDefault()));
+    }
+
+    /**
+     * @param protocolConfiguration n, q, eta and sampling mode
+     * @param seed seed of the deterministic generator
+     * @throws IllegalStateException if the system property {@value #ALLOWPROPERTY} is not {@code true}
+     */
+    public BenchmarkSeededRandom(ProtocolConfiguration protocolConfiguration, long seed) {
+        this(protocolConfiguration, ByteBuffer.allocate(Long.BYTES).putLong(seed).array());
+    }
+
+    private static byte[] checkAllowed(byte[] seed) {
+        if (!Boolean.getBoolean(ALLOWPROPERTY)) {
+            throw new IllegalStateException("BenchmarkSeededRandom is deterministic and must not be used in production. "
+                    + "Set system property " + ALLOWPROPERTY + "=true in benchmark and load-test harnesses.");
+        }
+        return seed;
+    }
+}
@@ -0,0 +1,23 @@
+package protocol.random;
+
+import java.math.BigInteger;
+
+/**
+ * The {@code CoefficientConsumer} interface receives polynomial coefficients one by one, as they are sampled.
+ *
+ * <p>It allows callers to process each coefficient immediately (e.g. multiply it with a coefficient of another
+ * polynomial) instead of materializing the whole sampled polynomial first.</p>
+ *
+ * @author Martin Zimka
+ */
+@FunctionalInterface
+public interface CoefficientConsumer {
+
+    /**
+     * Accepts one sampled coefficient.
+     *
+     * @param index - index of the coefficient, coefficients are passed in the increasing order of indices
+     * @param coefficient - sampled coefficient from Rq
+     */
+    void accept(int index, BigInteger coefficient);
+}
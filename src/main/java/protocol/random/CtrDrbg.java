@@ -0,0 +1,61 @@
+package protocol.random;
+
+import protocol.hash.HashProvider;
+
+import java.util.Random;
+
+/**
+ * The {@code CtrDrbg} class is a deterministic random bit generator in counter mode: its output is
+ * the AES-256-CTR keystream (see {@link AesCtrXof}) keyed by the seed.
+ *
+ * <p>The same seed always gives the same sequence of bytes and integers, on every JVM. AES is intrinsified
+ * by the JDK, so the generator is fast enough not to distort benchmarks.</p>
+ *
+ * <p>Extends {@code java.util.Random} only to plug into {@link RandomCustomImple} in place of {@code SecureRandom};
+ * the state inherited from {@code Random} (including {@code setSeed}) is not used. It is not meant to be serialized,
+ * the keystream is not part of the serialized form.</p>
+ *
+ * @author Martin Zimka
+ */
+final class CtrDrbg extends Random {
+
+    private static final byte DRBGDOMAIN = 2;  // differs from domains used for sampling polynomials
+    private static final int BUFFERSIZE = 4096;
+    private static final long serialVersionUID = 1L;
+
+    private final transient AesCtrXof keystream;
+    private final transient byte[] buffer = new byte[BUFFERSIZE];
+    private transient int position = BUFFERSIZE;  // buffer is empty at the beginning
+
+    CtrDrbg(byte[] seed, HashProvider hashProvider) {
+        this.keystream = new AesCtrXof(DRBGDOMAIN, hashProvider);
+        this.keystream.update(seed, 0, seed.length);
+    }
+
+    private void copyOut(byte[] out, int off, int len) {
+        while (len > 0) {
+            if (position == BUFFERSIZE) {
+                keystream.doOutput(buffer, 0, BUFFERSIZE);
+                position = 0;
+            }
+            int chunk = Math.min(len, BUFFERSIZE - position);
+            System.arraycopy(buffer, position, out, off, chunk);
+            position += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    protected synchronized int next(int bits) {
+        byte[] word = new byte[4];
+        copyOut(word, 0, 4);
+        int value = ((word[0] & 0xFF) << 24) | ((word[1] & 0xFF) << 16) | ((word[2] & 0xFF) << 8) | (word[3] & 0xFF);
+        return value >>> (32 - bits);
+    }
+
+    @Override
+    public synchronized void nextBytes(byte[] bytes) {
+        copyOut(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,234 @@
+package protocol.random;
+
+import java.util.Arrays;
+
+/**
+ * The {@code MultiLaneKeccak} class runs several independent SHAKE-128 or SHAKE-256 instances in lockstep.
+ *
+ * <p>The states of all instances (lanes) are stored interleaved in one {@code long} array, i.e. 64-bit word
+ * {@code w} of lane {@code l} is located at index {@code w * lanes + l}. Every step of the Keccak-f[1600]
+ * permutation is then a short loop over lanes operating on consecutive array elements, which the JIT compiler
+ * is able to unroll and auto-vectorize. One permutation call therefore advances all instances at once.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code lanes}     – {@code int}, number of SHAKE instances running in lockstep</li>
+ *   <li>{@code rate}      – {@code int}, rate of the sponge in bytes (168 for SHAKE-128, 136 for SHAKE-256)</li>
+ *   <li>{@code state}     – {@code long[]}, interleaved Keccak states of all lanes</li>
+ *   <li>{@code squeezed}  – {@code int}, number of bytes already squeezed from the current block</li>
+ * </ul>
+ *
+ * <p>All lanes absorb inputs of the same length and squeeze the same number of bytes, which is exactly
+ * the situation when several polynomials are sampled from seeds of the same size.
+ * Output of every lane is identical to the output of a sequential {@code SHAKEDigest}.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class MultiLaneKeccak {
+
+    private static final int ROUNDS = 24;
+    private static final int STATEWORDS = 25;
+    private static final byte SHAKEDOMAIN = 0x1F;
+
+    private static final long[] ROUNDCONSTANTS = {
+            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808AL, 0x8000000080008000L,
+            0x000000000000808BL, 0x0000000080000001L, 0x8000000080008081L, 0x8000000000008009L,
+            0x000000000000008AL, 0x0000000000000088L, 0x0000000080008009L, 0x000000008000000AL,
+            0x000000008000808BL, 0x800000000000008BL, 0x8000000000008089L, 0x8000000000008003L,
+            0x8000000000008002L, 0x8000000000000080L, 0x000000000000800AL, 0x800000008000000AL,
+            0x8000000080008081L, 0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+    // Rotation offsets of the rho step, indexed by x + 5y.
+    private static final int[] RHOOFFSETS = {
+            0, 1, 62, 28, 27,
+            36, 44, 6, 55, 20,
+            3, 10, 43, 25, 39,
+            41, 45, 15, 21, 8,
+            18, 2, 61, 56, 14
+    };
+    // Destination of word x + 5y after the pi step, that is y + 5 * ((2x + 3y) mod 5).
+    private static final int[] PIDESTINATIONS = new int[STATEWORDS];
+
+    static {
+        for (int x = 0; x < 5; x++) {
+            for (int y = 0; y < 5; y++) {
+                PIDESTINATIONS[x + 5 * y] = y + 5 * ((2 * x + 3 * y) % 5);
+            }
+        }
+    }
+
+    private final int lanes;
+    private final int rate;
+    private final long[] state;
+    private final long[] columns;  // scratch space for the theta step
+    private final long[] permuted;  // scratch space for the rho and pi steps
+    private int squeezed;
+
+    /**
+     * Creates {@code lanes} SHAKE instances of the given security strength.
+     *
+     * @param lanes number of SHAKE instances running in lockstep
+     * @param bitLength security strength, either 128 (SHAKE-128) or 256 (SHAKE-256)
+     * @throws IllegalArgumentException if {@code lanes} is not positive or {@code bitLength} is not 128 or 256
+     */
+    public MultiLaneKeccak(int lanes, int bitLength) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("Number of lanes must be positive");
+        }
+        if (bitLength != 128 && bitLength != 256) {
+            throw new IllegalArgumentException("Only SHAKE-128 and SHAKE-256 are supported");
+        }
+        this.lanes = lanes;
+        this.rate = 200 - bitLength / 4;
+        this.state = new long[STATEWORDS * lanes];
+        this.columns = new long[5 * lanes];
+        this.permuted = new long[STATEWORDS * lanes];
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Returns the rate of the sponge in bytes, i.e. the length of one squeezed block.
+     *
+     * @return 168 for SHAKE-128, 136 for SHAKE-256
+     */
+    public int getByteLength() {
+        return rate;
+    }
+
+    /**
+     * Resets all lanes, absorbs {@code inputs[l]} into lane {@code l} and pads them, so that squeezing may begin.
+     *
+     * @param inputs one input per lane, all of the same length
+     * @throws IllegalArgumentException if the number of inputs differs from the number of lanes
+     *                                  or inputs are not of the same length
+     */
+    public void absorb(byte[][] inputs) {
+        if (inputs.length != lanes) {
+            throw new IllegalArgumentException("Exactly one input per lane is expected");
+        }
+        int len = inputs[0].length;
+        for (byte[] input : inputs) {
+            if (input.length != len) {
+                throw new IllegalArgumentException("All lanes must absorb inputs of the same length");
+            }
+        }
+
+        Arrays.fill(state, 0L);
+        int off = 0;
+        while (len - off >= rate) {  // full blocks
+            for (int l = 0; l < lanes; l++) {
+                xorIntoLane(l, inputs[l], off, rate);
+            }
+            permute();
+            off += rate;
+        }
+        for (int l = 0; l < lanes; l++) {  // last (possibly empty) block together with the SHAKE padding
+            xorIntoLane(l, inputs[l], off, len - off);
+            xorByteIntoLane(l, len - off, SHAKEDOMAIN);
+            xorByteIntoLane(l, rate - 1, (byte) 0x80);
+        }
+        permute();
+        squeezed = 0;
+    }
+
+    /**
+     * Squeezes {@code len} bytes from every lane into {@code outputs[l][off .. off + len)}.
+     * <p>Consecutive calls continue where the previous call stopped, as {@code doOutput} of a {@code SHAKEDigest} does.</p>
+     *
+     * @param outputs one output buffer per lane
+     * @param off offset in every output buffer
+     * @param len number of bytes squeezed from every lane
+     */
+    public void squeeze(byte[][] outputs, int off, int len) {
+        if (outputs.length != lanes) {
+            throw new IllegalArgumentException("Exactly one output per lane is expected");
+        }
+        int done = 0;
+        while (done < len) {
+            if (squeezed == rate) {
+                permute();
+                squeezed = 0;
+            }
+            int chunk = Math.min(len - done, rate - squeezed);
+            for (int l = 0; l < lanes; l++) {
+                extractFromLane(l, squeezed, outputs[l], off + done, chunk);
+            }
+            squeezed += chunk;
+            done += chunk;
+        }
+    }
+
+    private void xorIntoLane(int lane, byte[] in, int inOff, int len) {
+        for (int i = 0; i < len; i++) {
+            xorByteIntoLane(lane, i, in[inOff + i]);
+        }
+    }
+
+    private void xorByteIntoLane(int lane, int pos, byte b) {
+        state[(pos >>> 3) * lanes + lane] ^= (b & 0xFFL) << ((pos & 7) << 3);
+    }
+
+    private void extractFromLane(int lane, int pos, byte[] out, int outOff, int len) {
+        for (int i = 0; i < len; i++, pos++) {
+            out[outOff + i] = (byte) (state[(pos >>> 3) * lanes + lane] >>> ((pos & 7) << 3));
+        }
+    }
+
+    /**
+     * Applies Keccak-f[1600] to the states of all lanes.
+     */
+    private void permute() {
+        final int L = lanes;
+        final long[] a = state;
+        final long[] c = columns;
+        final long[] b = permuted;
+        for (int round = 0; round < ROUNDS; round++) {
+            // theta
+            for (int x = 0; x < 5; x++) {
+                int cx = x * L;
+                for (int l = 0; l < L; l++) {
+                    c[cx + l] = a[x * L + l] ^ a[(x + 5) * L + l] ^ a[(x + 10) * L + l]
+                            ^ a[(x + 15) * L + l] ^ a[(x + 20) * L + l];
+                }
+            }
+            for (int x = 0; x < 5; x++) {
+                int prev = ((x + 4) % 5) * L;
+                int next = ((x + 1) % 5) * L;
+                for (int l = 0; l < L; l++) {
+                    long d = c[prev + l] ^ Long.rotateLeft(c[next + l], 1);
+                    for (int y = 0; y < 25; y += 5) {
+                        a[(x + y) * L + l] ^= d;
+                    }
+                }
+            }
+            // rho and pi
+            for (int pos = 0; pos < STATEWORDS; pos++) {
+                int src = pos * L;
+                int dst = PIDESTINATIONS[pos] * L;
+                int rot = RHOOFFSETS[pos];
+                for (int l = 0; l < L; l++) {
+                    b[dst + l] = Long.rotateLeft(a[src + l], rot);
+                }
+            }
+            // chi
+            for (int y = 0; y < 25; y += 5) {
+                for (int x = 0; x < 5; x++) {
+                    int dst = (x + y) * L;
+                    int fst = (((x + 1) % 5) + y) * L;
+                    int snd = (((x + 2) % 5) + y) * L;
+                    for (int l = 0; l < L; l++) {
+                        a[dst + l] = b[dst + l] ^ (~b[fst + l] & b[snd + l]);
+                    }
+                }
+            }
+            // iota
+            long rc = ROUNDCONSTANTS[round];
+            for (int l = 0; l < L; l++) {
+                a[l] ^= rc;
+            }
+        }
+    }
+}
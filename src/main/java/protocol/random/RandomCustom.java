@@ -1,6 +1,7 @@
 package protocol.random;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -17,6 +18,14 @@ import java.util.List;
  *                                                      polynomials</li>
  *   <li>{@link #generateCbdCoefficients(byte[])}     – produces n Rq coefficients (in standard form)
  *                                                      sampled from Centred Binomial Distribution (parametrized by eta)</li>
+ *   <li>{@link #generateUniformCoefficientsBatch(List)} – the same as {@code generateUniformCoefficients}, for
+ *                                                      several seeds at once</li>
+ *   <li>{@link #generateCbdCoefficientsBatch(List)}     – the same as {@code generateCbdCoefficients}, for
+ *                                                      several seeds at once</li>
+ *   <li>{@link #generateUniformCoefficients(byte[], CoefficientConsumer)} – the same as
+ *                                                      {@code generateUniformCoefficients}, but passes coefficients
+ *                                                      to the consumer as they are sampled</li>
+ *   <li>{@link #getSamplingMode()}                   – returns primitive used to expand seeds</li>
  * </ul>
  * <p>
  * Parameters {@code n}, {@code q}, and {@code eta} for the last two methods are attributes of the implementing class.
@@ -52,6 +61,23 @@ public interface RandomCustom {
      */
     List<BigInteger> generateUniformCoefficients(byte[] seed);
 
+    /**
+     * Samples uniformly distributed Rq BigInteger values derived from the given seed and passes them to the consumer.
+     *
+     * <p>The consumer receives exactly the values of {@code generateUniformCoefficients(seed)}, in the same order.
+     * Implementations may override this method to pass every coefficient as soon as it is sampled,
+     * without building the whole list (default builds the list first).</p>
+     *
+     * @param seed - seed for generating uniform data
+     * @param consumer - receives index and value of every sampled coefficient
+     */
+    default void generateUniformCoefficients(byte[] seed, CoefficientConsumer consumer) {
+        List<BigInteger> coefficients = generateUniformCoefficients(seed);
+        for (int i = 0; i < coefficients.size(); i++) {
+            consumer.accept(i, coefficients.get(i));
+        }
+    }
+
     /**
      * Samples Rq representation of a list of BigInteger values form interval [-eta; +eta] using the Centered Binomial
      * Distribution, derived from the given seed.
@@ -62,4 +88,47 @@ public interface RandomCustom {
      * @return a list of BigInteger values from CBD, deterministically derived from the given seed.
      */
     List<BigInteger> generateCbdCoefficients(byte[] seed);
+
+    /**
+     * Samples one list of uniformly distributed Rq BigInteger values for every given seed.
+     *
+     * <p>The result for {@code seeds.get(i)} must be equal to {@code generateUniformCoefficients(seeds.get(i))}.
+     * Implementations may override this method to expand all seeds together (default expands them one by one).</p>
+     *
+     * @param seeds - seeds for generating uniform data
+     * @return list of lists of Uniformly distributed BigInteger values, in the order of the given seeds
+     */
+    default List<List<BigInteger>> generateUniformCoefficientsBatch(List<byte[]> seeds) {
+        List<List<BigInteger>> out = new ArrayList<>(seeds.size());
+        for (byte[] seed : seeds) {
+            out.add(generateUniformCoefficients(seed));
+        }
+        return out;
+    }
+
+    /**
+     * Samples one list of BigInteger values from Centered Binomial Distribution for every given seed.
+     *
+     * <p>The result for {@code seeds.get(i)} must be equal to {@code generateCbdCoefficients(seeds.get(i))}.
+     * Implementations may override this method to expand all seeds together (default expands them one by one).</p>
+     *
+     * @param seeds - seeds for generating Centered Binomial Distribution data
+     * @return list of lists of BigInteger values from CBD, in the order of the given seeds
+     */
+    default List<List<BigInteger>> generateCbdCoefficientsBatch(List<byte[]> seeds) {
+        List<List<BigInteger>> out = new ArrayList<>(seeds.size());
+        for (byte[] seed : seeds) {
+            out.add(generateCbdCoefficients(seed));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the primitive used to expand seeds in {@code generateUniformCoefficients} and {@code generateCbdCoefficients}.
+     *
+     * @return sampling mode, {@link SamplingMode#SHAKE} unless the implementation says otherwise
+     */
+    default SamplingMode getSamplingMode() {
+        return SamplingMode.SHAKE;
+    }
 }
@@ -1,13 +1,16 @@
 package protocol.random;
 
-import org.bouncycastle.crypto.digests.SHAKEDigest;
+import protocol.ProtocolConfiguration;
+import protocol.hash.HashProvider;
+import protocol.hash.HashProviders;
+import protocol.hash.Xof;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static java.math.RoundingMode.CEILING;
 import static java.math.RoundingMode.HALF_UP;
@@ -15,6 +18,9 @@ import static java.math.RoundingMode.HALF_UP;
 /**
  * The {@code RandomCustomImple} class implements {@code RandomCustom} interface.
  *
+ * <p>Seeds are expanded according to the {@link SamplingMode}: either by SHAKE-128 (uniform) and SHAKE-256 (CBD)
+ * of the given {@link HashProvider}, or by AES-256-CTR keystreams.</p>
+ *
  * <p>Building blocks of functions generateUniformCoefficients and generateCbdCoefficients are heavily inspired by
  * <a href="https://github.com/bcgit/bc-java/blob/main/core/src/main/java/org/bouncycastle/pqc/crypto/mlkem/MLKEMIndCpa.java">mlkem/MLKEMIndCpa.java</a>
  * and
@@ -29,38 +35,85 @@ public class RandomCustomImple implements RandomCustom {
     private final BigInteger q;
     private final int eta;  // CBD values will be sampled from interval [-eta; +eta]
 
-    // XOF defined in the protocol && XOF used in BC for public a (uniform distribution) from seed
-    private static final SHAKEDigest xof = new SHAKEDigest(128);
-    private static final int XOFBLOCKBYTES = xof.getByteLength();  // shall be 168
+    // XOF defined in the protocol && XOF used in BC for public a (uniform distribution) from seed is SHAKE-128,
+    // PRF for sampling error poly from seed is SHAKE-256. Both are created per call, so that this class is thread-safe.
+    private final HashProvider hashProvider;
+    private static final int XOFBLOCKBYTES = 168;  // block size of SHAKE-128
+    // In 90s mode both are replaced by AES-256-CTR keystreams, domain separated by the first byte of the counter.
+    private final SamplingMode samplingMode;
+    private static final byte AESUNIFORMDOMAIN = 0;
+    private static final byte AESCBDDOMAIN = 1;
 
     private static final SecureRandom secureRandom = new SecureRandom();
-    // PRF for sampling error poly from seed
-    private final SHAKEDigest prf = new SHAKEDigest(256);
+    // source of getRandomBytes and getRandomInt, secureRandom unless a subclass provides its own
+    private final Random random;
 
     // variables used in uniform distribution:
     private final int unifNeededNumOfBytes;
     private final BigInteger unifMask;
 
     public RandomCustomImple(int n, BigInteger q, int eta) {
+        this(n, q, eta, HashProviders.getDefault());
+    }
+
+    public RandomCustomImple(int n, BigInteger q, int eta, HashProvider hashProvider) {
+        this(n, q, eta, hashProvider, SamplingMode.SHAKE);
+    }
+
+    /**
+     * Creates an instance matching the given protocol configuration, including its sampling mode.
+     *
+     * @param protocolConfiguration n, q, eta and sampling mode
+     */
+    public RandomCustomImple(ProtocolConfiguration protocolConfiguration) {
+        this(protocolConfiguration.getN(), protocolConfiguration.getQ(), protocolConfiguration.getEta(),
+                HashProviders.getDefault(), protocolConfiguration.getSamplingMode());
+    }
+
+    public RandomCustomImple(int n, BigInteger q, int eta, HashProvider hashProvider, SamplingMode samplingMode) {
+        this(n, q, eta, hashProvider, samplingMode, secureRandom);
+    }
+
+    /**
+     * Creates an instance drawing random bytes and integers from the given source instead of {@code SecureRandom}.
+     * <p>Only for subclasses which deliberately need a different source, see {@link BenchmarkSeededRandom}.</p>
+     */
+    RandomCustomImple(int n, BigInteger q, int eta, HashProvider hashProvider, SamplingMode samplingMode, Random random) {
+        this.random = random;
         this.n = n;
         this.q = q;
         this.eta = eta;
+        this.hashProvider = hashProvider;
+        this.samplingMode = samplingMode;
         // the number of needed bits for generating 1 coefficient by Uniform distribution
         int unifNeededNumOfBits = this.q.subtract(BigInteger.ONE).bitLength();
         this.unifNeededNumOfBytes = (unifNeededNumOfBits + 7) / 8;
         this.unifMask = BigInteger.ONE.shiftLeft(unifNeededNumOfBits).subtract(BigInteger.ONE);
     }
 
+    @Override
+    public SamplingMode getSamplingMode() {
+        return samplingMode;
+    }
+
+    private Xof newUniformXof() {
+        return samplingMode == SamplingMode.AES_CTR ? new AesCtrXof(AESUNIFORMDOMAIN, hashProvider) : hashProvider.newShake128();
+    }
+
+    private Xof newCbdPrf() {
+        return samplingMode == SamplingMode.AES_CTR ? new AesCtrXof(AESCBDDOMAIN, hashProvider) : hashProvider.newShake256();
+    }
+
     @Override
     public byte[] getRandomBytes(int n) {
         byte[] byteArray = new byte[n];
-        secureRandom.nextBytes(byteArray);
+        random.nextBytes(byteArray);
         return byteArray;
     }
 
     @Override
     public int getRandomInt(int bound) {
-        return secureRandom.nextInt(bound);
+        return random.nextInt(bound);
     }
 
     /**
@@ -87,9 +140,7 @@ public class RandomCustomImple implements RandomCustom {
         BigInteger val;  // candidate for coefficient
         ctr = pos = 0;
         while (ctr < len && pos + unifNeededNumOfBytes <= inpBufLen) {
-            byte[] bufBytes = Arrays.copyOfRange(inpBuf, pos, pos + unifNeededNumOfBytes);
-            BigInteger bufBI = new BigInteger(1, bufBytes);
-            val = bufBI.and(unifMask);
+            val = readCandidate(inpBuf, pos);
             pos += unifNeededNumOfBytes;
             if (val.compareTo(q) < 0) {
                 outputBuffer.add(val);
@@ -99,6 +150,13 @@ public class RandomCustomImple implements RandomCustom {
         return ctr;
     }
 
+    /**
+     * Reads candidate for a coefficient, i.e. {@code unifNeededNumOfBytes} bytes at {@code pos} masked by {@code unifMask}.
+     */
+    private BigInteger readCandidate(byte[] buf, int pos) {
+        return new BigInteger(1, buf, pos, unifNeededNumOfBytes).and(unifMask);
+    }
+
     /**
      * Computes the minimum number of XOF block bytes required for sampling.
      *
@@ -162,7 +220,7 @@ public class RandomCustomImple implements RandomCustom {
         int k, ctr, off;
         int buflen = KyberGenerateMatrixNBlocks * XOFBLOCKBYTES;
         byte[] buf = new byte[buflen];
-        xof.reset();  // needed since doOutput does not call reset internally
+        Xof xof = newUniformXof();
         xof.update(seed, 0, seed.length);
         xof.doOutput(buf, 0, buflen);
 
@@ -180,6 +238,42 @@ public class RandomCustomImple implements RandomCustom {
         return out;
     }
 
+    /**
+     * Samples uniformly distributed Rq BigInteger values derived from the given seed and passes them to the consumer
+     * as soon as they are accepted.
+     *
+     * <p>Rejection sampling of {@link #generateUniformCoefficients(byte[])} effectively reads the XOF output in
+     * consecutive chunks of {@code unifNeededNumOfBytes} bytes. Here the XOF is squeezed one block at a time
+     * and the unused tail of the block is carried over to the next one, so the consumer receives exactly the same
+     * coefficients while only one XOF block is buffered.</p>
+     *
+     * @param seed seed used to generate the uniform data
+     * @param consumer receives index and value of every sampled coefficient
+     */
+    @Override
+    public void generateUniformCoefficients(byte[] seed, CoefficientConsumer consumer) {
+        Xof xof = newUniformXof();
+        xof.update(seed, 0, seed.length);
+
+        byte[] buf = new byte[XOFBLOCKBYTES + unifNeededNumOfBytes];  // one block and unused tail of the previous one
+        int ctr = 0;  // number of sampled coefficients
+        int off = 0;  // number of unused bytes at the beginning of buf
+        while (ctr < n) {
+            xof.doOutput(buf, off, XOFBLOCKBYTES);
+            int len = off + XOFBLOCKBYTES;
+            int pos = 0;
+            while (ctr < n && pos + unifNeededNumOfBytes <= len) {
+                BigInteger val = readCandidate(buf, pos);
+                pos += unifNeededNumOfBytes;
+                if (val.compareTo(q) < 0) {
+                    consumer.accept(ctr++, val);
+                }
+            }
+            off = len - pos;
+            System.arraycopy(buf, pos, buf, 0, off);  // move unused bytes to the beginning of the buf
+        }
+    }
+
     /**
      * Counts the number of set bits (value 1) in a given byte, starting from a specified bit position.
      *
@@ -256,20 +350,121 @@ public class RandomCustomImple implements RandomCustom {
      */
     @Override
     public List<BigInteger> generateCbdCoefficients(byte[] seed) {
-        List<BigInteger> out = new ArrayList<>(n);
-        byte[] buf = new byte[(int) Math.ceil((n * 2.0 * eta) / 8.0)];
-        prf.reset();  // not really needed since .doFinal calls .reset internally.
-        // This is just to be sure in case smth happens with prf before calling generateCbdCoefficients.
+        byte[] buf = new byte[cbdBufferLength()];
+        Xof prf = newCbdPrf();
         prf.update(seed, 0, seed.length);
         prf.doFinal(buf, 0, buf.length);
 
+        return sampleCbd(buf);
+    }
+
+    /**
+     * Samples Rq representation of BigInteger values from Centered Binomial Distribution, for every given seed.
+     *
+     * <p>If all seeds are of the same length, they are expanded together by {@link MultiLaneKeccak}, i.e. all
+     * SHAKE-256 instances are advanced by one permutation call. Otherwise, seeds are expanded one by one.
+     * In both cases, the result is identical to calling {@link #generateCbdCoefficients(byte[])} for each seed.
+     * In {@link SamplingMode#AES_CTR} mode, seeds are always expanded one by one.</p>
+     *
+     * @param seeds seeds for generating buffers for Centered Binomial Distribution data
+     * @return for each seed a list of {@code n} sampled values, in the order of the given seeds
+     */
+    @Override
+    public List<List<BigInteger>> generateCbdCoefficientsBatch(List<byte[]> seeds) {
+        if (samplingMode != SamplingMode.SHAKE || seeds.size() < 2 || !ofSameLength(seeds)) {
+            return RandomCustom.super.generateCbdCoefficientsBatch(seeds);
+        }
+        int lanes = seeds.size();
+        byte[][] bufs = new byte[lanes][cbdBufferLength()];
+        MultiLaneKeccak prfs = new MultiLaneKeccak(lanes, 256);
+        prfs.absorb(seeds.toArray(new byte[0][]));
+        prfs.squeeze(bufs, 0, bufs[0].length);
+
+        List<List<BigInteger>> out = new ArrayList<>(lanes);
+        for (byte[] buf : bufs) {
+            out.add(sampleCbd(buf));
+        }
+        return out;
+    }
+
+    /**
+     * Samples a list of uniformly distributed Rq BigInteger values, for every given seed.
+     *
+     * <p>If all seeds are of the same length, they are expanded together by {@link MultiLaneKeccak}. Every lane
+     * squeezes exactly the same number of bytes as {@link #generateUniformCoefficients(byte[])} would, so lanes which
+     * already have {@code n} coefficients just discard the output until all lanes are finished.
+     * Otherwise (or in {@link SamplingMode#AES_CTR} mode), seeds are expanded one by one.</p>
+     *
+     * @param seeds seeds used to generate the uniform data
+     * @return for each seed a list of {@code n} sampled values, in the order of the given seeds
+     */
+    @Override
+    public List<List<BigInteger>> generateUniformCoefficientsBatch(List<byte[]> seeds) {
+        if (samplingMode != SamplingMode.SHAKE || seeds.size() < 2 || !ofSameLength(seeds)) {
+            return RandomCustom.super.generateUniformCoefficientsBatch(seeds);
+        }
+        int lanes = seeds.size();
+        int buflen = computeKyberGenerateMatrixNBlocks() * XOFBLOCKBYTES;
+        byte[][] bufs = new byte[lanes][buflen];
+        MultiLaneKeccak xofs = new MultiLaneKeccak(lanes, 128);
+        xofs.absorb(seeds.toArray(new byte[0][]));
+        xofs.squeeze(bufs, 0, buflen);
+
+        List<List<BigInteger>> out = new ArrayList<>(lanes);
+        int[] ctrs = new int[lanes];  // number of sampled coefficients in each lane
+        boolean finished = true;
+        for (int l = 0; l < lanes; l++) {
+            out.add(new ArrayList<>(n));
+            ctrs[l] = rejectionSampling(out.get(l), n, bufs[l], buflen);
+            finished &= ctrs[l] == n;
+        }
+
+        int off = buflen % unifNeededNumOfBytes;  // how many unused bytes is in each buf?
+        while (!finished) {  // some lane did not sample enough coeffs
+            for (byte[] buf : bufs) {  // move unused bytes to the beginning of each buf
+                System.arraycopy(buf, buflen - off, buf, 0, off);
+            }
+            xofs.squeeze(bufs, off, buflen - off);  // fill the rest of each buf
+            finished = true;
+            for (int l = 0; l < lanes; l++) {
+                if (ctrs[l] < n) {
+                    ctrs[l] += rejectionSampling(out.get(l), n - ctrs[l], bufs[l], buflen);
+                }
+                finished &= ctrs[l] == n;
+            }
+        }
+
+        return out;
+    }
+
+    private int cbdBufferLength() {
+        return (int) Math.ceil((n * 2.0 * eta) / 8.0);
+    }
+
+    private static boolean ofSameLength(List<byte[]> seeds) {
+        int len = seeds.get(0).length;
+        for (byte[] seed : seeds) {
+            if (seed.length != len) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads {@code n} coefficients from Centered Binomial Distribution out of the buffer.
+     *
+     * @param buf buffer with at least {@code n * 2 * eta} bits of output of the PRF
+     * @return a list of {@code n} sampled values, suitable as polynomial coefficients in the standard domain
+     */
+    private List<BigInteger> sampleCbd(byte[] buf) {
+        List<BigInteger> out = new ArrayList<>(n);
         BitCursor bc = new BitCursor();
         for (int i = 0; i < n; i++) {
             int a = readEtaBits(bc, buf, eta);
             int b = readEtaBits(bc, buf, eta);
             out.add(BigInteger.valueOf(a - b).mod(q));
         }
-
         return out;
     }
 }
@@ -0,0 +1,21 @@
+package protocol.random;
+
+/**
+ * The {@code SamplingMode} enum lists primitives which can be used to expand seeds into polynomials.
+ *
+ * <ul>
+ *   <li>{@link #SHAKE}   – uniform polynomials are expanded by SHAKE-128 and CBD polynomials by SHAKE-256,
+ *                          as in the original protocol</li>
+ *   <li>{@link #AES_CTR} – both are expanded by AES-256 in counter mode (so-called "90s mode"), which is much faster
+ *                          on CPUs with AES instructions since the JDK intrinsifies AES on them</li>
+ * </ul>
+ *
+ * <p>Client and server must use the same mode, otherwise they derive different polynomials
+ * and the login fails. The mode is therefore part of {@link protocol.ProtocolConfiguration}.</p>
+ *
+ * @author Martin Zimka
+ */
+public enum SamplingMode {
+    SHAKE,
+    AES_CTR
+}
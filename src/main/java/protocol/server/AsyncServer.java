@@ -0,0 +1,69 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The {@code AsyncServer} interface defines the same server-side operations of the protocol as {@link Server},
+ * but without blocking the calling thread: every operation returns a {@link CompletionStage} completed
+ * with the result once it is known.
+ *
+ * <p>The interface provides the following methods:</p>
+ * <ul>
+ *   <li>{@link #getProtocolConfiguration()} – returns the protocol configuration: {@code n}, {@code q}, {@code eta}</li>
+ *   <li>{@link #enrollClientAsync(ByteArrayWrapper, ByteArrayWrapper, ByteArrayWrapper, NttPolynomial)} –
+ *       as {@link Server#enrollClient(ByteArrayWrapper, ByteArrayWrapper, ByteArrayWrapper, NttPolynomial)}</li>
+ *   <li>{@link #computeSharedSecretAsync(ByteArrayWrapper, NttPolynomial)} –
+ *       as {@link Server#computeSharedSecret(ByteArrayWrapper, NttPolynomial)}</li>
+ *   <li>{@link #verifyKeysEntitiesAsync(SessionConfigurationServer, ByteArrayWrapper)} –
+ *       as {@link Server#verifyKeysEntities(SessionConfigurationServer, ByteArrayWrapper)}</li>
+ * </ul>
+ *
+ * <p>Failures complete the stages exceptionally instead of being thrown. Methods carry the {@code Async} suffix,
+ * so one class, such as a remote stub, may implement both interfaces.</p>
+ *
+ * @author Martin Zimka
+ */
+public interface AsyncServer {
+
+    /**
+     * Returns the protocol configuration.
+     *
+     * @return n, q, eta encapsulated in {@link ProtocolConfiguration} object
+     */
+    ProtocolConfiguration getProtocolConfiguration();
+
+    /**
+     * Enrolls client.
+     *
+     * @param publicSeedForA - public seed that will be used to generate public polynomial a
+     * @param I - client's identity
+     * @param salt - client's salt
+     * @param vNtt - polynomial representing client's verifier in NTT form
+     * @return stage completed once the client is enrolled
+     */
+    CompletionStage<Void> enrollClientAsync(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt);
+
+    /**
+     * Computes shared secret on server's side for session client-server determined by client's information in attributes.
+     *
+     * @param I - client's identity
+     * @param piNtt - polynomial representing client's ephemeral public key in NTT form
+     * @return stage completed with the response {@link Server#computeSharedSecret(ByteArrayWrapper, NttPolynomial)}
+     * would return, i.e. with null if the client is not enrolled
+     */
+    CompletionStage<ServersResponseScs> computeSharedSecretAsync(ByteArrayWrapper I, NttPolynomial piNtt);
+
+    /**
+     * Verifies that both parties have derived the same key and authenticate client.
+     *
+     * @param scs - server's configuration of a session with the client
+     * @param m1 - hash of concatenated client's ephemeral key with server's ephemeral key and with client's shared secret key
+     * @return stage completed with M2', or with null if obtained attribute failed verification
+     */
+    CompletionStage<ByteArrayWrapper> verifyKeysEntitiesAsync(SessionConfigurationServer scs, ByteArrayWrapper m1);
+}
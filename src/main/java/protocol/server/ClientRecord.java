@@ -11,6 +11,8 @@ import protocol.polynomial.NttPolynomial;
  *   <li>{@code publicSeedForA} – {@code ByteArrayWrapper}, the public seed used to generate the public polynomial {@code a}</li>
  *   <li>{@code salt}           – {@code ByteArrayWrapper}, the client’s salt</li>
  *   <li>{@code verifierNtt}    – {@code NttPolynomial}, the client’s verifier in NTT representation</li>
+ *   <li>{@code publicPolynomialNtt} – {@code NttPolynomial}, the public polynomial {@code a} already expanded from
+ *                                     {@code publicSeedForA}, or null if the database does not keep it</li>
  * </ul>
  *
  * @author Martin Zimka
@@ -20,11 +22,23 @@ public class ClientRecord {
     private final ByteArrayWrapper publicSeedForA;
     private final ByteArrayWrapper salt;
     private final NttPolynomial verifierNtt;
+    private final NttPolynomial publicPolynomialNtt;
 
     public ClientRecord(ByteArrayWrapper publicSeedForA, ByteArrayWrapper salt, NttPolynomial verifierNtt) {
+        this(publicSeedForA, salt, verifierNtt, null);
+    }
+
+    /**
+     * @param publicSeedForA the public seed used to generate the public polynomial a
+     * @param salt the client’s salt
+     * @param verifierNtt the client’s verifier in NTT representation
+     * @param publicPolynomialNtt the public polynomial a expanded from {@code publicSeedForA}, or null
+     */
+    public ClientRecord(ByteArrayWrapper publicSeedForA, ByteArrayWrapper salt, NttPolynomial verifierNtt, NttPolynomial publicPolynomialNtt) {
         this.publicSeedForA = publicSeedForA;
         this.salt = salt;
         this.verifierNtt = verifierNtt;
+        this.publicPolynomialNtt = publicPolynomialNtt;
     }
 
     public ByteArrayWrapper getPublicSeedForA() {
@@ -38,4 +52,11 @@ public class ClientRecord {
     public NttPolynomial getVerifierNtt() {
         return verifierNtt;
     }
+
+    /**
+     * @return the public polynomial a in NTT form, or null if it was not expanded by the database
+     */
+    public NttPolynomial getPublicPolynomialNtt() {
+        return publicPolynomialNtt;
+    }
 }
@@ -0,0 +1,135 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.polynomial.PackedPolynomialCodec;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code ClientRecordLayout} class defines the fixed-width binary form of a {@link ClientRecord}
+ * used by the persistent and off-heap client databases.
+ *
+ * <p>One record consists of the following fields (in this order):</p>
+ * <ul>
+ *   <li>{@code state}          – 1 byte, {@code EMPTY} or {@code USED}; written last, so that a reader in the same
+ *                                process sees a complete record once it is marked as used</li>
+ *   <li>{@code checksum}       – 4 bytes, CRC-32C of all following fields, verified on every read</li>
+ *   <li>{@code identityHash}   – {@code IDENTITYHASHSIZE} bytes, SHA3-256 of client's identity (the key)</li>
+ *   <li>{@code publicSeedForA} – 1 byte length and {@code MAXSEEDSIZE} bytes</li>
+ *   <li>{@code salt}           – 1 byte length and {@code MAXSEEDSIZE} bytes</li>
+ *   <li>{@code verifierNtt}    – packed verifier, see {@link PackedPolynomialCodec}</li>
+ * </ul>
+ *
+ * <p>Identity is stored as its hash only, so all records have the same width whatever the identity is.</p>
+ *
+ * <p>The order of writes protects readers in the same process only. A record rewritten in place (re-enrollment)
+ * that is torn by a crash or power loss before its pages reach the disk keeps the {@code USED} state, so the
+ * checksum is what detects it: reading such a record throws {@link IllegalStateException} instead of returning
+ * a wrong verifier, and the client has to enroll again.</p>
+ *
+ * @author Martin Zimka
+ */
+final class ClientRecordLayout {
+
+    static final byte EMPTY = 0;
+    static final byte USED = 1;
+    static final int IDENTITYHASHSIZE = 32;
+    static final int MAXSEEDSIZE = 64;
+
+    private static final int STATEOFFSET = 0;
+    private static final int CHECKSUMOFFSET = STATEOFFSET + 1;
+    private static final int IDENTITYHASHOFFSET = CHECKSUMOFFSET + Integer.BYTES;
+    private static final int SEEDOFFSET = IDENTITYHASHOFFSET + IDENTITYHASHSIZE;
+    private static final int SALTOFFSET = SEEDOFFSET + 1 + MAXSEEDSIZE;
+    private static final int VERIFIEROFFSET = SALTOFFSET + 1 + MAXSEEDSIZE;
+
+    private final PackedPolynomialCodec codec;
+    private final int recordSize;
+
+    ClientRecordLayout(PackedPolynomialCodec codec) {
+        this.codec = codec;
+        this.recordSize = VERIFIEROFFSET + codec.getPackedLength();
+    }
+
+    /**
+     * @return number of bytes of one record
+     */
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    static byte[] identityHash(ByteArrayWrapper identity) {
+        return identity.hash();
+    }
+
+    /**
+     * Returns the first 8 bytes of the identity hash as a non-negative long, to be used by hash indexes.
+     */
+    static long indexHash(byte[] identityHash) {
+        long h = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            h = (h << 8) | (identityHash[i] & 0xFFL);
+        }
+        return h & Long.MAX_VALUE;
+    }
+
+    boolean isUsed(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + STATEOFFSET) == USED;
+    }
+
+    boolean matches(ByteBuffer buffer, int offset, byte[] identityHash) {
+        for (int i = 0; i < IDENTITYHASHSIZE; i++) {
+            if (buffer.get(offset + IDENTITYHASHOFFSET + i) != identityHash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return CRC-32C of the checksummed fields of the record at absolute position {@code offset}
+     */
+    private int checksum(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + IDENTITYHASHOFFSET, recordSize - IDENTITYHASHOFFSET));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes the record at absolute position {@code offset}, then its checksum and the state byte last.
+     *
+     * @throws IllegalArgumentException if the seed or the salt is longer than {@code MAXSEEDSIZE} bytes
+     */
+    void write(ByteBuffer buffer, int offset, byte[] identityHash, ClientRecord clientRecord) {
+        byte[] seed = clientRecord.getPublicSeedForA().getData();
+        byte[] salt = clientRecord.getSalt().getData();
+        if (seed.length > MAXSEEDSIZE || salt.length > MAXSEEDSIZE) {
+            throw new IllegalArgumentException("Public seed and salt must not be longer than " + MAXSEEDSIZE + " bytes");
+        }
+        buffer.put(offset + IDENTITYHASHOFFSET, identityHash, 0, IDENTITYHASHSIZE);
+        buffer.put(offset + SEEDOFFSET, (byte) seed.length);
+        buffer.put(offset + SEEDOFFSET + 1, seed);
+        buffer.put(offset + SALTOFFSET, (byte) salt.length);
+        buffer.put(offset + SALTOFFSET + 1, salt);
+        codec.encode(clientRecord.getVerifierNtt(), buffer, offset + VERIFIEROFFSET);
+        buffer.putInt(offset + CHECKSUMOFFSET, checksum(buffer, offset));
+        buffer.put(offset + STATEOFFSET, USED);
+    }
+
+    /**
+     * Reads the record at absolute position {@code offset}; the verifier is decoded straight from the buffer.
+     *
+     * @throws IllegalStateException if the record does not match its checksum, i.e. it is torn or corrupted
+     */
+    ClientRecord read(ByteBuffer buffer, int offset) {
+        if (buffer.getInt(offset + CHECKSUMOFFSET) != checksum(buffer, offset)) {
+            throw new IllegalStateException("Client record is corrupted");
+        }
+        byte[] seed = new byte[buffer.get(offset + SEEDOFFSET) & 0xFF];
+        buffer.get(offset + SEEDOFFSET + 1, seed);
+        byte[] salt = new byte[buffer.get(offset + SALTOFFSET) & 0xFF];
+        buffer.get(offset + SALTOFFSET + 1, salt);
+        return new ClientRecord(new ByteArrayWrapper(seed), new ByteArrayWrapper(salt), codec.decode(buffer, offset + VERIFIEROFFSET));
+    }
+}
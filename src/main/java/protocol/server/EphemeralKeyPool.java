@@ -0,0 +1,275 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.PublicPolynomialCache;
+import protocol.random.RandomCustom;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code EphemeralKeyPool} class keeps server's ephemeral keys (s1', as1' + 2e1', e1''') precomputed
+ * in the background, grouped by the public seed of polynomial a they were computed for.
+ *
+ * <p>None of these values depends on the client's ephemeral public key, so a login only takes one ready-made key
+ * and most of the server's computation is moved out of the latency-critical path.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code depth}     – {@code int}, number of keys kept ready per public seed</li>
+ *   <li>{@code maxGroups} – {@code int}, maximal number of public seeds the pool keeps keys for</li>
+ *   <li>{@code groups}    – {@code ConcurrentHashMap}, queue of ready keys and time of the last use per public seed</li>
+ *   <li>{@code executor}  – {@code ExecutorService}, daemon threads refilling the queues</li>
+ * </ul>
+ *
+ * <p>Every key is handed out at most once: {@link #poll(ByteArrayWrapper)} removes it from its queue and the pool
+ * keeps no other reference to it. When a queue is empty, the caller computes the key itself.</p>
+ *
+ * <p>Once the pool keeps keys for {@code maxGroups} seeds, a new seed evicts the group used least recently,
+ * so keys are precomputed for the clients logging in now, not for the first ones that ever did. An evicted group
+ * drops its keys and its refill stops.</p>
+ *
+ * <p>{@link #poll(ByteArrayWrapper)} is on the login path, so it takes no lock: it looks its group up
+ * in a {@code ConcurrentHashMap} and only stamps the group's time of use. The order of use is established
+ * by the admission of a new seed, which scans these stamps under the admission lock; new seeds come with
+ * enrollments and are far rarer than logins.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class EphemeralKeyPool implements AutoCloseable {
+
+    private final PolynomialConfig polynomialConfig;
+    private final RandomCustom randomCustom;
+    private final PublicPolynomialCache publicPolynomialCache;
+    private final int depth;
+    private final int maxGroups;
+    private final ConcurrentHashMap<ByteArrayWrapper, Group> groups = new ConcurrentHashMap<>();  // changed under admission
+    private final Object admission = new Object();
+    private final ExecutorService executor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param polynomialConfig configuration of the polynomials
+     * @param randomCustom source of randomness, shared by all refilling threads
+     * @param publicPolynomialCache cache of public polynomials a
+     * @param depth number of keys kept ready per public seed
+     * @param threads number of refilling threads
+     * @param maxGroups maximal number of public seeds the pool keeps keys for
+     * @throws IllegalArgumentException if any of {@code depth}, {@code threads} and {@code maxGroups} is not positive
+     */
+    EphemeralKeyPool(PolynomialConfig polynomialConfig, RandomCustom randomCustom, PublicPolynomialCache publicPolynomialCache,
+                     int depth, int threads, int maxGroups) {
+        if (depth <= 0 || threads <= 0 || maxGroups <= 0) {
+            throw new IllegalArgumentException("Depth, number of threads and number of groups must be positive");
+        }
+        this.polynomialConfig = polynomialConfig;
+        this.randomCustom = randomCustom;
+        this.publicPolynomialCache = publicPolynomialCache;
+        this.depth = depth;
+        this.maxGroups = maxGroups;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ephemeral-key-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts keeping keys ready for the given public seed, evicting the least recently used seed if the pool
+     * already serves {@code maxGroups} seeds.
+     *
+     * @param publicSeedForA public seed of the client's public polynomial a
+     */
+    void register(ByteArrayWrapper publicSeedForA) {
+        Group group = groupOf(publicSeedForA);
+        if (group != null) {
+            scheduleRefill(group);
+        }
+    }
+
+    /**
+     * Takes one precomputed key for the given public seed. The key is removed from the pool, so it is never
+     * handed out again.
+     *
+     * @param publicSeedForA public seed of the client's public polynomial a
+     * @return precomputed key, or null if none is ready
+     */
+    ServerEphemeralKey poll(ByteArrayWrapper publicSeedForA) {
+        Group group = groupOf(publicSeedForA);
+        ServerEphemeralKey key = group == null ? null : group.queue.poll();
+        if (key == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (group != null) {
+            scheduleRefill(group);
+        }
+        return key;
+    }
+
+    /**
+     * @return group of the seed, stamped as used now, created (and the least recently used one evicted)
+     * if it does not exist, or null if the pool is closed
+     */
+    private Group groupOf(ByteArrayWrapper publicSeedForA) {
+        if (closed) {
+            return null;
+        }
+        Group group = groups.get(publicSeedForA);
+        if (group == null) {
+            group = admit(publicSeedForA);
+        }
+        if (group != null) {
+            group.lastUse = System.nanoTime();
+        }
+        return group;
+    }
+
+    /**
+     * Slow path of {@link #groupOf(ByteArrayWrapper)} for a seed without a group.
+     */
+    private Group admit(ByteArrayWrapper publicSeedForA) {
+        synchronized (admission) {
+            if (closed) {
+                return null;
+            }
+            Group group = groups.get(publicSeedForA);
+            if (group != null) {  // admitted by another thread meanwhile
+                return group;
+            }
+            if (groups.size() >= maxGroups) {
+                evictLeastRecentlyUsed();
+            }
+            group = new Group(publicSeedForA);
+            groups.put(publicSeedForA, group);
+            return group;
+        }
+    }
+
+    /**
+     * Evicts the group with the oldest time of use. Called under the admission lock.
+     */
+    private void evictLeastRecentlyUsed() {
+        Group eldest = null;
+        for (Group group : groups.values()) {
+            if (eldest == null || group.lastUse - eldest.lastUse < 0) {
+                eldest = group;
+            }
+        }
+        if (eldest != null) {
+            groups.remove(eldest.publicSeedForA);
+            eldest.evict();
+            evictions.increment();
+        }
+    }
+
+    private void scheduleRefill(Group group) {
+        if (closed || group.evicted || group.queue.remainingCapacity() == 0 || !group.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> refill(group));
+        } catch (RejectedExecutionException e) {  // pool was closed in the meantime
+            group.refilling.set(false);
+        }
+    }
+
+    private void refill(Group group) {
+        try {
+            while (!closed && !group.evicted && group.queue.remainingCapacity() > 0) {
+                group.queue.offer(ServerEphemeralKey.generate(polynomialConfig, randomCustom, publicPolynomialCache, group.publicSeedForA, null));
+            }
+        } finally {
+            group.refilling.set(false);
+        }
+        if (group.evicted) {  // keys offered after the eviction must not stay referenced
+            group.queue.clear();
+        }
+        scheduleRefill(group);  // a key could have been taken after the last check
+    }
+
+    /**
+     * @return number of keys ready for the given public seed; the look-up counts as a use of its group
+     */
+    public int size(ByteArrayWrapper publicSeedForA) {
+        Group group = groups.get(publicSeedForA);
+        if (group == null) {
+            return 0;
+        }
+        group.lastUse = System.nanoTime();
+        return group.queue.size();
+    }
+
+    /**
+     * @return number of public seeds the pool currently keeps keys for
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Stops refilling and drops all ready keys.
+     */
+    @Override
+    public void close() {
+        synchronized (admission) {
+            closed = true;
+            for (Group group : groups.values()) {
+                group.evict();
+            }
+            groups.clear();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ready keys of one public seed.
+     */
+    private final class Group {
+
+        private final ByteArrayWrapper publicSeedForA;
+        private final ArrayBlockingQueue<ServerEphemeralKey> queue = new ArrayBlockingQueue<>(depth);
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        private volatile boolean evicted;
+        private volatile long lastUse;  // System.nanoTime() of the last use
+
+        private Group(ByteArrayWrapper publicSeedForA) {
+            this.publicSeedForA = publicSeedForA;
+            this.lastUse = System.nanoTime();  // a new group is not the least recently used one
+        }
+
+        /**
+         * Stops refilling the group and drops its keys.
+         */
+        private void evict() {
+            evicted = true;
+            queue.clear();
+        }
+    }
+}
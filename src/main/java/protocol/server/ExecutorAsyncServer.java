@@ -0,0 +1,63 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * The {@code ExecutorAsyncServer} class implements {@link AsyncServer} interface by running the methods
+ * of a {@link Server}, e.g. {@link ServerImple}, on an {@code Executor}.
+ *
+ * <p>The caller only submits the work and composes on the returned stage, the protocol math runs on the executor.
+ * With a direct executor ({@code Runnable::run}) the methods run on the calling thread and return completed stages,
+ * which adapts a {@code Server} to code written against {@code AsyncServer} without any thread hand-off.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code server}   – {@code Server}, server running the protocol math, it must be thread-safe
+ *                          unless the executor runs one task at a time</li>
+ *   <li>{@code executor} – {@code Executor}, threads running the server's methods</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class ExecutorAsyncServer implements AsyncServer {
+
+    private final Server server;
+    private final Executor executor;
+
+    /**
+     * @param server server running the protocol math
+     * @param executor threads running the server's methods
+     */
+    public ExecutorAsyncServer(Server server, Executor executor) {
+        this.server = Objects.requireNonNull(server);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return server.getProtocolConfiguration();
+    }
+
+    @Override
+    public CompletionStage<Void> enrollClientAsync(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        return CompletableFuture.runAsync(() -> server.enrollClient(publicSeedForA, I, salt, vNtt), executor);
+    }
+
+    @Override
+    public CompletionStage<ServersResponseScs> computeSharedSecretAsync(ByteArrayWrapper I, NttPolynomial piNtt) {
+        return CompletableFuture.supplyAsync(() -> server.computeSharedSecret(I, piNtt), executor);
+    }
+
+    @Override
+    public CompletionStage<ByteArrayWrapper> verifyKeysEntitiesAsync(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        return CompletableFuture.supplyAsync(() -> server.verifyKeysEntities(scs, m1), executor);
+    }
+}
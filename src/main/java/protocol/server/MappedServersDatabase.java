@@ -0,0 +1,244 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.PackedPolynomialCodec;
+import protocol.polynomial.PolynomialConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The {@code MappedServersDatabase} class implements {@link ServersDatabase} interface persistently,
+ * in a memory-mapped file.
+ *
+ * <p>The file is a header followed by {@code capacity} fixed-width slots (see {@link ClientRecordLayout}),
+ * which form an open-addressing hash table keyed by the hash of client's identity (linear probing).
+ * Opening the file only maps it, there is no deserialization step, so startup is near-instant whatever
+ * the number of clients. A lookup probes the mapped slots and decodes the verifier straight from the mapping.</p>
+ *
+ * <p>The header consists of the following fields:</p>
+ * <ul>
+ *   <li>{@code magic}, {@code version} – {@code int}, identify the file format</li>
+ *   <li>{@code n}, {@code q}           – {@code int}, {@code long}, configuration the records were written with</li>
+ *   <li>{@code recordSize}             – {@code int}, number of bytes of one slot</li>
+ *   <li>{@code capacity}               – {@code long}, number of slots</li>
+ *   <li>{@code count}                  – {@code long}, number of used slots</li>
+ * </ul>
+ *
+ * <p>Slots are mapped in segments of at most {@code MAXSEGMENTSIZE} bytes, so the file may hold millions of records.
+ * The table does not grow: it refuses new clients once {@code MAXLOADFACTOR} of slots are used.
+ * Lookups are optimistic reads of a {@code StampedLock} and do not block unless an enrollment runs at the same time.
+ * Changes reach the disk when the operating system writes the pages back, or on {@link #flush()} and {@link #close()}.</p>
+ *
+ * <p>Every record carries a checksum verified when it is read. A record torn by a crash while it was being
+ * written, e.g. rewritten by a re-enrollment, is therefore detected: looking it up throws {@link IllegalStateException}
+ * rather than returning a wrong verifier, and the client has to enroll again.</p>
+ *
+ * @author Martin Zimka
+ */
+public class MappedServersDatabase implements ServersDatabase, AutoCloseable {
+
+    private static final int MAGIC = 0x50515352;  // "PQSR"
+    private static final int VERSION = 2;  // records carry a checksum
+    private static final int HEADERSIZE = 64;
+    private static final int MAGICOFFSET = 0;
+    private static final int VERSIONOFFSET = 4;
+    private static final int NOFFSET = 8;
+    private static final int QOFFSET = 12;
+    private static final int RECORDSIZEOFFSET = 20;
+    private static final int CAPACITYOFFSET = 24;
+    private static final int COUNTOFFSET = 32;
+    private static final long MAXSEGMENTSIZE = 1L << 30;
+    private static final double MAXLOADFACTOR = 0.75;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final ClientRecordLayout layout;
+    private final int recordSize;
+    private final long capacity;
+    private final int slotsPerSegment;
+    private final StampedLock lock = new StampedLock();
+    private long count;
+
+    /**
+     * Opens the database in {@code file}, or creates it with {@code capacity} slots if the file does not exist.
+     *
+     * @param file file of the database
+     * @param protocolConfiguration configuration of the server; must match the configuration of an existing file
+     * @param capacity number of slots of a newly created file, ignored for an existing file
+     * @throws IOException if the file cannot be created, opened or mapped
+     * @throws IllegalArgumentException if the existing file is not a database or was created for different n or q
+     */
+    public MappedServersDatabase(Path file, ProtocolConfiguration protocolConfiguration, long capacity) throws IOException {
+        PackedPolynomialCodec codec = new PackedPolynomialCodec(new PolynomialConfig(protocolConfiguration.getN(), protocolConfiguration.getQ()));
+        this.layout = new ClientRecordLayout(codec);
+        this.recordSize = layout.getRecordSize();
+        boolean create = !Files.exists(file);
+        if (create && capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (create) {  // empty slots are zeros, so writing the last byte is enough and the file stays sparse
+                channel.write(ByteBuffer.wrap(new byte[1]), HEADERSIZE + capacity * recordSize - 1);
+            }
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADERSIZE);
+            if (create) {
+                header.putInt(MAGICOFFSET, MAGIC);
+                header.putInt(VERSIONOFFSET, VERSION);
+                header.putInt(NOFFSET, protocolConfiguration.getN());
+                header.putLong(QOFFSET, protocolConfiguration.getQ().longValueExact());
+                header.putInt(RECORDSIZEOFFSET, recordSize);
+                header.putLong(CAPACITYOFFSET, capacity);
+                header.putLong(COUNTOFFSET, 0);
+            } else if (header.getInt(MAGICOFFSET) != MAGIC || header.getInt(VERSIONOFFSET) != VERSION) {
+                throw new IllegalArgumentException("File is not a servers database");
+            } else if (header.getInt(NOFFSET) != protocolConfiguration.getN()
+                    || header.getLong(QOFFSET) != protocolConfiguration.getQ().longValueExact()
+                    || header.getInt(RECORDSIZEOFFSET) != recordSize) {
+                throw new IllegalArgumentException("Database was created for different protocol configuration");
+            }
+            this.capacity = header.getLong(CAPACITYOFFSET);
+            this.count = header.getLong(COUNTOFFSET);
+            this.slotsPerSegment = (int) Math.max(1, MAXSEGMENTSIZE / recordSize);
+            int segmentCount = (int) ((this.capacity + slotsPerSegment - 1) / slotsPerSegment);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long slots = Math.min(slotsPerSegment, this.capacity - (long) i * slotsPerSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADERSIZE + (long) i * slotsPerSegment * recordSize, slots * recordSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if a new client would exceed {@code MAXLOADFACTOR} of the capacity
+     * @throws IllegalArgumentException if the seed or the salt is too long for a fixed-width record
+     */
+    @Override
+    public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        byte[] identityHash = ClientRecordLayout.identityHash(identity);
+        long stamp = lock.writeLock();
+        try {
+            long slot = findSlot(identityHash);
+            MappedByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            boolean added = !layout.isUsed(segment, offset);
+            if (added && count + 1 > capacity * MAXLOADFACTOR) {
+                throw new IllegalStateException("Servers database is full");
+            }
+            layout.write(segment, offset, identityHash, clientRecord);
+            if (added) {  // counted only once the record is written
+                count++;
+                header.putLong(COUNTOFFSET, count);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the record of the identity is torn or corrupted
+     */
+    @Override
+    public ClientRecord findClient(ByteArrayWrapper identity) {
+        byte[] identityHash = ClientRecordLayout.identityHash(identity);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ClientRecord clientRecord = read(identityHash);
+                if (lock.validate(stamp)) {
+                    return clientRecord;
+                }
+            } catch (RuntimeException e) {  // slot was being rewritten, read it again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(identityHash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private ClientRecord read(byte[] identityHash) {
+        long slot = findSlot(identityHash);
+        MappedByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        return layout.isUsed(segment, offset) ? layout.read(segment, offset) : null;
+    }
+
+    /**
+     * Returns the slot of the identity, or the empty slot where it would be inserted.
+     */
+    private long findSlot(byte[] identityHash) {
+        long slot = ClientRecordLayout.indexHash(identityHash) % capacity;
+        for (long probes = 0; probes < capacity; probes++) {
+            MappedByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            if (!layout.isUsed(segment, offset) || layout.matches(segment, offset, identityHash)) {
+                return slot;
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+        throw new IllegalStateException("Servers database is full");
+    }
+
+    private MappedByteBuffer segmentOf(long slot) {
+        return segments[(int) (slot / slotsPerSegment)];
+    }
+
+    private int offsetOf(long slot) {
+        return (int) (slot % slotsPerSegment) * recordSize;
+    }
+
+    /**
+     * @return number of enrolled clients
+     */
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forces all changes to the disk.
+     */
+    public void flush() {
+        long stamp = lock.readLock();
+        try {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            header.force();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forces all changes to the disk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
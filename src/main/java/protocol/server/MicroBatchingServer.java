@@ -0,0 +1,197 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code MicroBatchingServer} class implements {@link Server} interface by gathering concurrent logins
+ * into batches computed by {@link Server#computeSharedSecrets(List, List)} of another server.
+ *
+ * <p>The first thread calling {@link #computeSharedSecret(ByteArrayWrapper, NttPolynomial)} opens a batch and leads it,
+ * threads coming later join it and wait for their responses. The leader computes the batch on its own thread once
+ * it holds {@code maxBatchSize} logins, or once {@code windowMicros} passed. The window is waited only while another
+ * batch is being computed: an idle server computes a login at once, so batching adds no latency at low load
+ * and gathers logins only when they would queue up anyway.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code delegate}      – {@code Server}, server computing the batches</li>
+ *   <li>{@code maxBatchSize}  – {@code int}, maximal number of logins in one batch</li>
+ *   <li>{@code windowNanos}   – {@code long}, longest time a batch waits for more logins</li>
+ *   <li>{@code open}          – {@code Batch}, batch accepting logins, or null</li>
+ *   <li>{@code executing}     – {@code AtomicInteger}, number of batches being computed</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class MicroBatchingServer implements Server {
+
+    private final Server delegate;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition full = lock.newCondition();
+    private final AtomicInteger executing = new AtomicInteger();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private Batch open;
+
+    /**
+     * Logins gathered into one batch, and the future of their responses.
+     */
+    private static final class Batch {
+        private final List<ByteArrayWrapper> identities = new ArrayList<>();
+        private final List<NttPolynomial> piNtts = new ArrayList<>();
+        private final CompletableFuture<List<ServersResponseScs>> responses = new CompletableFuture<>();
+    }
+
+    /**
+     * @param delegate server computing the batches, it must be thread-safe
+     * @param maxBatchSize maximal number of logins in one batch
+     * @param windowMicros longest time in microseconds a batch waits for more logins while another one is computed
+     * @throws IllegalArgumentException if {@code maxBatchSize} or {@code windowMicros} is not positive
+     */
+    public MicroBatchingServer(Server delegate, int maxBatchSize, long windowMicros) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (windowMicros <= 0) {
+            throw new IllegalArgumentException("Batching window must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return delegate.getProtocolConfiguration();
+    }
+
+    @Override
+    public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        delegate.enrollClient(publicSeedForA, I, salt, vNtt);
+    }
+
+    /**
+     * Computes shared secret as a part of the batch of concurrent logins.
+     *
+     * @return server's response, or null if the client is not enrolled
+     */
+    @Override
+    public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        Batch batch;
+        int index;
+        boolean leader;
+        lock.lock();
+        try {
+            leader = open == null;
+            if (leader) {
+                open = new Batch();
+            }
+            batch = open;
+            index = batch.identities.size();
+            batch.identities.add(I);
+            batch.piNtts.add(piNtt);
+            if (batch.identities.size() == maxBatchSize) {
+                open = null;
+                full.signal();
+            }
+            if (leader) {
+                awaitFollowers(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) {
+            execute(batch);
+        }
+        try {
+            return batch.responses.join().get(index);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits, holding the lock, until the batch is full or the window passed, while another batch is computed,
+     * and closes the batch.
+     */
+    private void awaitFollowers(Batch batch) {
+        long remaining = windowNanos;
+        try {
+            while (open == batch && executing.get() > 0 && remaining > 0) {
+                remaining = full.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {  // compute what has been gathered so far
+            Thread.currentThread().interrupt();
+        }
+        if (open == batch) {
+            open = null;
+        }
+    }
+
+    /**
+     * Computes the closed batch by the wrapped server and hands the responses to all its logins,
+     * or whatever the wrapped server threw, so that no login of the batch waits forever.
+     */
+    private void execute(Batch batch) {
+        executing.incrementAndGet();
+        try {
+            List<ServersResponseScs> responses = delegate.computeSharedSecrets(batch.identities, batch.piNtts);
+            batches.increment();
+            batchedRequests.add(batch.identities.size());
+            batch.responses.complete(responses);
+        } catch (Throwable e) {  // followers wait on the responses, they must not hang on an Error
+            batch.responses.completeExceptionally(e);
+        } finally {
+            executing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Computes the batch by the wrapped server at once, without gathering it with concurrent logins.
+     */
+    @Override
+    public List<ServersResponseScs> computeSharedSecrets(List<ByteArrayWrapper> identities, List<NttPolynomial> piNtts) {
+        return delegate.computeSharedSecrets(identities, piNtts);
+    }
+
+    @Override
+    public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        return delegate.verifyKeysEntities(scs, m1);
+    }
+
+    /**
+     * @return number of batches computed
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return number of logins computed in batches, divided by {@link #getBatches()} it is the average batch size
+     */
+    public long getBatchedRequests() {
+        return batchedRequests.sum();
+    }
+}
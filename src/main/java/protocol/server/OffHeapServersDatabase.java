@@ -0,0 +1,199 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.PackedPolynomialCodec;
+import protocol.polynomial.PolynomialConfig;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The {@code OffHeapServersDatabase} class implements {@link ServersDatabase} interface in memory outside
+ * of the Java heap.
+ *
+ * <p>Records are stored in the fixed-width binary form of {@link ClientRecordLayout} (verifier bit-packed at
+ * {@code ceil(log2 q)} bits, about 4 KB per client for n = 1024) in direct {@code ByteBuffer} slabs
+ * of {@code SLABSIZE} bytes. They are found by a primitive open-addressing index (linear probing):</p>
+ * <ul>
+ *   <li>{@code indexHashes}  – {@code long[]}, first 8 bytes of the identity hash, the key of the index</li>
+ *   <li>{@code indexRecords} – {@code int[]}, number of the record in slabs, {@code EMPTY} for an empty slot</li>
+ * </ul>
+ *
+ * <p>The heap then holds only two primitive arrays and the slab references, whatever the number of clients is,
+ * so tens of millions of clients do not cost a huge heap or long garbage collections.
+ * The full identity hash stored in the record decides the match. The index doubles once it is half full.</p>
+ *
+ * <p>Lookups are optimistic reads of a {@code StampedLock} and do not block unless an enrollment runs at the same time.
+ * A record is decoded into a {@link ClientRecord} on every lookup.</p>
+ *
+ * @author Martin Zimka
+ */
+public class OffHeapServersDatabase implements ServersDatabase {
+
+    private static final int EMPTY = -1;
+    private static final int SLABSIZE = 1 << 24;  // 16 MiB
+    private static final int DEFAULTINITIALCAPACITY = 1024;
+
+    private final ClientRecordLayout layout;
+    private final int recordSize;
+    private final int recordsPerSlab;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final StampedLock lock = new StampedLock();
+    private long[] indexHashes;
+    private int[] indexRecords;
+    private int count;
+
+    public OffHeapServersDatabase(ProtocolConfiguration protocolConfiguration) {
+        this(protocolConfiguration, DEFAULTINITIALCAPACITY);
+    }
+
+    /**
+     * @param protocolConfiguration configuration of the server
+     * @param initialCapacity expected number of clients, the index is sized for it
+     * @throws IllegalArgumentException if {@code initialCapacity} is not positive
+     */
+    public OffHeapServersDatabase(ProtocolConfiguration protocolConfiguration, int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity must be positive");
+        }
+        this.layout = new ClientRecordLayout(new PackedPolynomialCodec(new PolynomialConfig(protocolConfiguration.getN(), protocolConfiguration.getQ())));
+        this.recordSize = layout.getRecordSize();
+        this.recordsPerSlab = Math.max(1, SLABSIZE / recordSize);
+        int indexSize = Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 2;  // at most a quarter full at the beginning
+        this.indexHashes = new long[indexSize];
+        this.indexRecords = new int[indexSize];
+        Arrays.fill(indexRecords, EMPTY);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the seed or the salt is too long for a fixed-width record
+     */
+    @Override
+    public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        byte[] identityHash = ClientRecordLayout.identityHash(identity);
+        long hash = ClientRecordLayout.indexHash(identityHash);
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(identityHash, hash);
+            int record = indexRecords[slot];
+            if (record == EMPTY) {
+                record = count;
+                if (record / recordsPerSlab == slabs.size()) {
+                    slabs.add(ByteBuffer.allocateDirect(recordsPerSlab * recordSize));
+                }
+            }
+            layout.write(slabOf(record), offsetOf(record), identityHash, clientRecord);
+            if (indexRecords[slot] == EMPTY) {  // published in the index only once the record is written
+                indexHashes[slot] = hash;
+                indexRecords[slot] = record;
+                count++;
+                if (2L * count > indexRecords.length) {
+                    resize();
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ClientRecord findClient(ByteArrayWrapper identity) {
+        byte[] identityHash = ClientRecordLayout.identityHash(identity);
+        long hash = ClientRecordLayout.indexHash(identityHash);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ClientRecord clientRecord = read(identityHash, hash);
+                if (lock.validate(stamp)) {
+                    return clientRecord;
+                }
+            } catch (RuntimeException e) {  // index or record was being changed, read it again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(identityHash, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private ClientRecord read(byte[] identityHash, long hash) {
+        int record = indexRecords[findSlot(identityHash, hash)];
+        return record == EMPTY ? null : layout.read(slabOf(record), offsetOf(record));
+    }
+
+    /**
+     * Returns the index slot of the identity, or the empty slot where it would be inserted.
+     */
+    private int findSlot(byte[] identityHash, long hash) {
+        long[] hashes = indexHashes;
+        int[] records = indexRecords;
+        int mask = records.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (records[slot] != EMPTY) {
+            if (hashes[slot] == hash && layout.matches(slabOf(records[slot]), offsetOf(records[slot]), identityHash)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldHashes = indexHashes;
+        int[] oldRecords = indexRecords;
+        long[] hashes = new long[oldRecords.length * 2];
+        int[] records = new int[oldRecords.length * 2];
+        Arrays.fill(records, EMPTY);
+        int mask = records.length - 1;
+        for (int i = 0; i < oldRecords.length; i++) {
+            if (oldRecords[i] != EMPTY) {
+                int slot = (int) (oldHashes[i] ^ (oldHashes[i] >>> 32)) & mask;
+                while (records[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                records[slot] = oldRecords[i];
+            }
+        }
+        indexHashes = hashes;
+        indexRecords = records;
+    }
+
+    private ByteBuffer slabOf(int record) {
+        return slabs.get(record / recordsPerSlab);
+    }
+
+    private int offsetOf(int record) {
+        return (record % recordsPerSlab) * recordSize;
+    }
+
+    /**
+     * @return number of enrolled clients
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of bytes allocated outside of the heap
+     */
+    public long getOffHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) slabs.size() * recordsPerSlab * recordSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
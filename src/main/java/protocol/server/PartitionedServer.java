@@ -0,0 +1,247 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The {@code PartitionedServer} class implements {@link Server} interface by sharding clients across
+ * {@code partitions} independent {@link ServerImple}s by the hash of their identity.
+ *
+ * <p>Every partition owns its {@link ServersDatabase}, {@link RandomCustom}, cache of public polynomials and Signal
+ * function, and runs all its requests on one dedicated thread. Requests are handed to the owning partition through
+ * a lock-free {@code ConcurrentLinkedQueue}; an idle partition thread parks until a request arrives.
+ * Nothing mutable is shared between partitions, so logins of clients in different partitions never contend.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code protocolConfiguration} – {@code ProtocolConfiguration}, configuration of all partitions</li>
+ *   <li>{@code partitions}            – {@code Partition[]}, server, queue and thread of every partition</li>
+ * </ul>
+ *
+ * <p>{@link #verifyKeysEntities(SessionConfigurationServer, ByteArrayWrapper)} depends on the session configuration
+ * only, not on any partition's state, so it runs on the caller's thread.</p>
+ *
+ * @author Martin Zimka
+ */
+public class PartitionedServer implements Server, AutoCloseable {
+
+    private final ProtocolConfiguration protocolConfiguration;
+    private final Partition[] partitions;
+    private volatile boolean closed;
+
+    /**
+     * Creates partitions with their own {@link RandomCustomImple} and {@link ServersDatabaseImple}.
+     *
+     * @param protocolConfiguration n, q, eta and sampling mode the server (and all its clients) work with
+     * @param partitions number of partitions
+     * @throws IllegalArgumentException if {@code partitions} is not positive
+     */
+    public PartitionedServer(ProtocolConfiguration protocolConfiguration, int partitions) {
+        this(protocolConfiguration, partitions, i -> new RandomCustomImple(protocolConfiguration), i -> new ServersDatabaseImple());
+    }
+
+    /**
+     * @param protocolConfiguration n, q, eta and sampling mode the server (and all its clients) work with
+     * @param partitions number of partitions
+     * @param randoms creates source of randomness of the given partition, used by the partition's thread only
+     * @param databases creates database of the given partition
+     * @throws IllegalArgumentException if {@code partitions} is not positive or a created {@link RandomCustom}
+     *                                  uses different sampling mode than the configuration
+     */
+    public PartitionedServer(ProtocolConfiguration protocolConfiguration, int partitions,
+                             IntFunction<RandomCustom> randoms, IntFunction<ServersDatabase> databases) {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        }
+        this.protocolConfiguration = protocolConfiguration;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new Partition(new ServerImple(randoms.apply(i), protocolConfiguration,
+                    ServerOptions.defaults().withServersDatabase(databases.apply(i))), i);
+        }
+        for (Partition partition : this.partitions) {
+            partition.thread.start();
+        }
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return protocolConfiguration;
+    }
+
+    /**
+     * @return number of partitions
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Enrolls client in the partition owning its identity, see {@link ServerImple#enrollClient}.
+     *
+     * @throws IllegalStateException if the server is closed
+     */
+    @Override
+    public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        join(enrollClientAsync(publicSeedForA, I, salt, vNtt));
+    }
+
+    /**
+     * Enrolls client in the partition owning its identity without waiting for it.
+     *
+     * @return future completed once the client is enrolled
+     * @throws IllegalStateException if the server is closed
+     */
+    public CompletableFuture<Void> enrollClientAsync(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        Partition partition = partitionOf(I);
+        return partition.submit(() -> {
+            partition.server.enrollClient(publicSeedForA, I, salt, vNtt);
+            return null;
+        });
+    }
+
+    /**
+     * Computes shared secret in the partition owning client's identity, see {@link ServerImple#computeSharedSecret}.
+     *
+     * @throws IllegalStateException if the server is closed
+     */
+    @Override
+    public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        return join(computeSharedSecretAsync(I, piNtt));
+    }
+
+    /**
+     * Computes shared secret in the partition owning client's identity without waiting for it.
+     *
+     * @return future of the server's response, completed with null if the client is not enrolled
+     * @throws IllegalStateException if the server is closed
+     */
+    public CompletableFuture<ServersResponseScs> computeSharedSecretAsync(ByteArrayWrapper I, NttPolynomial piNtt) {
+        Partition partition = partitionOf(I);
+        return partition.submit(() -> partition.server.computeSharedSecret(I, piNtt));
+    }
+
+    @Override
+    public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        return partitions[0].server.verifyKeysEntities(scs, m1);
+    }
+
+    private Partition partitionOf(ByteArrayWrapper I) {
+        int hash = I.hashCode() * 0x9E3779B9;  // spread the bits of Arrays.hashCode
+        return partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)];
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all partition threads. Requests not processed yet fail with {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            partition.failPending();
+            partition.server.close();
+        }
+    }
+
+    /**
+     * Server, queue of requests and thread of one partition.
+     */
+    private final class Partition {
+
+        private final ServerImple server;
+        private final ConcurrentLinkedQueue<Request<?>> queue = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        private Partition(ServerImple server, int index) {
+            this.server = server;
+            this.thread = new Thread(this::run, "server-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<T> work) {
+            if (closed) {
+                throw new IllegalStateException("Server is closed");
+            }
+            Request<T> request = new Request<>(work);
+            queue.offer(request);
+            LockSupport.unpark(thread);
+            if (closed) {  // the thread may have stopped before the request was queued
+                failPending();
+            }
+            return request.future;
+        }
+
+        private void run() {
+            while (!closed) {
+                Request<?> request = queue.poll();
+                if (request == null) {
+                    LockSupport.park(this);
+                } else {
+                    request.run();
+                }
+            }
+        }
+
+        private void failPending() {
+            Request<?> request;
+            while ((request = queue.poll()) != null) {
+                request.future.completeExceptionally(new IllegalStateException("Server is closed"));
+            }
+        }
+    }
+
+    /**
+     * One request waiting in a partition's queue. Whatever the work throws, even an {@code Error}, completes
+     * the future, so that its caller does not wait forever and the partition thread goes on with other requests.
+     */
+    private static final class Request<T> {
+
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Request(Supplier<T> work) {
+            this.work = work;
+        }
+
+        private void run() {
+            try {
+                future.complete(work.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code PendingSessionTable} class keeps server's configurations of sessions between the first phase
+ * of a login ({@code computeSharedSecret}) and the second one ({@code verifyKeysEntities}), under random opaque
+ * session ids.
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code capacity}       – {@code int}, maximal number of pending sessions</li>
+ *   <li>{@code ttlNanos}       – {@code long}, time after which a pending session expires</li>
+ *   <li>{@code overflowPolicy} – {@code SessionOverflowPolicy}, what happens to a new session when the table is full</li>
+ *   <li>{@code sessions}       – {@code LinkedHashMap}, pending sessions by id, oldest first</li>
+ *   <li>{@code wheel}          – {@code Entry[]}, timing wheel of {@code WHEELSLOTS} slots of {@code tickNanos},
+ *                                every slot is a linked list of sessions expiring in it</li>
+ * </ul>
+ *
+ * <p>Every session is taken at most once. Expired sessions are dropped whenever the table is used: the wheel is
+ * advanced to the current tick and the slots it passed are emptied, so expiry costs O(1) per session and no
+ * background thread is needed. A session expiring in the current tick is refused by the lookup itself.
+ * The time-to-live spans at most half of the wheel, so a slot never mixes sessions of different revolutions.</p>
+ *
+ * <p>Memory use is bounded by {@code capacity} whatever the rate of abandoned handshakes is.
+ * All methods are thread-safe.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class PendingSessionTable {
+
+    public static final int SESSIONIDSIZE = 16;
+    private static final int WHEELSLOTS = 256;
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final long tickNanos;
+    private final SessionOverflowPolicy overflowPolicy;
+    private final LongSupplier nanoTime;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final LinkedHashMap<ByteArrayWrapper, Entry> sessions = new LinkedHashMap<>();
+    private final Entry[] wheel = new Entry[WHEELSLOTS];
+    private long nextTick;  // first tick whose slot has not been emptied yet
+    private long expired;
+    private long evicted;
+    private long rejected;
+
+    /**
+     * @param capacity maximal number of pending sessions
+     * @param ttlMillis time in milliseconds after which a pending session expires
+     * @param overflowPolicy what happens to a new session when the table is full
+     * @throws IllegalArgumentException if {@code capacity} or {@code ttlMillis} is not positive
+     */
+    public PendingSessionTable(int capacity, long ttlMillis, SessionOverflowPolicy overflowPolicy) {
+        this(capacity, ttlMillis, overflowPolicy, System::nanoTime);
+    }
+
+    PendingSessionTable(int capacity, long ttlMillis, SessionOverflowPolicy overflowPolicy, LongSupplier nanoTime) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and time-to-live must be positive");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.tickNanos = Math.max(1, ttlNanos / (WHEELSLOTS / 2 - 1));
+        this.overflowPolicy = overflowPolicy;
+        this.nanoTime = nanoTime;
+        this.nextTick = Math.floorDiv(nanoTime.getAsLong(), tickNanos);
+    }
+
+    /**
+     * Tells whether a new session would be accepted now, so that a server can refuse a login before computing it.
+     *
+     * @return false if the table is full and its policy is {@link SessionOverflowPolicy#REJECT}
+     */
+    public synchronized boolean accepts() {
+        advance(nanoTime.getAsLong());
+        if (sessions.size() < capacity || overflowPolicy == SessionOverflowPolicy.EVICT_OLDEST) {
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Stores the session under a new random id.
+     *
+     * @param sessionConfiguration server's configuration of the session
+     * @return opaque id of the session, or null if the table is full and its policy is {@link SessionOverflowPolicy#REJECT}
+     */
+    public synchronized ByteArrayWrapper put(SessionConfigurationServer sessionConfiguration) {
+        long now = nanoTime.getAsLong();
+        advance(now);
+        if (sessions.size() >= capacity) {
+            if (overflowPolicy == SessionOverflowPolicy.REJECT) {
+                rejected++;
+                return null;
+            }
+            Iterator<Entry> oldest = sessions.values().iterator();
+            unlink(oldest.next());
+            oldest.remove();
+            evicted++;
+        }
+        byte[] id = new byte[SESSIONIDSIZE];
+        secureRandom.nextBytes(id);
+        Entry entry = new Entry(new ByteArrayWrapper(id), sessionConfiguration, now + ttlNanos);
+        sessions.put(entry.id, entry);
+        link(entry);
+        return entry.id;
+    }
+
+    /**
+     * Removes the session, so it can never be taken again.
+     *
+     * @param sessionId opaque id of the session
+     * @return server's configuration of the session, or null if the id is unknown, was taken or the session expired
+     */
+    public synchronized SessionConfigurationServer take(ByteArrayWrapper sessionId) {
+        long now = nanoTime.getAsLong();
+        advance(now);
+        Entry entry = sessions.remove(sessionId);
+        if (entry == null) {
+            return null;
+        }
+        unlink(entry);
+        if (entry.deadline - now <= 0) {
+            expired++;
+            return null;
+        }
+        return entry.sessionConfiguration;
+    }
+
+    /**
+     * Empties the slots of all ticks before the current one.
+     */
+    private void advance(long now) {
+        long tick = Math.floorDiv(now, tickNanos);  // System.nanoTime may be negative
+        if (tick - nextTick >= WHEELSLOTS) {  // every session in the wheel expired in the meantime
+            expired += sessions.size();
+            sessions.clear();
+            Arrays.fill(wheel, null);
+            nextTick = tick;
+            return;
+        }
+        for (; nextTick < tick; nextTick++) {
+            int slot = Math.floorMod(nextTick, WHEELSLOTS);
+            for (Entry entry = wheel[slot]; entry != null; entry = entry.next) {
+                sessions.remove(entry.id);
+                expired++;
+            }
+            wheel[slot] = null;
+        }
+    }
+
+    private void link(Entry entry) {
+        entry.slot = Math.floorMod(Math.floorDiv(entry.deadline, tickNanos), WHEELSLOTS);
+        entry.next = wheel[entry.slot];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        wheel[entry.slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous == null) {
+            wheel[entry.slot] = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+    }
+
+    /**
+     * @return number of pending sessions, including the ones expiring in the current tick
+     */
+    public synchronized int size() {
+        advance(nanoTime.getAsLong());
+        return sessions.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Pending session, linked in the list of its wheel slot.
+     */
+    private static final class Entry {
+
+        private final ByteArrayWrapper id;
+        private final SessionConfigurationServer sessionConfiguration;
+        private final long deadline;
+        private int slot;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(ByteArrayWrapper id, SessionConfigurationServer sessionConfiguration, long deadline) {
+            this.id = id;
+            this.sessionConfiguration = sessionConfiguration;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import protocol.ProtocolConfiguration;
 import protocol.ServersResponseScs;
 import protocol.polynomial.NttPolynomial;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The {@code Server} interface defines the server-side operations of the protocol
  * described in <a href="https://doi.org/10.1007/978-3-319-75160-3_8">the protocol</a>.
@@ -26,6 +29,8 @@ import protocol.polynomial.NttPolynomial;
  *         <li>server's session configuration (allowing the server to continue with other clients)</li>
  *       </ul>
  *   </li>
+ *   <li>{@link #computeSharedSecrets(List, List)} – the same for a batch of clients at once, which lets
+ *       implementations share work across the batch</li>
  *   <li>{@link #verifyKeysEntities(SessionConfigurationServer, ByteArrayWrapper)} –
  *       verifies that both parties constructed the same key and authenticate client.
  *       Firstly verify client’s message {@code m1}, and then return the corresponding server response.
@@ -64,6 +69,28 @@ public interface Server {
      */
     ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt);
 
+    /**
+     * Computes shared secrets on server's side for a batch of sessions, as
+     * {@link #computeSharedSecret(ByteArrayWrapper, NttPolynomial)} does for each of them.
+     * The default implementation does exactly that, one client after another.
+     *
+     * @param identities - clients' identities
+     * @param piNtts - polynomials representing clients' ephemeral public keys in NTT form, in the order of identities
+     * @return for every client, in the order of identities, the response
+     * {@link #computeSharedSecret(ByteArrayWrapper, NttPolynomial)} would return, i.e. null if it is not enrolled
+     * @throws IllegalArgumentException if the lists are not of the same size
+     */
+    default List<ServersResponseScs> computeSharedSecrets(List<ByteArrayWrapper> identities, List<NttPolynomial> piNtts) {
+        if (identities.size() != piNtts.size()) {
+            throw new IllegalArgumentException("Every identity needs exactly one ephemeral public key");
+        }
+        List<ServersResponseScs> responses = new ArrayList<>(identities.size());
+        for (int i = 0; i < identities.size(); i++) {
+            responses.add(computeSharedSecret(identities.get(i), piNtts.get(i)));
+        }
+        return responses;
+    }
+
     /**
      * Verifies that both parties have derived the same key and authenticate client.
      *
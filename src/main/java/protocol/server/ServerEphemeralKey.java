@@ -0,0 +1,149 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.PublicPolynomialCache;
+import protocol.random.RandomCustom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static protocol.polynomial.Utils.generateRandomErrorPolysNtt;
+import static protocol.polynomial.Utils.generateUniformPolysNtt;
+import static protocol.polynomial.Utils.multiply2NttTuplesAddThemTogetherNtt;
+
+/**
+ * The {@code ServerEphemeralKey} class represents the part of the server's login computation
+ * that does not depend on the client's ephemeral public key {@code pi}.
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code s1PrimeNtt}       – {@code NttPolynomial}, server's ephemeral secret s1'</li>
+ *   <li>{@code aS1PrimeNtt}      – {@code NttPolynomial}, as1' + 2e1' (server's ephemeral public key without v)</li>
+ *   <li>{@code e1TriplePrimeNtt} – {@code NttPolynomial}, error polynomial e1'''</li>
+ * </ul>
+ *
+ * <p>Error polynomial e1' is needed only to compute as1' + 2e1', so it is not kept.
+ * Every instance must be used for one login only.</p>
+ *
+ * @author Martin Zimka
+ */
+final class ServerEphemeralKey {
+
+    private final NttPolynomial s1PrimeNtt;
+    private final NttPolynomial aS1PrimeNtt;
+    private final NttPolynomial e1TriplePrimeNtt;
+
+    private ServerEphemeralKey(NttPolynomial s1PrimeNtt, NttPolynomial aS1PrimeNtt, NttPolynomial e1TriplePrimeNtt) {
+        this.s1PrimeNtt = s1PrimeNtt;
+        this.aS1PrimeNtt = aS1PrimeNtt;
+        this.e1TriplePrimeNtt = e1TriplePrimeNtt;
+    }
+
+    /**
+     * Samples s1', e1', e1''' and computes as1' + 2e1' for the public polynomial a expanded from {@code publicSeedForA}.
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param cache cache of public polynomials used unless {@code aNtt} is given;
+     *              if it is disabled, a is created from public seed on the fly
+     * @param publicSeedForA public seed of the client's public polynomial a
+     * @param aNtt public polynomial a if already expanded (e.g. by the database), otherwise null
+     * @return fresh ephemeral key
+     */
+    static ServerEphemeralKey generate(PolynomialConfig pc, RandomCustom rc, PublicPolynomialCache cache, ByteArrayWrapper publicSeedForA, NttPolynomial aNtt) {
+        return generate(pc, rc, cache, publicSeedForA, aNtt, null);
+    }
+
+    /**
+     * Does the same as {@link #generate(PolynomialConfig, RandomCustom, PublicPolynomialCache, ByteArrayWrapper, NttPolynomial)},
+     * but if a has to be taken from the cache, it is expanded on {@code pool} while s1', e1' and e1''' are sampled.
+     * Expansion of a draws no randomness, so the result is the same.
+     *
+     * @param pool pool expanding a in parallel, or null to compute everything on the calling thread
+     * @return fresh ephemeral key
+     */
+    static ServerEphemeralKey generate(PolynomialConfig pc, RandomCustom rc, PublicPolynomialCache cache, ByteArrayWrapper publicSeedForA,
+                                       NttPolynomial aNtt, ForkJoinPool pool) {
+        ForkJoinTask<NttPolynomial> expansion = pool != null && aNtt == null && cache.getCapacity() > 0
+                ? pool.submit(() -> cache.getOrExpand(rc, publicSeedForA))
+                : null;
+        NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(pc);
+        // Compute s1', e1' and e1''' together.
+        List<NttPolynomial> errorPolysNtt = generateRandomErrorPolysNtt(pc, rc, 3);
+        NttPolynomial s1PrimeNtt = errorPolysNtt.get(0);
+        NttPolynomial e1PrimeNtt = errorPolysNtt.get(1);
+        if (expansion != null) {
+            aNtt = expansion.join();
+        }
+        // as1' + 2e1' //
+        NttPolynomial aS1PrimeNtt = aNtt != null
+                ? multiply2NttTuplesAddThemTogetherNtt(aNtt, s1PrimeNtt, constantTwoPolyNtt, e1PrimeNtt)
+                : cache.getCapacity() > 0
+                ? multiply2NttTuplesAddThemTogetherNtt(cache.getOrExpand(rc, publicSeedForA), s1PrimeNtt, constantTwoPolyNtt, e1PrimeNtt)
+                : multiply2NttTuplesAddThemTogetherNtt(pc, rc, publicSeedForA, s1PrimeNtt, constantTwoPolyNtt, e1PrimeNtt);
+        return new ServerEphemeralKey(s1PrimeNtt, aS1PrimeNtt, errorPolysNtt.get(2));
+    }
+
+    /**
+     * Generates ephemeral keys for a batch of logins, as {@code seeds.size()} calls of
+     * {@link #generate(PolynomialConfig, RandomCustom, PublicPolynomialCache, ByteArrayWrapper, NttPolynomial)} would,
+     * drawing the same random seeds in the same order.
+     *
+     * <p>All s1', e1' and e1''' of the batch are expanded together, and every public polynomial a not given
+     * is expanded once per distinct seed (from the cache, if enabled, or else all at once).</p>
+     *
+     * @param pc instance of a PolynomialConfig object
+     * @param rc instance of a class implementing RandomCustom interface
+     * @param cache cache of public polynomials used for seeds without a given polynomial
+     * @param seeds public seeds of the clients' public polynomials a
+     * @param aNtts public polynomials a if already expanded, otherwise null elements, in the order of seeds
+     * @return fresh ephemeral keys, in the order of seeds
+     */
+    static List<ServerEphemeralKey> generateBatch(PolynomialConfig pc, RandomCustom rc, PublicPolynomialCache cache,
+                                                  List<ByteArrayWrapper> seeds, List<NttPolynomial> aNtts) {
+        NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(pc);
+        List<NttPolynomial> errorPolysNtt = generateRandomErrorPolysNtt(pc, rc, 3 * seeds.size());
+        // Expand every missing a once, even if several clients of the batch share the seed.
+        Map<ByteArrayWrapper, NttPolynomial> expanded = new HashMap<>();
+        List<ByteArrayWrapper> toExpand = new ArrayList<>();
+        for (int i = 0; i < seeds.size(); i++) {
+            ByteArrayWrapper seed = seeds.get(i);
+            if (aNtts.get(i) == null && !expanded.containsKey(seed)) {
+                expanded.put(seed, cache.getCapacity() > 0 ? cache.getOrExpand(rc, seed) : null);
+                if (cache.getCapacity() == 0) {
+                    toExpand.add(seed);
+                }
+            }
+        }
+        List<NttPolynomial> expandedNow = generateUniformPolysNtt(pc, rc, toExpand);
+        for (int i = 0; i < toExpand.size(); i++) {
+            expanded.put(toExpand.get(i), expandedNow.get(i));
+        }
+        List<ServerEphemeralKey> keys = new ArrayList<>(seeds.size());
+        for (int i = 0; i < seeds.size(); i++) {
+            NttPolynomial aNtt = aNtts.get(i) != null ? aNtts.get(i) : expanded.get(seeds.get(i));
+            NttPolynomial s1PrimeNtt = errorPolysNtt.get(3 * i);
+            NttPolynomial aS1PrimeNtt = multiply2NttTuplesAddThemTogetherNtt(aNtt, s1PrimeNtt, constantTwoPolyNtt, errorPolysNtt.get(3 * i + 1));
+            keys.add(new ServerEphemeralKey(s1PrimeNtt, aS1PrimeNtt, errorPolysNtt.get(3 * i + 2)));
+        }
+        return keys;
+    }
+
+    NttPolynomial getS1PrimeNtt() {
+        return s1PrimeNtt;
+    }
+
+    NttPolynomial getAS1PrimeNtt() {
+        return aS1PrimeNtt;
+    }
+
+    NttPolynomial getE1TriplePrimeNtt() {
+        return e1TriplePrimeNtt;
+    }
+}
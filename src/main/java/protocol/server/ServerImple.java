@@ -7,10 +7,17 @@ import protocol.ServersResponseScs;
 import protocol.polynomial.ClassicalPolynomial;
 import protocol.polynomial.NttPolynomial;
 import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.PublicPolynomialCache;
 import protocol.random.RandomCustom;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.IntStream;
 
 import static protocol.polynomial.Utils.*;
@@ -18,22 +25,79 @@ import static protocol.polynomial.Utils.*;
 /**
  * The {@code ServerImple} class implements {@link Server} interface.
  *
+ * <p>Optional settings are given to the constructor as {@link ServerOptions}.</p>
+ *
+ * <p>Public polynomials {@code a} of returning clients are kept in a {@link PublicPolynomialCache}
+ * of {@code DEFAULTPUBLICPOLYNOMIALCACHECAPACITY} entries (or of the capacity given in the options),
+ * so that a login does not have to expand {@code a} from the client's public seed again.</p>
+ *
+ * <p>Optionally, the server keeps an {@link EphemeralKeyPool} of its ephemeral keys precomputed in the background
+ * for every enrolled client (up to {@code MAXPOOLEDCLIENTS} clients). The pool is disabled by default,
+ * because it draws randomness in the background threads, independently of the order of logins.</p>
+ *
+ * <p>Optionally, a single login forks its independent steps onto an {@code intraLoginPool}: a missing public
+ * polynomial a is expanded while s1', e1' and e1''' are sampled, and u is expanded while (v + pi)s1' + 2e1'''
+ * is computed. Neither step draws randomness, so the results are the same. This lowers the latency of a login
+ * on a lightly loaded many-core server only, so it is done only for {@code n} of at least {@code PARALLELTHRESHOLD}
+ * and switches itself off under saturation, i.e. while more than half of the pool's parallelism is taken by logins
+ * in progress or the pool has queued submissions; saturated servers gain more throughput from computing every login
+ * on one thread.</p>
+ *
  * @author Martin Zimka
  */
-public class ServerImple implements Server {
+public class ServerImple implements Server, AutoCloseable {
+
+    public static final int DEFAULTPUBLICPOLYNOMIALCACHECAPACITY = 256;
+    public static final int MAXPOOLEDCLIENTS = 1024;
+    public static final int PARALLELTHRESHOLD = 512;  // smallest n worth forking a login for
 
     private final int n;
     private final ProtocolConfiguration protocolConfiguration;
     private final RandomCustom randomCustomImple;
     private final Ding12Imple ding12;
     private final PolynomialConfig polynomialConfig;
+    private final ServersDatabase serversDatabase;
+    private final PublicPolynomialCache publicPolynomialCache;
+    private final EphemeralKeyPool ephemeralKeyPool;  // null if disabled
+    private final ForkJoinPool intraLoginPool;  // null if disabled
+    private final AtomicInteger activeLogins = new AtomicInteger();
+    private final LongAdder forkedLogins = new LongAdder();
 
     public ServerImple(RandomCustom random, int n, BigInteger q, int eta) {
-        this.n = n;
+        this(random, new ProtocolConfiguration(n, q, eta));
+    }
+
+    /**
+     * @param random object of a class implementing {@link RandomCustom}, must use the configured sampling mode
+     * @param protocolConfiguration n, q, eta and sampling mode the server (and all its clients) work with
+     * @throws IllegalArgumentException if {@code random} uses different sampling mode than the configuration
+     */
+    public ServerImple(RandomCustom random, ProtocolConfiguration protocolConfiguration) {
+        this(random, protocolConfiguration, ServerOptions.defaults());
+    }
+
+    /**
+     * @param random object of a class implementing {@link RandomCustom}, must use the configured sampling mode
+     *               and must be thread-safe if the pool of ephemeral keys or the intra-login pool is enabled
+     * @param protocolConfiguration n, q, eta and sampling mode the server (and all its clients) work with
+     * @param options database, cache capacity, pool of ephemeral keys and intra-login pool of the server
+     * @throws IllegalArgumentException if {@code random} uses different sampling mode than the configuration
+     */
+    public ServerImple(RandomCustom random, ProtocolConfiguration protocolConfiguration, ServerOptions options) {
+        if (random.getSamplingMode() != protocolConfiguration.getSamplingMode()) {
+            throw new IllegalArgumentException("RandomCustom must use the sampling mode of the protocol configuration");
+        }
+        this.n = protocolConfiguration.getN();
         this.randomCustomImple = random;
-        this.protocolConfiguration = new ProtocolConfiguration(this.n, q, eta);
-        this.polynomialConfig = new PolynomialConfig(this.n, q);
-        this.ding12 = new Ding12Imple(q);
+        this.protocolConfiguration = protocolConfiguration;
+        this.polynomialConfig = new PolynomialConfig(this.n, protocolConfiguration.getQ());
+        this.serversDatabase = options.getServersDatabase() != null ? options.getServersDatabase() : new ServersDatabaseImple();
+        this.ding12 = new Ding12Imple(protocolConfiguration.getQ());
+        this.publicPolynomialCache = new PublicPolynomialCache(polynomialConfig, options.getPublicPolynomialCacheCapacity());
+        this.ephemeralKeyPool = options.getEphemeralKeyPoolDepth() == 0 ? null
+                : new EphemeralKeyPool(polynomialConfig, random, publicPolynomialCache, options.getEphemeralKeyPoolDepth(),
+                        options.getEphemeralKeyPoolThreads(), MAXPOOLEDCLIENTS);
+        this.intraLoginPool = options.getIntraLoginPool();
     }
 
     @Override
@@ -41,6 +105,37 @@ public class ServerImple implements Server {
         return protocolConfiguration;
     }
 
+    /**
+     * @return cache of public polynomials, exposed for its metrics
+     */
+    public PublicPolynomialCache getPublicPolynomialCache() {
+        return publicPolynomialCache;
+    }
+
+    /**
+     * @return pool of precomputed ephemeral keys, exposed for its metrics, or null if it is disabled
+     */
+    public EphemeralKeyPool getEphemeralKeyPool() {
+        return ephemeralKeyPool;
+    }
+
+    /**
+     * @return number of logins whose independent steps were forked onto the intra-login pool
+     */
+    public long getForkedLogins() {
+        return forkedLogins.sum();
+    }
+
+    /**
+     * Stops refilling the pool of ephemeral keys, if enabled.
+     */
+    @Override
+    public void close() {
+        if (ephemeralKeyPool != null) {
+            ephemeralKeyPool.close();
+        }
+    }
+
     /**
      * Under client's identity saves client's salt, verifier (in NTT form) and public seed for public polynomial a
      * to the server's database.
@@ -52,7 +147,10 @@ public class ServerImple implements Server {
      */
     @Override
     public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
-        ServersDatabase.saveClient(I, new ClientRecord(publicSeedForA, salt, vNtt));
+        serversDatabase.saveClient(I, new ClientRecord(publicSeedForA, salt, vNtt));
+        if (ephemeralKeyPool != null) {  // Start precomputing ephemeral keys for the client's logins.
+            ephemeralKeyPool.register(publicSeedForA);
+        }
     }
 
     /**
@@ -65,39 +163,156 @@ public class ServerImple implements Server {
      */
     @Override
     public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        if (intraLoginPool == null || n < PARALLELTHRESHOLD) {
+            return computeSharedSecret(I, piNtt, null);
+        }
+        int active = activeLogins.incrementAndGet();
+        try {
+            // Fork only while the pool has spare threads, under saturation forking costs throughput.
+            boolean fork = active * 2 <= intraLoginPool.getParallelism() && !intraLoginPool.hasQueuedSubmissions();
+            if (fork) {
+                forkedLogins.increment();
+            }
+            return computeSharedSecret(I, piNtt, fork ? intraLoginPool : null);
+        } finally {
+            activeLogins.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param pool pool running independent steps of the login in parallel, or null to compute it on the calling thread
+     */
+    private ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt, ForkJoinPool pool) {
         NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
-        // Extract database. //
-        if (!ServersDatabase.contains(I)) {
+        // Extract database (one lookup). //
+        ClientRecord clientRecord = serversDatabase.findClient(I);
+        if (clientRecord == null) {
             return null;
         }
-        ByteArrayWrapper publicSeedForA = ServersDatabase.getClient(I).getPublicSeedForA();
-        NttPolynomial vNtt = ServersDatabase.getClient(I).getVerifierNtt();
-        ByteArrayWrapper salt = ServersDatabase.getClient(I).getSalt();
+        ByteArrayWrapper publicSeedForA = clientRecord.getPublicSeedForA();
+        NttPolynomial vNtt = clientRecord.getVerifierNtt();
+        ByteArrayWrapper salt = clientRecord.getSalt();
         // pj = as1' + 2e1' + v //
-        // Create polynomial a from public seed.
-        NttPolynomial aNtt = generateUniformPolyNtt(polynomialConfig, randomCustomImple, publicSeedForA);
-        // Compute s1'.
-        NttPolynomial s1PrimeNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
-        // Compute e1'.
-        NttPolynomial e1PrimeNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
-        // Do all the math.
-        NttPolynomial summedFstTwoTuples = multiply2NttTuplesAddThemTogetherNtt(aNtt, s1PrimeNtt, constantTwoPolyNtt, e1PrimeNtt);
-        NttPolynomial pjNtt = summedFstTwoTuples.add(vNtt);
-        // u = XOF(H(pi || pj)) //
-        NttPolynomial uNtt = computeUNtt(polynomialConfig, randomCustomImple, piNtt, pjNtt);
+        // Take s1', as1' + 2e1' and e1''' (needed later) precomputed by the pool, or compute them now
+        // (with a expanded by the database, if it keeps it).
+        ServerEphemeralKey ephemeralKey = ephemeralKeyPool == null ? null : ephemeralKeyPool.poll(publicSeedForA);
+        if (ephemeralKey == null) {
+            ephemeralKey = ServerEphemeralKey.generate(polynomialConfig, randomCustomImple, publicPolynomialCache, publicSeedForA,
+                    clientRecord.getPublicPolynomialNtt(), pool);
+        }
+        NttPolynomial pjNtt = ephemeralKey.getAS1PrimeNtt().add(vNtt);
+        if (pool == null) {
+            // u = XOF(H(pi || pj)) //
+            NttPolynomial uNtt = computeUNtt(polynomialConfig, randomCustomImple, piNtt, pjNtt);
+            return respond(salt, vNtt, ephemeralKey, piNtt, pjNtt, uNtt, constantTwoPolyNtt);
+        }
+        // u = XOF(H(pi || pj)) on the pool, meanwhile (v + pi)s1' + 2e1''' //
+        ForkJoinTask<NttPolynomial> uNtt = pool.submit(() -> computeUNtt(polynomialConfig, randomCustomImple, piNtt, pjNtt));
+        NttPolynomial withoutUv = multiply2NttTuplesAddThemTogetherNtt(vNtt.add(piNtt), ephemeralKey.getS1PrimeNtt(),
+                constantTwoPolyNtt, ephemeralKey.getE1TriplePrimeNtt());
         // kj = (v + pi)s1' + uv + 2e1''' //
-        // Compute e1'''.
-        NttPolynomial e1TriplePrimeNtt = generateRandomErrorPolyNtt(polynomialConfig, randomCustomImple);
+        ClassicalPolynomial kj = new ClassicalPolynomial(withoutUv.add(uNtt.join().multiply(vNtt)), polynomialConfig);
+        return respond(salt, piNtt, pjNtt, kj);
+    }
+
+    /**
+     * Computes shared secrets on server's side for a batch of sessions.
+     *
+     * <p>The work is shared across the batch: ephemeral keys of all clients are sampled together
+     * (see {@code ServerEphemeralKey.generateBatch}), every public polynomial a is expanded once per distinct seed,
+     * and all polynomials u are expanded at once, which lets the {@code RandomCustom} run the SHAKE instances
+     * of the whole batch in parallel lanes. The responses equal those of single calls, except that random values
+     * are drawn in another order: all seeds of ephemeral keys first, then the Signal function outputs
+     * of one client after another.</p>
+     *
+     * @param identities - clients' identities
+     * @param piNtts - polynomials representing clients' ephemeral public keys in NTT form, in the order of identities
+     * @return for every client, in the order of identities, the response, or null if it is not enrolled
+     * @throws IllegalArgumentException if the lists are not of the same size
+     */
+    @Override
+    public List<ServersResponseScs> computeSharedSecrets(List<ByteArrayWrapper> identities, List<NttPolynomial> piNtts) {
+        if (identities.size() != piNtts.size()) {
+            throw new IllegalArgumentException("Every identity needs exactly one ephemeral public key");
+        }
+        NttPolynomial constantTwoPolyNtt = NttPolynomial.constantTwoNtt(polynomialConfig);
+        int count = identities.size();
+        ClientRecord[] clientRecords = new ClientRecord[count];
+        ServerEphemeralKey[] ephemeralKeys = new ServerEphemeralKey[count];
+        List<Integer> toGenerate = new ArrayList<>();
+        List<ByteArrayWrapper> seedsToGenerate = new ArrayList<>();
+        List<NttPolynomial> aNttsToGenerate = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            clientRecords[i] = serversDatabase.findClient(identities.get(i));
+            if (clientRecords[i] == null) {
+                continue;
+            }
+            ephemeralKeys[i] = ephemeralKeyPool == null ? null : ephemeralKeyPool.poll(clientRecords[i].getPublicSeedForA());
+            if (ephemeralKeys[i] == null) {
+                toGenerate.add(i);
+                seedsToGenerate.add(clientRecords[i].getPublicSeedForA());
+                aNttsToGenerate.add(clientRecords[i].getPublicPolynomialNtt());
+            }
+        }
+        List<ServerEphemeralKey> generated = ServerEphemeralKey.generateBatch(polynomialConfig, randomCustomImple, publicPolynomialCache,
+                seedsToGenerate, aNttsToGenerate);
+        for (int j = 0; j < toGenerate.size(); j++) {
+            ephemeralKeys[toGenerate.get(j)] = generated.get(j);
+        }
+        // pj = as1' + 2e1' + v, u = XOF(H(pi || pj)) for all clients at once //
+        NttPolynomial[] pjNtts = new NttPolynomial[count];
+        List<ByteArrayWrapper> uSeeds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (clientRecords[i] != null) {
+                pjNtts[i] = ephemeralKeys[i].getAS1PrimeNtt().add(clientRecords[i].getVerifierNtt());
+                uSeeds.add(piNtts.get(i).concatWith(pjNtts[i]).toByteArrayWrapper().hashWrapped());
+            }
+        }
+        Iterator<NttPolynomial> uNtts = generateUniformPolysNtt(polynomialConfig, randomCustomImple, uSeeds).iterator();
+        List<ServersResponseScs> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ClientRecord clientRecord = clientRecords[i];
+            responses.add(clientRecord == null ? null : respond(clientRecord.getSalt(), clientRecord.getVerifierNtt(), ephemeralKeys[i],
+                    piNtts.get(i), pjNtts[i], uNtts.next(), constantTwoPolyNtt));
+        }
+        return responses;
+    }
+
+    /**
+     * Finishes the login computation once the server's ephemeral public key pj and u are known.
+     *
+     * @return the client’s salt, pj, outputs of the Signal function and server's session configuration
+     */
+    private ServersResponseScs respond(ByteArrayWrapper salt, NttPolynomial vNtt, ServerEphemeralKey ephemeralKey, NttPolynomial piNtt,
+                                       NttPolynomial pjNtt, NttPolynomial uNtt, NttPolynomial constantTwoPolyNtt) {
+        NttPolynomial s1PrimeNtt = ephemeralKey.getS1PrimeNtt();
+        // kj = (v + pi)s1' + uv + 2e1''' //
+        NttPolynomial e1TriplePrimeNtt = ephemeralKey.getE1TriplePrimeNtt();
         // Do all the math.
         NttPolynomial bracket = vNtt.add(piNtt);
         ClassicalPolynomial kj = multiply3NttTuplesAndAddThemTogether(polynomialConfig, bracket, s1PrimeNtt, uNtt, vNtt, constantTwoPolyNtt, e1TriplePrimeNtt);
+        return respond(salt, piNtt, pjNtt, kj);
+    }
+
+    /**
+     * Finishes the login computation once the key exchange material kj is known.
+     *
+     * @return the client’s salt, pj, outputs of the Signal function and server's session configuration
+     */
+    private ServersResponseScs respond(ByteArrayWrapper salt, NttPolynomial piNtt, NttPolynomial pjNtt, ClassicalPolynomial kj) {
         // wj = Cha(kj) //
         List<Integer> wj = IntStream.range(0, n).mapToObj(i -> ding12.signalFunction(randomCustomImple, kj.getCoefficients().get(i))).toList();
         // sigmaj = Mod_2(kj, wj) //
         List<Integer> sigmaj = IntStream.range(0, n).mapToObj(i -> ding12.robustExtractor(kj.getCoefficients().get(i), wj.get(i))).toList();
         // skj = SHA3-256(sigmaj) //
         ByteArrayWrapper skj = new ByteArrayWrapper(sigmaj).hashWrapped();
-        return new ServersResponseScs(salt, pjNtt, wj, new SessionConfigurationServer(piNtt, pjNtt, skj));
+        // Precompute M1' and M2', so the session does not need to keep pi and pj.
+        ByteArrayWrapper piBytes = piNtt.toByteArrayWrapper();
+        // M1' = SHA3-256(pi || pj || skj) //
+        ByteArrayWrapper m1Prime = piBytes.concatWith(pjNtt.toByteArrayWrapper()).concatWith(skj).hashWrapped();
+        // M2' = SHA3-256(pi || M1' || skj) //
+        ByteArrayWrapper m2Prime = piBytes.concatWith(m1Prime).concatWith(skj).hashWrapped();
+        return new ServersResponseScs(salt, pjNtt, wj, new SessionConfigurationServer(m1Prime, m2Prime, skj));
     }
 
     /**
@@ -110,14 +325,7 @@ public class ServerImple implements Server {
      */
     @Override
     public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer sessionConfiguration, ByteArrayWrapper m1) {
-        NttPolynomial piNtt = sessionConfiguration.getClientsEphPubKey();
-        NttPolynomial pjNtt = sessionConfiguration.getServersEphPubKey();
-        ByteArrayWrapper skj = sessionConfiguration.getSharedSecret();
-        // M1' = SHA3-256(pi || pj || skj) //
-        ByteArrayWrapper m1Prime = piNtt.concatWith(pjNtt).toByteArrayWrapper().concatWith(skj).hashWrapped();
-        // VERIFY that M1 == M1'. If true, return M2', else return empty byte array.
-        // M2' = SHA3-256(pi || M1' || skj) //
-        ByteArrayWrapper m2Prime = piNtt.toByteArrayWrapper().concatWith(m1Prime).concatWith(skj).hashWrapped();
-        return m1.equals(m1Prime) ? m2Prime : null;
+        // VERIFY that M1 == M1' (computed in the first phase). If true, return M2', else return null.
+        return m1.equals(sessionConfiguration.getExpectedM1()) ? sessionConfiguration.getM2() : null;
     }
 }
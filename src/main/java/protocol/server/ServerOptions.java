@@ -0,0 +1,125 @@
+package protocol.server;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@code ServerOptions} class represents optional settings of {@link ServerImple}.
+ *
+ * <p>Options are immutable: {@link #defaults()} returns the default ones and every {@code with} method returns a copy
+ * with one setting changed, e.g.
+ * {@code ServerOptions.defaults().withServersDatabase(database).withEphemeralKeyPool(4, 2)}.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code serversDatabase}               – {@code ServersDatabase}, database of enrolled clients,
+ *                                               null (default) gives every server its own {@link ServersDatabaseImple}</li>
+ *   <li>{@code publicPolynomialCacheCapacity} – {@code int}, maximal number of cached public polynomials,
+ *                                               0 disables the cache; {@link ServerImple#DEFAULTPUBLICPOLYNOMIALCACHECAPACITY}
+ *                                               by default</li>
+ *   <li>{@code ephemeralKeyPoolDepth}         – {@code int}, number of ephemeral keys kept ready per client,
+ *                                               0 (default) disables the pool</li>
+ *   <li>{@code ephemeralKeyPoolThreads}       – {@code int}, number of threads refilling the pool,
+ *                                               0 if the pool is disabled</li>
+ *   <li>{@code intraLoginPool}                – {@code ForkJoinPool}, pool running independent steps of a login
+ *                                               in parallel, null (default) disables it</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public final class ServerOptions {
+
+    private static final ServerOptions DEFAULTS = new ServerOptions(null, ServerImple.DEFAULTPUBLICPOLYNOMIALCACHECAPACITY, 0, 0, null);
+
+    private final ServersDatabase serversDatabase;
+    private final int publicPolynomialCacheCapacity;
+    private final int ephemeralKeyPoolDepth;
+    private final int ephemeralKeyPoolThreads;
+    private final ForkJoinPool intraLoginPool;
+
+    private ServerOptions(ServersDatabase serversDatabase, int publicPolynomialCacheCapacity, int ephemeralKeyPoolDepth,
+                          int ephemeralKeyPoolThreads, ForkJoinPool intraLoginPool) {
+        this.serversDatabase = serversDatabase;
+        this.publicPolynomialCacheCapacity = publicPolynomialCacheCapacity;
+        this.ephemeralKeyPoolDepth = ephemeralKeyPoolDepth;
+        this.ephemeralKeyPoolThreads = ephemeralKeyPoolThreads;
+        this.intraLoginPool = intraLoginPool;
+    }
+
+    /**
+     * @return default options: own in-memory database, cache of the default capacity, no pool of ephemeral keys
+     * and no intra-login pool
+     */
+    public static ServerOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param serversDatabase database of enrolled clients; it must be used by one server only,
+     *                        so options holding it must not be reused for another server
+     * @return copy of these options with the database
+     */
+    public ServerOptions withServersDatabase(ServersDatabase serversDatabase) {
+        return new ServerOptions(Objects.requireNonNull(serversDatabase), publicPolynomialCacheCapacity,
+                ephemeralKeyPoolDepth, ephemeralKeyPoolThreads, intraLoginPool);
+    }
+
+    /**
+     * @param publicPolynomialCacheCapacity maximal number of cached public polynomials, 0 disables the cache
+     * @return copy of these options with the capacity
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public ServerOptions withPublicPolynomialCacheCapacity(int publicPolynomialCacheCapacity) {
+        if (publicPolynomialCacheCapacity < 0) {
+            throw new IllegalArgumentException("Capacity of the public polynomial cache must not be negative");
+        }
+        return new ServerOptions(serversDatabase, publicPolynomialCacheCapacity, ephemeralKeyPoolDepth,
+                ephemeralKeyPoolThreads, intraLoginPool);
+    }
+
+    /**
+     * @param depth number of ephemeral keys kept ready per client, 0 disables the pool
+     * @param threads number of threads refilling the pool, ignored if the pool is disabled
+     * @return copy of these options with the pool of ephemeral keys
+     * @throws IllegalArgumentException if the depth is negative or an enabled pool has no thread
+     */
+    public ServerOptions withEphemeralKeyPool(int depth, int threads) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth of the pool of ephemeral keys must not be negative");
+        }
+        if (depth > 0 && threads <= 0) {
+            throw new IllegalArgumentException("Pool of ephemeral keys needs at least one thread");
+        }
+        return new ServerOptions(serversDatabase, publicPolynomialCacheCapacity, depth, depth == 0 ? 0 : threads, intraLoginPool);
+    }
+
+    /**
+     * @param intraLoginPool pool running independent steps of a login in parallel, null disables it;
+     *                       it is not shut down by {@link ServerImple#close()}
+     * @return copy of these options with the intra-login pool
+     */
+    public ServerOptions withIntraLoginPool(ForkJoinPool intraLoginPool) {
+        return new ServerOptions(serversDatabase, publicPolynomialCacheCapacity, ephemeralKeyPoolDepth,
+                ephemeralKeyPoolThreads, intraLoginPool);
+    }
+
+    public ServersDatabase getServersDatabase() {
+        return serversDatabase;
+    }
+
+    public int getPublicPolynomialCacheCapacity() {
+        return publicPolynomialCacheCapacity;
+    }
+
+    public int getEphemeralKeyPoolDepth() {
+        return ephemeralKeyPoolDepth;
+    }
+
+    public int getEphemeralKeyPoolThreads() {
+        return ephemeralKeyPoolThreads;
+    }
+
+    public ForkJoinPool getIntraLoginPool() {
+        return intraLoginPool;
+    }
+}
@@ -2,42 +2,38 @@ package protocol.server;
 
 import protocol.ByteArrayWrapper;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
- * The {@code ServersDatabase} class represents the server-side client database.
+ * The {@code ServersDatabase} interface represents the server-side client database.
  * <p>
  * It stores client records, keyed by client identity. Each record contains
  * the public seed for {@code a}, salt, and verifier in NTT form.
  * </p>
  *
+ * <p>The interface provides the following methods:</p>
+ * <ul>
+ *   <li>{@link #saveClient(ByteArrayWrapper, ClientRecord)} – stores (or rewrites) the record of a client</li>
+ *   <li>{@link #findClient(ByteArrayWrapper)} – returns the record of a client, or null if it is not enrolled</li>
+ * </ul>
+ *
+ * <p>Implementations must be safe under concurrent enrollments and logins; one database belongs to one server.</p>
+ *
  * @author Martin Zimka
  */
-final class ServersDatabase {
-
-    private static final Map<ByteArrayWrapper, ClientRecord> database = new HashMap<>();
-
-    private ServersDatabase(){}
+public interface ServersDatabase {
 
     /**
      * If client with the same identity already exist in the database, rewrites it.
+     *
+     * @param identity client's identity
+     * @param clientRecord client's public seed for a, salt and verifier
      */
-    static void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
-        database.put(identity, clientRecord);
-    }
+    void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord);
 
     /**
-     * Throws an exception if client with inputted identity does not exist in the database!
+     * Looks the client up by its identity.
+     *
+     * @param identity client's identity
+     * @return client's record, or null if client with inputted identity does not exist in the database
      */
-    static ClientRecord getClient(ByteArrayWrapper identity) {
-        if (!database.containsKey(identity)){
-            throw new IllegalArgumentException("Client does not exist");
-        }
-        return database.get(identity);
-    }
-
-    static boolean contains(ByteArrayWrapper identity) {
-        return database.containsKey(identity);
-    }
+    ClientRecord findClient(ByteArrayWrapper identity);
 }
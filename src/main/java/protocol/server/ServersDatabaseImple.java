@@ -0,0 +1,29 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code ServersDatabaseImple} class implements {@link ServersDatabase} interface in memory.
+ *
+ * <p>Records are kept in a {@code ConcurrentHashMap}, so lookups on the login path do not take any lock
+ * and enrollments may run concurrently with them. Records are immutable, so a lookup always sees a complete one.</p>
+ *
+ * @author Martin Zimka
+ */
+public class ServersDatabaseImple implements ServersDatabase {
+
+    private final Map<ByteArrayWrapper, ClientRecord> database = new ConcurrentHashMap<>();
+
+    @Override
+    public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        database.put(identity, clientRecord);
+    }
+
+    @Override
+    public ClientRecord findClient(ByteArrayWrapper identity) {
+        return database.get(identity);
+    }
+}
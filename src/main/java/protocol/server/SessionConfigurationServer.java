@@ -1,42 +1,73 @@
 package protocol.server;
 
 import protocol.ByteArrayWrapper;
-import protocol.polynomial.NttPolynomial;
 
 /**
  * The {@code SessionConfigurationServer} class represents the server’s perspective of a client–server session.
  *
  * <p>The session configuration consists of:</p>
  * <ul>
- *   <li>{@code piNtt} – {@code NttPolynomial}, the NTT (Number Theoretic Transform) representation of the client’s
- *                                              ephemeral public key</li>
- *   <li>{@code pjNtt} – {@code NttPolynomial}, the NTT representation of the server’s ephemeral public key</li>
- *   <li>{@code skj}   – {@code ByteArrayWrapper}, the shared secret computed on the server’s side</li>
+ *   <li>{@code m1Prime} – {@code ByteArrayWrapper}, M1' = SHA3-256(pi || pj || skj), expected from the client</li>
+ *   <li>{@code m2Prime} – {@code ByteArrayWrapper}, M2' = SHA3-256(pi || M1' || skj), sent back if M1 matches</li>
+ *   <li>{@code skj}     – {@code ByteArrayWrapper}, the shared secret computed on the server’s side</li>
  * </ul>
  *
+ * <p>Ephemeral public keys pi and pj are needed only to compute M1' and M2', so both digests are computed
+ * already in the first phase of the login and the polynomials are not kept. A pending session then takes
+ * three 32-byte values instead of two polynomials of n coefficients.</p>
+ *
+ * <p>A server keeping the session in its {@link PendingSessionTable} hands out only an opaque handle instead,
+ * holding nothing but {@code sessionId}, under which the full configuration is kept by the server.</p>
+ *
  * @author Martin Zimka
  */
 public class SessionConfigurationServer {
 
-    private final NttPolynomial piNtt;
-    private final NttPolynomial pjNtt;
+    private final ByteArrayWrapper m1Prime;
+    private final ByteArrayWrapper m2Prime;
     private final ByteArrayWrapper skj;
+    private final ByteArrayWrapper sessionId;  // null unless this is a handle
 
-    SessionConfigurationServer(NttPolynomial piNtt, NttPolynomial pjNtt, ByteArrayWrapper skj) {
-        this.piNtt = piNtt;
-        this.pjNtt = pjNtt;
+    SessionConfigurationServer(ByteArrayWrapper m1Prime, ByteArrayWrapper m2Prime, ByteArrayWrapper skj) {
+        this.m1Prime = m1Prime;
+        this.m2Prime = m2Prime;
         this.skj = skj;
+        this.sessionId = null;
+    }
+
+    SessionConfigurationServer(ByteArrayWrapper sessionId) {
+        this.m1Prime = null;
+        this.m2Prime = null;
+        this.skj = null;
+        this.sessionId = sessionId;
     }
 
-    NttPolynomial getClientsEphPubKey() {
-        return piNtt;
+    /**
+     * Creates a handle of a session kept by the server, e.g. from a session id received over the network.
+     *
+     * @param sessionId opaque id of the session
+     * @return handle holding nothing but the session id
+     */
+    public static SessionConfigurationServer ofSessionId(ByteArrayWrapper sessionId) {
+        return new SessionConfigurationServer(sessionId);
     }
 
-    NttPolynomial getServersEphPubKey() {
-        return pjNtt;
+    ByteArrayWrapper getExpectedM1() {
+        return m1Prime;
+    }
+
+    ByteArrayWrapper getM2() {
+        return m2Prime;
     }
 
     ByteArrayWrapper getSharedSecret() {
         return skj;
     }
+
+    /**
+     * @return opaque id of the session if this is a handle, otherwise null
+     */
+    public ByteArrayWrapper getSessionId() {
+        return sessionId;
+    }
 }
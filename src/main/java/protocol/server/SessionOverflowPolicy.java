@@ -0,0 +1,19 @@
+package protocol.server;
+
+/**
+ * The {@code SessionOverflowPolicy} enum lists what {@link PendingSessionTable} does with a new session
+ * when it already holds as many pending sessions as its capacity allows.
+ *
+ * <ul>
+ *   <li>{@link #REJECT}       – the new session is refused, the login fails as if the client was not enrolled;
+ *                               pending logins are never disturbed</li>
+ *   <li>{@link #EVICT_OLDEST} – the oldest pending session is dropped to make room; its login then fails
+ *                               in the second phase, so a flood of abandoned handshakes cannot lock new clients out</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public enum SessionOverflowPolicy {
+    REJECT,
+    EVICT_OLDEST
+}
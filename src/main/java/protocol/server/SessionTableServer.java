@@ -0,0 +1,90 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+
+import java.util.Objects;
+
+/**
+ * The {@code SessionTableServer} class implements {@link Server} interface by keeping the state of pending logins
+ * of another server in its own {@link PendingSessionTable}.
+ *
+ * <p>The wrapped server's session configuration never leaves this server: the client gets only a handle with
+ * an opaque session id (see {@link SessionConfigurationServer}), which it passes back to
+ * {@link #verifyKeysEntities(SessionConfigurationServer, ByteArrayWrapper)}. A handle can be used once,
+ * and only until the session expires or is evicted; otherwise the verification fails.</p>
+ *
+ * <p>When the table is full and refuses new sessions, the login is refused before the wrapped server computes
+ * anything, so an overloaded server does not waste work on handshakes it cannot keep.</p>
+ *
+ * @author Martin Zimka
+ */
+public class SessionTableServer implements Server {
+
+    private final Server delegate;
+    private final PendingSessionTable sessionTable;
+
+    /**
+     * @param delegate server computing the logins
+     * @param sessionTable table of pending sessions, used by this server only
+     */
+    public SessionTableServer(Server delegate, PendingSessionTable sessionTable) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.sessionTable = Objects.requireNonNull(sessionTable);
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return delegate.getProtocolConfiguration();
+    }
+
+    /**
+     * @return table of pending sessions, exposed for its metrics
+     */
+    public PendingSessionTable getSessionTable() {
+        return sessionTable;
+    }
+
+    @Override
+    public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        delegate.enrollClient(publicSeedForA, I, salt, vNtt);
+    }
+
+    /**
+     * Computes shared secret by the wrapped server and keeps its session configuration in the table.
+     *
+     * @return server's response with a session handle instead of the session configuration,
+     * or null if the client is not enrolled or the table refuses new sessions
+     */
+    @Override
+    public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        if (!sessionTable.accepts()) {
+            return null;
+        }
+        ServersResponseScs response = delegate.computeSharedSecret(I, piNtt);
+        if (response == null) {
+            return null;
+        }
+        ByteArrayWrapper sessionId = sessionTable.put(response.getScs());
+        if (sessionId == null) {  // table was filled by concurrent logins in the meantime
+            return null;
+        }
+        return new ServersResponseScs(response.getSalt(), response.getPjNtt(), response.getWj(), new SessionConfigurationServer(sessionId));
+    }
+
+    /**
+     * Takes the session of the handle from the table and verifies it by the wrapped server.
+     *
+     * @return M2', or null if the handle is unknown, was already used, expired, or the verification failed
+     */
+    @Override
+    public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        SessionConfigurationServer sessionConfiguration = sessionTable.take(scs.getSessionId());
+        if (sessionConfiguration == null) {
+            return null;
+        }
+        return delegate.verifyKeysEntities(sessionConfiguration, m1);
+    }
+}
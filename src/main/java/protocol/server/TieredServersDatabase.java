@@ -0,0 +1,295 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.Utils;
+import protocol.random.RandomCustom;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code TieredServersDatabase} class implements {@link ServersDatabase} interface as a read-through tier
+ * in front of another (cold) database, typically {@link MappedServersDatabase} or {@link OffHeapServersDatabase}.
+ *
+ * <p>Frequently logging-in clients are kept in a bounded on-heap map as decoded {@link ClientRecord}s together with
+ * their public polynomial {@code a} already expanded (see {@link ClientRecord#getPublicPolynomialNtt()}),
+ * so their login neither decodes the verifier nor expands {@code a}. All other clients stay packed in the cold database.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code coldDatabase} – {@code ServersDatabase}, database holding all clients</li>
+ *   <li>{@code capacity}     – {@code int}, maximal number of clients kept in the hot tier</li>
+ *   <li>{@code hot}          – {@code ConcurrentHashMap}, hot clients, read without locks</li>
+ *   <li>{@code order}        – {@code LinkedHashMap}, identities of hot clients in LRU order</li>
+ *   <li>{@code sketch}       – {@code FrequencySketch}, approximate recent number of lookups of every identity</li>
+ *   <li>{@code readBuffers}  – {@code ReadBuffer[]}, lookups not yet applied to {@code order} and {@code sketch}</li>
+ *   <li>{@code promoting}    – {@code ConcurrentHashMap}, tokens of lookups which read the cold database</li>
+ *   <li>{@code hits}, {@code misses}, {@code promotions}, {@code evictions} – {@code LongAdder}, metrics of the tier</li>
+ * </ul>
+ *
+ * <p>Promotion is decided by access frequency: once the hot tier is full, a client read from the cold database
+ * replaces the least recently used hot client only if it was looked up more often recently. A burst of one-off
+ * logins therefore does not flush the clients that log in all the time. Counts are halved periodically,
+ * so clients that stopped logging in are eventually evicted.</p>
+ *
+ * <p>A hit takes no lock: it reads the hot map and records the lookup into a lossy buffer striped by thread.
+ * The buffers are drained into the LRU order and the sketch under the lock, by the thread filling a buffer
+ * if the lock is free, and before every admission. Under contention some lookups may be dropped from the buffers,
+ * which only makes the recency and frequency approximate. The lock guards admission and eviction only.</p>
+ *
+ * <p>Saving a client writes it to the cold database first and then drops it from the hot tier. A lookup that read
+ * the cold database before a concurrent save of the same client does not promote its (possibly stale) record.</p>
+ *
+ * @author Martin Zimka
+ */
+public class TieredServersDatabase implements ServersDatabase {
+
+    private static final int READBUFFERS = 16;  // power of two
+    private static final int READBUFFERSIZE = 32;  // power of two
+
+    private final ServersDatabase coldDatabase;
+    private final PolynomialConfig polynomialConfig;
+    private final RandomCustom randomCustom;
+    private final int capacity;
+    private final ConcurrentHashMap<ByteArrayWrapper, ClientRecord> hot = new ConcurrentHashMap<>();  // changed under lock
+    private final LinkedHashMap<ByteArrayWrapper, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);  // guarded by lock
+    private final FrequencySketch sketch;  // guarded by lock
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READBUFFERS];
+    private final ConcurrentHashMap<ByteArrayWrapper, Object> promoting = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param coldDatabase database holding all clients
+     * @param protocolConfiguration configuration of the server
+     * @param randomCustom instance of a class implementing RandomCustom interface, used to expand public polynomials
+     * @param capacity maximal number of clients kept in the hot tier
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public TieredServersDatabase(ServersDatabase coldDatabase, ProtocolConfiguration protocolConfiguration,
+                                 RandomCustom randomCustom, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.coldDatabase = coldDatabase;
+        this.polynomialConfig = new PolynomialConfig(protocolConfiguration.getN(), protocolConfiguration.getQ());
+        this.randomCustom = randomCustom;
+        this.capacity = capacity;
+        this.sketch = new FrequencySketch(capacity);
+        for (int i = 0; i < READBUFFERS; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    @Override
+    public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        coldDatabase.saveClient(identity, clientRecord);
+        promoting.remove(identity);  // a lookup which read the cold database before the save must not promote
+        lock.lock();
+        try {
+            if (hot.remove(identity) != null) {
+                order.remove(identity);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ClientRecord findClient(ByteArrayWrapper identity) {
+        ClientRecord clientRecord = hot.get(identity);
+        record(identity);
+        if (clientRecord != null) {
+            hits.increment();
+            return clientRecord;
+        }
+        misses.increment();
+        Object token = new Object();
+        promoting.put(identity, token);
+        try {
+            ClientRecord coldRecord = coldDatabase.findClient(identity);
+            if (coldRecord == null) {
+                return null;
+            }
+            lock.lock();
+            try {
+                drainReadBuffers();
+                if (!admits(identity)) {
+                    return coldRecord;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Expand a outside the lock, it is the expensive part of the promotion.
+            NttPolynomial aNtt = Utils.generateUniformPolyNtt(polynomialConfig, randomCustom, coldRecord.getPublicSeedForA());
+            ClientRecord hotRecord = new ClientRecord(coldRecord.getPublicSeedForA(), coldRecord.getSalt(), coldRecord.getVerifierNtt(), aNtt);
+            lock.lock();
+            try {
+                if (promoting.get(identity) == token && !hot.containsKey(identity) && admits(identity)) {
+                    if (hot.size() >= capacity) {
+                        Iterator<ByteArrayWrapper> eldest = order.keySet().iterator();
+                        hot.remove(eldest.next());
+                        eldest.remove();
+                        evictions.increment();
+                    }
+                    order.put(identity, Boolean.TRUE);
+                    hot.put(identity, hotRecord);
+                    promotions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return hotRecord;
+        } finally {
+            promoting.remove(identity, token);
+        }
+    }
+
+    /**
+     * Records a lookup into the read buffer of the calling thread, draining the buffers if it is full
+     * and the lock is free.
+     */
+    private void record(ByteArrayWrapper identity) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().threadId() & (READBUFFERS - 1)];
+        int write = buffer.writes.getAndIncrement();
+        buffer.slots.lazySet(write & (READBUFFERSIZE - 1), identity);
+        if ((write & (READBUFFERSIZE - 1)) == READBUFFERSIZE - 1 && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the recorded lookups to the LRU order and the sketch; must be called under the lock.
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            int writes = buffer.writes.get();
+            if (writes - buffer.reads > READBUFFERSIZE) {  // the oldest lookups were overwritten
+                buffer.reads = writes - READBUFFERSIZE;
+            }
+            for (; writes - buffer.reads > 0; buffer.reads++) {
+                ByteArrayWrapper identity = buffer.slots.getAndSet(buffer.reads & (READBUFFERSIZE - 1), null);
+                if (identity != null) {
+                    sketch.increment(identity);
+                    order.get(identity);  // moves a hot identity to the end of the LRU order
+                }
+            }
+        }
+    }
+
+    /**
+     * Decides whether the identity may enter the hot tier; must be called under the lock.
+     */
+    private boolean admits(ByteArrayWrapper identity) {
+        if (hot.size() < capacity) {
+            return true;
+        }
+        ByteArrayWrapper eldest = order.keySet().iterator().next();  // does not change LRU order
+        return sketch.frequency(identity) > sketch.frequency(eldest);
+    }
+
+    /**
+     * @return number of clients in the hot tier
+     */
+    public int size() {
+        return hot.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Lookups recorded by the threads mapped to one stripe, a lossy ring of the last {@code READBUFFERSIZE} ones.
+     */
+    private static final class ReadBuffer {
+
+        private final AtomicReferenceArray<ByteArrayWrapper> slots = new AtomicReferenceArray<>(READBUFFERSIZE);
+        private final AtomicInteger writes = new AtomicInteger();
+        private int reads;  // guarded by lock
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters. After {@code sampleSize} increments all counters are halved,
+     * so the estimates follow recent lookups only.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAXCOUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int increments;
+
+        private FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        private int indexOf(ByteArrayWrapper identity, int row) {
+            int hash = identity.hashCode() * SEEDS[row];
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private void increment(ByteArrayWrapper identity) {
+            for (int row = 0; row < DEPTH; row++) {
+                int index = indexOf(identity, row);
+                if (counters[row][index] < MAXCOUNT) {
+                    counters[row][index]++;
+                }
+            }
+            if (++increments == sampleSize) {
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(ByteArrayWrapper identity) {
+            int frequency = MAXCOUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][indexOf(identity, row)]);
+            }
+            return frequency;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.PackedPolynomialCodec;
+import protocol.polynomial.PolynomialConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code WalServersDatabase} class implements {@link ServersDatabase} interface durably: every enrollment
+ * is appended to a write-ahead log and forced to the disk before {@link #saveClient(ByteArrayWrapper, ClientRecord)}
+ * returns. Records are served from memory.
+ *
+ * <p>Forcing the log is by far the slowest part of an enrollment, so concurrent enrollments share it (group commit).
+ * An enrollment appends its mutation to the pending ones; the thread that then holds the commit lock writes
+ * all pending mutations at once, forces the log once and makes them visible. Enrollments arriving meanwhile
+ * are committed together by the next such thread.</p>
+ *
+ * <p>The directory contains:</p>
+ * <ul>
+ *   <li>{@code wal-<generation>.log} – logs, a mutation is {@code [length][payload][CRC32C of payload]}</li>
+ *   <li>{@code snapshot.db}          – all records at the moment the log of {@code generation} was started</li>
+ * </ul>
+ *
+ * <p>Once the current log exceeds {@code compactionThreshold} bytes, a new log generation is started and a snapshot
+ * of all records is written in the background; logs older than the snapshot are deleted once the snapshot,
+ * and the directory entry renaming it into place, are forced to the disk.
+ * On startup the snapshot is loaded and the newer logs are replayed sequentially; a torn mutation at the end
+ * of a log (failed CRC, missing bytes or a length beyond the end of the file) ends its replay.</p>
+ *
+ * @author Martin Zimka
+ */
+public class WalServersDatabase implements ServersDatabase, AutoCloseable {
+
+    private static final String SNAPSHOTFILE = "snapshot.db";
+    private static final String WALPREFIX = "wal-";
+    private static final String WALSUFFIX = ".log";
+    private static final int SNAPSHOTMAGIC = 0x50515353;  // "PQSS"
+
+    private final Path directory;
+    private final PackedPolynomialCodec codec;
+    private final long compactionThreshold;
+    private final Map<ByteArrayWrapper, ClientRecord> database = new ConcurrentHashMap<>();
+    private final List<Mutation> pending = new ArrayList<>();  // guarded by itself
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final LongAdder forces = new LongAdder();
+    private long appendedSequence;  // guarded by pending
+    private volatile long durableSequence;
+    private FileChannel wal;  // guarded by commitLock
+    private long walGeneration;  // guarded by commitLock
+    private long walBytes;  // guarded by commitLock
+    private IOException failure;  // guarded by commitLock, set once the log could not be written
+
+    /**
+     * Recovers the database from {@code directory} (or creates an empty one) and starts a new log generation.
+     *
+     * @param directory directory of the snapshot and logs
+     * @param protocolConfiguration configuration of the server
+     * @param compactionThreshold size of the log (in bytes) which triggers snapshot and compaction
+     * @throws IOException if the directory cannot be read or the new log cannot be created
+     * @throws IllegalArgumentException if {@code compactionThreshold} is not positive
+     */
+    public WalServersDatabase(Path directory, ProtocolConfiguration protocolConfiguration, long compactionThreshold) throws IOException {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive");
+        }
+        this.directory = directory;
+        this.codec = new PackedPolynomialCodec(new PolynomialConfig(protocolConfiguration.getN(), protocolConfiguration.getQ()));
+        this.compactionThreshold = compactionThreshold;
+        Files.createDirectories(directory);
+        long snapshotGeneration = loadSnapshot();
+        long lastGeneration = snapshotGeneration - 1;
+        for (long generation : walGenerations()) {
+            if (generation < snapshotGeneration) {  // already contained in the snapshot
+                Files.delete(walFile(generation));
+            } else {
+                replay(walFile(generation));
+                lastGeneration = generation;
+            }
+        }
+        this.walGeneration = lastGeneration + 1;
+        this.wal = openWal(walGeneration);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns once the record is forced to the disk.
+     *
+     * @throws UncheckedIOException if the log cannot be written; the database then refuses all further enrollments
+     */
+    @Override
+    public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        Mutation mutation = new Mutation(identity, clientRecord, encode(identity, clientRecord));
+        long sequence;
+        synchronized (pending) {
+            sequence = ++appendedSequence;
+            pending.add(mutation);
+        }
+        commitLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log is broken", failure);
+            }
+            if (durableSequence < sequence) {  // nobody committed it meanwhile, commit all pending mutations
+                commitPending();
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    @Override
+    public ClientRecord findClient(ByteArrayWrapper identity) {
+        return database.get(identity);
+    }
+
+    private void commitPending() {
+        List<Mutation> batch;
+        long lastSequence;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            lastSequence = appendedSequence;
+        }
+        int size = 0;
+        for (Mutation mutation : batch) {
+            size += mutation.entry.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Mutation mutation : batch) {
+            buffer.put(mutation.entry);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                wal.write(buffer);
+            }
+            wal.force(false);
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Write-ahead log is broken", e);
+        }
+        forces.increment();
+        for (Mutation mutation : batch) {  // visible only once durable, in the order of the log
+            database.put(mutation.identity, mutation.clientRecord);
+        }
+        walBytes += size;
+        durableSequence = lastSequence;
+        if (walBytes >= compactionThreshold && compacting.compareAndSet(false, true)) {
+            startCompaction();
+        }
+    }
+
+    /**
+     * Starts a new log generation and writes the snapshot of all records in the background.
+     * Called under the commit lock, so every mutation not in the new log is already in the in-memory database.
+     * The snapshot is taken by the compactor, without blocking commits: it holds all records committed before
+     * the new log was started, and maybe some newer ones, which are in the new log too and replayed over it.
+     */
+    private void startCompaction() {
+        long snapshotGeneration = walGeneration + 1;
+        try {
+            FileChannel next = openWal(snapshotGeneration);
+            wal.close();
+            wal = next;
+            walGeneration = snapshotGeneration;
+            walBytes = 0;
+        } catch (IOException e) {  // keep appending to the current log, compaction is retried later
+            compacting.set(false);
+            return;
+        }
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(new ArrayList<>(database.entrySet()), snapshotGeneration);
+                for (long generation : walGenerations()) {
+                    if (generation < snapshotGeneration) {
+                        Files.delete(walFile(generation));
+                    }
+                }
+            } catch (IOException e) {  // old logs are kept, so recovery is still complete
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    private byte[] encode(ByteArrayWrapper identity, ClientRecord clientRecord) {
+        byte[] id = identity.getData();
+        byte[] seed = clientRecord.getPublicSeedForA().getData();
+        byte[] salt = clientRecord.getSalt().getData();
+        int payloadLength = 3 * Integer.BYTES + id.length + seed.length + salt.length + codec.getPackedLength();
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + payloadLength + Integer.BYTES);
+        entry.putInt(payloadLength);
+        entry.putInt(id.length).put(id);
+        entry.putInt(seed.length).put(seed);
+        entry.putInt(salt.length).put(salt);
+        codec.encode(clientRecord.getVerifierNtt(), entry, entry.position());
+        CRC32C crc = new CRC32C();
+        crc.update(entry.array(), Integer.BYTES, payloadLength);
+        entry.putInt(Integer.BYTES + payloadLength, (int) crc.getValue());
+        return entry.array();
+    }
+
+    /**
+     * Reads one mutation into the in-memory database.
+     *
+     * @param remaining number of bytes left in the file, bounding the length of the mutation
+     * @return number of bytes read, or -1 if the stream ended or the mutation is torn
+     */
+    private long readEntry(DataInputStream in, long remaining) throws IOException {
+        byte[] payload;
+        int crcValue;
+        int payloadLength;
+        try {
+            payloadLength = in.readInt();
+            if (payloadLength < 3 * Integer.BYTES + codec.getPackedLength()
+                    || payloadLength > remaining - 2 * Integer.BYTES) {  // a torn length, not worth allocating
+                return -1;
+            }
+            payload = new byte[payloadLength];
+            in.readFully(payload);
+            crcValue = in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != crcValue) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte[] id = new byte[buffer.getInt()];
+        buffer.get(id);
+        byte[] seed = new byte[buffer.getInt()];
+        buffer.get(seed);
+        byte[] salt = new byte[buffer.getInt()];
+        buffer.get(salt);
+        ClientRecord clientRecord = new ClientRecord(new ByteArrayWrapper(seed), new ByteArrayWrapper(salt), codec.decode(buffer, buffer.position()));
+        database.put(new ByteArrayWrapper(id), clientRecord);
+        return 2L * Integer.BYTES + payloadLength;
+    }
+
+    private void replay(Path file) throws IOException {
+        long remaining = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (long read = readEntry(in, remaining); read >= 0; read = readEntry(in, remaining)) {
+                remaining -= read;  // replaying mutations in the order of the log
+            }
+        }
+    }
+
+    /**
+     * @return generation of the log following the snapshot, 0 if there is no snapshot
+     */
+    private long loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOTFILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long remaining = Files.size(file) - Integer.BYTES - 2 * Long.BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOTMAGIC) {
+                throw new IOException("File " + file + " is not a snapshot of servers database");
+            }
+            long generation = in.readLong();
+            long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                long read = readEntry(in, remaining);
+                if (read < 0) {
+                    throw new IOException("Snapshot " + file + " is corrupted");
+                }
+                remaining -= read;
+            }
+            return generation;
+        }
+    }
+
+    private void writeSnapshot(List<Map.Entry<ByteArrayWrapper, ClientRecord>> snapshot, long generation) throws IOException {
+        Path temporary = directory.resolve(SNAPSHOTFILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOTMAGIC);
+            out.writeLong(generation);
+            out.writeLong(snapshot.size());
+            for (Map.Entry<ByteArrayWrapper, ClientRecord> entry : snapshot) {
+                out.write(encode(entry.getKey(), entry.getValue()));
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOTFILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();  // the rename must be durable before the logs it replaces are deleted
+    }
+
+    private List<Long> walGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(WALPREFIX) && name.endsWith(WALSUFFIX))
+                    .map(name -> Long.parseLong(name.substring(WALPREFIX.length(), name.length() - WALSUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path walFile(long generation) {
+        return directory.resolve(WALPREFIX + generation + WALSUFFIX);
+    }
+
+    /**
+     * Creates the log of {@code generation} and forces its directory entry, so that forcing the log
+     * makes its mutations durable.
+     */
+    private FileChannel openWal(long generation) throws IOException {
+        FileChannel channel = FileChannel.open(walFile(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            forceDirectory();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Forces created, renamed and deleted files of the directory to the disk.
+     */
+    private void forceDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return number of enrolled clients
+     */
+    public int size() {
+        return database.size();
+    }
+
+    /**
+     * @return number of times the log was forced to the disk; lower than the number of enrollments
+     * when concurrent enrollments were committed together
+     */
+    public long getForces() {
+        return forces.sum();
+    }
+
+    /**
+     * Waits for a running compaction and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commitLock.lock();
+        try {
+            wal.close();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * One enrollment waiting for the commit.
+     */
+    private static final class Mutation {
+
+        private final ByteArrayWrapper identity;
+        private final ClientRecord clientRecord;
+        private final byte[] entry;
+
+        private Mutation(ByteArrayWrapper identity, ClientRecord clientRecord, byte[] entry) {
+            this.identity = identity;
+            this.clientRecord = clientRecord;
+            this.entry = entry;
+        }
+    }
+}
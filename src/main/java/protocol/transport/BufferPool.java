@@ -0,0 +1,61 @@
+package protocol.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code BufferPool} class keeps direct {@code ByteBuffer}s of one size for reuse.
+ *
+ * <p>Allocating a direct buffer is expensive and its memory is freed only by the garbage collector, so buffers
+ * of connections and responses are taken from the pool and returned to it instead. At most {@code maxPooled}
+ * free buffers are kept, others are left to the garbage collector.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code bufferSize} – {@code int}, capacity of every buffer</li>
+ *   <li>{@code maxPooled}  – {@code int}, maximal number of free buffers kept</li>
+ *   <li>{@code free}       – {@code Queue}, free buffers</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+final class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return cleared buffer of {@code bufferSize} bytes
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        freeCount.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Returns the buffer to the pool; it must not be used by the caller anymore.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer != null && freeCount.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else if (buffer != null) {
+            freeCount.decrementAndGet();
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,106 @@
+package protocol.transport;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code MappedRing} class is a single-producer single-consumer queue of frames in a region of shared memory,
+ * e.g. of a file mapped by two processes.
+ *
+ * <p>The region starts with two counters of 8 bytes, each on its own cache line, followed by {@code slots} slots
+ * of {@code slotSize} bytes:</p>
+ * <ul>
+ *   <li>{@code tail} – number of frames ever published, written only by the producer</li>
+ *   <li>{@code head} – number of frames ever released, written only by the consumer</li>
+ * </ul>
+ *
+ * <p>The producer writes a frame straight into the slot returned by {@link #claim()} and publishes it by a release
+ * store of {@code tail}; the consumer sees the frame after an acquire load of {@code tail}, reads it straight from
+ * the slot and frees the slot by a release store of {@code head}. No locks and no copies are involved,
+ * and every side writes only its own counter.</p>
+ *
+ * @author Martin Zimka
+ */
+final class MappedRing {
+
+    static final int COUNTERSSIZE = 128;
+    static final int SLOTALIGNMENT = 64;
+    private static final int TAILOFFSET = 0;
+    private static final int HEADOFFSET = 64;
+    private static final int SPINS = 1000;  // attempts of PARK before parking
+    private static final long PARKNANOS = 20_000;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer region;
+    private final ByteBuffer[] slotBuffers;
+
+    /**
+     * @param region direct buffer of exactly {@link #sizeOf(int, int)} bytes, aligned to 8 bytes
+     * @param slots number of slots
+     * @param slotSize number of bytes of one slot, a multiple of {@code SLOTALIGNMENT}
+     */
+    MappedRing(ByteBuffer region, int slots, int slotSize) {
+        this.region = region;
+        this.slotBuffers = new ByteBuffer[slots];
+        for (int i = 0; i < slots; i++) {
+            slotBuffers[i] = region.slice(COUNTERSSIZE + i * slotSize, slotSize);
+        }
+    }
+
+    /**
+     * @return number of bytes of a ring with {@code slots} slots of {@code slotSize} bytes
+     */
+    static int sizeOf(int slots, int slotSize) {
+        return COUNTERSSIZE + slots * slotSize;
+    }
+
+    /**
+     * Producer: returns the next free slot, cleared, or null if all slots are taken.
+     */
+    ByteBuffer claim() {
+        long tail = (long) LONGS.getOpaque(region, TAILOFFSET);
+        if (tail - (long) LONGS.getAcquire(region, HEADOFFSET) == slotBuffers.length) {
+            return null;
+        }
+        return slotBuffers[(int) (tail % slotBuffers.length)].clear();
+    }
+
+    /**
+     * Producer: hands the claimed slot over to the consumer.
+     */
+    void publish() {
+        LONGS.setRelease(region, TAILOFFSET, (long) LONGS.getOpaque(region, TAILOFFSET) + 1);
+    }
+
+    /**
+     * Consumer: returns the oldest published slot, cleared, or null if there is none.
+     */
+    ByteBuffer peek() {
+        long head = (long) LONGS.getOpaque(region, HEADOFFSET);
+        if (head == (long) LONGS.getAcquire(region, TAILOFFSET)) {
+            return null;
+        }
+        return slotBuffers[(int) (head % slotBuffers.length)].clear();
+    }
+
+    /**
+     * Consumer: hands the peeked slot back to the producer.
+     */
+    void release() {
+        LONGS.setRelease(region, HEADOFFSET, (long) LONGS.getOpaque(region, HEADOFFSET) + 1);
+    }
+
+    /**
+     * Waits once before the {@code attempt}-th retry of a side having nothing to do.
+     */
+    static void idle(WaitStrategy waitStrategy, int attempt) {
+        if (waitStrategy == WaitStrategy.PARK && attempt >= SPINS) {
+            LockSupport.parkNanos(PARKNANOS);
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package protocol.transport;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PackedPolynomialCodec;
+import protocol.polynomial.PolynomialConfig;
+import protocol.random.SamplingMode;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code MessageCodec} class reads and writes the parts of protocol messages exchanged over the network.
+ *
+ * <p>Every message travels in one frame:</p>
+ * <ul>
+ *   <li>{@code length}  – {@code int}, number of bytes following the length</li>
+ *   <li>{@code version} – {@code byte}, version of the wire format, {@code VERSION}</li>
+ *   <li>{@code id}      – {@code int}, chosen by the client for a request and copied into its response</li>
+ *   <li>{@code type}    – {@code byte}, kind of request, or status of a response</li>
+ *   <li>{@code body}    – byte strings ({@code short} length and bytes), polynomials (bit-packed by
+ *                         {@link PackedPolynomialCodec}) and server's responses (see {@link ServersResponseScs})</li>
+ * </ul>
+ *
+ * <p>Request ids let one connection carry many requests at once: the server may answer them in any order,
+ * and the client matches responses to requests by their ids. Bodies of version 3 are:</p>
+ * <ul>
+ *   <li>{@code ENROLLCLIENT} request        – public seed, identity, salt and verifier; empty response</li>
+ *   <li>{@code COMPUTESHAREDSECRET} request – identity and pi; response session id and the wire form of salt,
+ *                                             pj and wj, where wj takes one bit per coefficient</li>
+ *   <li>{@code VERIFYKEYSENTITIES} request  – session id and M1; response M2</li>
+ *   <li>{@code CONFIGURATION} request       – empty; response n, q, eta and sampling mode</li>
+ * </ul>
+ *
+ * <p>A frame of another version is answered by an empty {@code UNSUPPORTEDVERSION} response with id 0, carrying
+ * the version of the server. All methods use relative positions of the given buffers, which may be direct; polynomials are
+ * decoded straight from the buffer into their coefficients, and rejected unless reduced modulo q.
+ * {@code MemorySegment} is not used, since it is still a preview API in the supported Java version.</p>
+ *
+ * @author Martin Zimka
+ */
+final class MessageCodec {
+
+    static final byte VERSION = 3;
+    static final int LENGTHSIZE = 4;
+    static final int HEADERSIZE = 2 + Integer.BYTES;  // version, id and type, the smallest frame length
+    static final int MAXBYTESLENGTH = 1024;
+
+    // Requests.
+    static final byte CONFIGURATION = 1;
+    static final byte ENROLLCLIENT = 2;
+    static final byte COMPUTESHAREDSECRET = 3;
+    static final byte VERIFYKEYSENTITIES = 4;
+    // Statuses of responses.
+    static final byte OK = 0;
+    static final byte NOTFOUND = 1;  // the server returned null
+    static final byte UNSUPPORTEDVERSION = 2;
+
+    private final PackedPolynomialCodec polynomialCodec;
+    private final int maxFrameSize;
+
+    MessageCodec(ProtocolConfiguration protocolConfiguration) {
+        this.polynomialCodec = new PackedPolynomialCodec(new PolynomialConfig(protocolConfiguration.getN(), protocolConfiguration.getQ()));
+        // The largest message is either the enrollment request or the server's response: session id, salt, pj and wj.
+        this.maxFrameSize = LENGTHSIZE + HEADERSIZE + Math.max(3 * (Short.BYTES + MAXBYTESLENGTH) + polynomialCodec.getPackedLength(),
+                Short.BYTES + MAXBYTESLENGTH + ServersResponseScs.getEncodedLength(polynomialCodec, MAXBYTESLENGTH));
+    }
+
+    PackedPolynomialCodec getPolynomialCodec() {
+        return polynomialCodec;
+    }
+
+    /**
+     * @return number of bytes of the largest frame, including its length
+     */
+    int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Starts a frame at the position of {@code out}; its length is filled in by {@link #endFrame(ByteBuffer, int)}.
+     *
+     * @return position of the frame
+     */
+    static int beginFrame(ByteBuffer out, int id, byte type) {
+        int start = out.position();
+        out.putInt(0);
+        out.put(VERSION);
+        out.putInt(id);
+        out.put(type);
+        return start;
+    }
+
+    static void endFrame(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - LENGTHSIZE);
+    }
+
+    static void writeBytes(ByteBuffer out, ByteArrayWrapper bytes) {
+        byte[] data = bytes.getData();
+        if (data.length > MAXBYTESLENGTH) {
+            throw new IllegalArgumentException("Byte string is too long for a message");
+        }
+        out.putShort((short) data.length);
+        out.put(data);
+    }
+
+    static ByteArrayWrapper readBytes(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length > MAXBYTESLENGTH) {
+            throw new IllegalArgumentException("Byte string is too long for a message");
+        }
+        byte[] data = new byte[length];
+        in.get(data);
+        return new ByteArrayWrapper(data);
+    }
+
+    void writePolynomial(ByteBuffer out, NttPolynomial polynomial) {
+        polynomial.writeTo(out, polynomialCodec);
+    }
+
+    NttPolynomial readPolynomial(ByteBuffer in) {
+        return NttPolynomial.readFrom(in, polynomialCodec);
+    }
+
+    static void writeConfiguration(ByteBuffer out, ProtocolConfiguration protocolConfiguration) {
+        out.putInt(protocolConfiguration.getN());
+        writeBytes(out, new ByteArrayWrapper(protocolConfiguration.getQ().toByteArray()));
+        out.putInt(protocolConfiguration.getEta());
+        writeBytes(out, new ByteArrayWrapper(protocolConfiguration.getSamplingMode().name().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    static ProtocolConfiguration readConfiguration(ByteBuffer in) {
+        int n = in.getInt();
+        BigInteger q = new BigInteger(readBytes(in).getData());
+        int eta = in.getInt();
+        SamplingMode samplingMode = SamplingMode.valueOf(new String(readBytes(in).getData(), StandardCharsets.US_ASCII));
+        return new ProtocolConfiguration(n, q, eta, samplingMode);
+    }
+}
@@ -0,0 +1,364 @@
+package protocol.transport;
+
+import protocol.server.PendingSessionTable;
+import protocol.server.Server;
+import protocol.server.SessionOverflowPolicy;
+import protocol.server.SessionTableServer;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The {@code NioServer} class exposes a {@link Server} over TCP, or over a Unix domain socket as a sidecar
+ * of application servers on the same host, with a non-blocking, selector-based transport.
+ *
+ * <p>One selector thread accepts connections and reads and writes length-prefixed frames
+ * (see {@link MessageCodec}); the protocol math of every complete request runs on a pool of {@code workerThreads}
+ * worker threads, so slow requests never stall the network I/O. Buffers of connections, requests and responses
+ * are direct {@code ByteBuffer}s taken from a {@link BufferPool}.</p>
+ *
+ * <p>The exposed server is wrapped in a {@link SessionTableServer}, so server's session configurations stay on the
+ * server and clients get only opaque session ids. A connection carries many requests at once, e.g. logins
+ * of many users of a gateway: every request is processed independently and its response, tagged with the id
+ * of the request, is written as soon as it is ready, so responses come in any order. At most {@code maxInFlight}
+ * requests of one connection are processed or waiting to be written; a connection at this limit is not read,
+ * which pushes back on the client through TCP and bounds the work and memory a single connection takes.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code handler}       – {@code RequestHandler}, decodes requests and calls the server</li>
+ *   <li>{@code bufferPool}    – {@code BufferPool}, direct buffers of the largest frame size</li>
+ *   <li>{@code serverChannel} – {@code ServerSocketChannel}, listening socket</li>
+ *   <li>{@code address}       – {@code SocketAddress}, address of the listening socket</li>
+ *   <li>{@code selector}      – {@code Selector}, readiness of all sockets</li>
+ *   <li>{@code workers}       – {@code ExecutorService}, threads running the protocol math</li>
+ *   <li>{@code maxInFlight}   – {@code int}, maximal number of requests of one connection processed at once</li>
+ *   <li>{@code completed}     – {@code Queue}, connections whose response is ready to be written</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class NioServer implements AutoCloseable {
+
+    public static final int DEFAULTSESSIONCAPACITY = 65536;
+    public static final long DEFAULTSESSIONTTLMILLIS = 30_000;
+    public static final int DEFAULTMAXINFLIGHT = 16;
+    private static final int MAXPOOLEDBUFFERS = 1024;
+
+    private final RequestHandler handler;
+    private final BufferPool bufferPool;
+    private final ServerSocketChannel serverChannel;
+    private final SocketAddress address;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean closed;
+
+    /**
+     * Exposes the server with a table of at most {@code DEFAULTSESSIONCAPACITY} pending sessions
+     * expiring after {@code DEFAULTSESSIONTTLMILLIS}, and {@code DEFAULTMAXINFLIGHT} requests per connection.
+     *
+     * @param server server to expose
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param workerThreads number of threads running the protocol math
+     * @throws IOException if the address cannot be bound
+     */
+    public NioServer(Server server, SocketAddress address, int workerThreads) throws IOException {
+        this(server, new PendingSessionTable(DEFAULTSESSIONCAPACITY, DEFAULTSESSIONTTLMILLIS, SessionOverflowPolicy.REJECT), address, workerThreads);
+    }
+
+    /**
+     * @param server server to expose
+     * @param sessionTable table keeping pending sessions of the server
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param workerThreads number of threads running the protocol math
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if {@code workerThreads} is not positive
+     */
+    public NioServer(Server server, PendingSessionTable sessionTable, SocketAddress address, int workerThreads) throws IOException {
+        this(server, sessionTable, address, workerThreads, DEFAULTMAXINFLIGHT);
+    }
+
+    /**
+     * @param server server to expose
+     * @param sessionTable table keeping pending sessions of the server
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param workerThreads number of threads running the protocol math
+     * @param maxInFlight maximal number of requests of one connection processed at once
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if {@code workerThreads} or {@code maxInFlight} is not positive
+     */
+    public NioServer(Server server, PendingSessionTable sessionTable, SocketAddress address, int workerThreads,
+                     int maxInFlight) throws IOException {
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("Number of worker threads must be positive");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of requests in flight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.handler = new RequestHandler(new SessionTableServer(server, sessionTable));
+        this.bufferPool = new BufferPool(handler.getCodec().getMaxFrameSize(), MAXPOOLEDBUFFERS);
+        this.selector = Selector.open();
+        try {
+            this.serverChannel = SocketChannels.openServer(address);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+        this.address = serverChannel.getLocalAddress();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            SocketChannels.closeServer(serverChannel, this.address);
+            selector.close();
+            throw e;
+        }
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "nio-server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::run, "nio-server-selector");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * @return local address the server listens on, with the chosen port on TCP
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Connection connection;
+                while ((connection = completed.poll()) != null) {
+                    connection.onResponse();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid()) {
+                        handleReady((Connection) key.attachment(), key);
+                    }
+                }
+            }
+        } catch (IOException e) {  // the selector itself failed, nothing more can be served
+            closed = true;
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SocketChannels.configure(channel);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void handleReady(Connection connection, SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+            }
+        } catch (IOException | RuntimeException e) {  // broken connection or malformed frame
+            connection.close();
+        }
+    }
+
+    /**
+     * Stops accepting and serving requests and closes all connections.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        SocketChannels.closeServer(serverChannel, address);
+        selector.close();
+    }
+
+    /**
+     * State of one client connection. Everything but {@code responses} and {@code failed} is used by the selector
+     * thread only.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in;  // received bytes in [0, position)
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();  // responses being written, the first one partially
+        private final ConcurrentLinkedQueue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();  // handed over from workers
+        private volatile boolean failed;  // a worker found a malformed request
+        private int inFlight;  // requests handed to workers whose responses are not written yet
+        private boolean closedConnection;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = bufferPool.acquire();
+        }
+
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            dispatch();
+        }
+
+        /**
+         * Hands complete frames over to workers until {@code maxInFlight} requests are in flight. Every request
+         * is copied into its own buffer, so the receive buffer is free for following requests at once.
+         */
+        private void dispatch() {
+            in.flip();
+            while (inFlight < maxInFlight && in.remaining() >= MessageCodec.LENGTHSIZE) {
+                int length = in.getInt(in.position());
+                if (length < MessageCodec.HEADERSIZE || length > in.capacity() - MessageCodec.LENGTHSIZE) {
+                    close();
+                    return;
+                }
+                if (in.remaining() < MessageCodec.LENGTHSIZE + length) {
+                    break;
+                }
+                int bodyStart = in.position() + MessageCodec.LENGTHSIZE;
+                ByteBuffer request = bufferPool.acquire();
+                request.put(in.duplicate().limit(bodyStart + length).position(bodyStart)).flip();
+                in.position(bodyStart + length);
+                inFlight++;
+                try {
+                    workers.execute(() -> process(request));
+                } catch (RejectedExecutionException e) {  // server is closing
+                    bufferPool.release(request);
+                    close();
+                    return;
+                }
+            }
+            in.compact();
+            updateInterest();
+        }
+
+        /**
+         * Runs on a worker thread. Whatever the handler throws, the selector thread is notified, so that
+         * the connection is closed rather than waiting for a response that never comes.
+         */
+        private void process(ByteBuffer request) {
+            ByteBuffer result = bufferPool.acquire();
+            try {
+                handler.handle(request, result);
+                responses.offer(result.flip());
+            } catch (Throwable e) {  // malformed request or a failed handler, the connection is closed
+                bufferPool.release(result);
+                failed = true;
+            } finally {
+                bufferPool.release(request);
+                completed.offer(this);  // publishes the response, or the failure, to the selector thread
+                selector.wakeup();
+            }
+        }
+
+        private void onResponse() {
+            ByteBuffer response;
+            if (closedConnection) {
+                while ((response = responses.poll()) != null) {
+                    bufferPool.release(response);
+                }
+                return;
+            }
+            if (failed) {
+                close();
+                return;
+            }
+            while ((response = responses.poll()) != null) {
+                out.add(response);
+            }
+            try {
+                write();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void write() throws IOException {
+            int written = 0;
+            while (!out.isEmpty()) {
+                ByteBuffer response = out.peek();
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    break;
+                }
+                bufferPool.release(out.poll());
+                written++;
+            }
+            inFlight -= written;
+            if (written > 0) {
+                dispatch();  // the client may have sent further requests already
+            } else {
+                updateInterest();
+            }
+        }
+
+        private void updateInterest() {
+            if (!closedConnection) {
+                key.interestOps((inFlight < maxInFlight ? SelectionKey.OP_READ : 0) | (out.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+            }
+        }
+
+        private void close() {
+            if (closedConnection) {
+                return;
+            }
+            closedConnection = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {  // nothing more to do with a broken connection
+            }
+            for (ByteBuffer response : out) {
+                bufferPool.release(response);
+            }
+            out.clear();
+            bufferPool.release(in);  // requests in flight have buffers of their own
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package protocol.transport;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+import protocol.server.AsyncServer;
+import protocol.server.Server;
+import protocol.server.SessionConfigurationServer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The {@code RemoteServer} class implements {@link Server} interface as a client-side stub of a server exposed
+ * by {@link NioServer} or {@link VirtualThreadServer}, so that {@code ClientImple} can log in over the network unchanged.
+ * The server is reached over TCP or, as a sidecar on the same host, over a Unix domain socket, depending on the type
+ * of its address.
+ *
+ * <p>Every method sends one request frame (see {@link MessageCodec}) and waits for its response; the protocol
+ * configuration is fetched from the server once, when connecting. The stub is thread-safe and multiplexed:
+ * many threads, e.g. of a gateway logging in its users, may call it at once, their requests are interleaved
+ * on the one connection and a reading thread hands every response to its caller by the id of the request,
+ * in whatever order the server answers. At most {@code maxInFlight} requests are sent and not answered yet,
+ * further callers wait. Server's session configurations returned by
+ * {@link #computeSharedSecret(ByteArrayWrapper, NttPolynomial)} are only handles holding the session id assigned
+ * by the remote server.</p>
+ *
+ * <p>{@link #async()} returns an {@link AsyncServer} view of the stub: its methods only send the request and return
+ * a future completed, and the response decoded, by the reading thread, so a caller composing on it never blocks
+ * (except for a permit when {@code maxInFlight} requests are not answered yet). The blocking methods wait
+ * for the same futures.</p>
+ *
+ * <p>Network failures are thrown as {@link UncheckedIOException}, since the {@link Server} methods
+ * do not declare checked exceptions, or complete the futures of the {@code Async} methods with it.
+ * A failed connection fails all its requests, sent or not. A request not answered in {@code responseTimeoutMillis}
+ * fails the connection too, so a server which stopped answering does not hold its callers forever.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code channel}    – {@code SocketChannel}, connection to the server</li>
+ *   <li>{@code codec}      – {@code MessageCodec}, codec of the server's protocol configuration</li>
+ *   <li>{@code bufferPool} – {@code BufferPool}, direct buffers of requests and responses</li>
+ *   <li>{@code inFlight}   – {@code Semaphore}, permits of requests to be sent</li>
+ *   <li>{@code responseTimeoutMillis} – {@code long}, longest wait for a response</li>
+ *   <li>{@code pending}    – {@code Map}, futures of sent requests by their ids</li>
+ *   <li>{@code reader}     – {@code Thread}, receives responses and completes their futures</li>
+ *   <li>{@code async}      – {@code AsyncServer}, non-blocking view of the stub</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class RemoteServer implements Server, Closeable {
+
+    public static final long DEFAULTRESPONSETIMEOUTMILLIS = 30_000;
+    private static final int CONFIGURATIONFRAMESIZE = 4096;
+
+    private final SocketChannel channel;
+    private final ProtocolConfiguration protocolConfiguration;
+    private final MessageCodec codec;
+    private final BufferPool bufferPool;
+    private final Semaphore inFlight;
+    private final long responseTimeoutMillis;
+    private final ConcurrentHashMap<Integer, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Object writeLock = new Object();
+    private final Thread reader;
+    private final Async async = new Async();
+    private volatile RuntimeException failure;
+
+    /**
+     * Connects to the server with at most {@link NioServer#DEFAULTMAXINFLIGHT} requests in flight.
+     *
+     * @param address TCP or Unix domain socket address of the {@link NioServer} or {@link VirtualThreadServer}
+     * @throws IOException if the connection cannot be established
+     */
+    public RemoteServer(SocketAddress address) throws IOException {
+        this(address, NioServer.DEFAULTMAXINFLIGHT);
+    }
+
+    /**
+     * Connects to the server, waiting for a response at most {@code DEFAULTRESPONSETIMEOUTMILLIS}.
+     *
+     * @param address TCP or Unix domain socket address of the {@link NioServer} or {@link VirtualThreadServer}
+     * @param maxInFlight maximal number of requests sent and not answered yet
+     * @throws IOException if the connection cannot be established
+     * @throws IllegalArgumentException if {@code maxInFlight} is not positive
+     */
+    public RemoteServer(SocketAddress address, int maxInFlight) throws IOException {
+        this(address, maxInFlight, DEFAULTRESPONSETIMEOUTMILLIS);
+    }
+
+    /**
+     * Connects to the server and fetches its protocol configuration.
+     *
+     * @param address TCP or Unix domain socket address of the {@link NioServer} or {@link VirtualThreadServer}
+     * @param maxInFlight maximal number of requests sent and not answered yet
+     * @param responseTimeoutMillis longest time a request waits for its response before the connection is failed
+     * @throws IOException if the connection cannot be established
+     * @throws IllegalArgumentException if {@code maxInFlight} or {@code responseTimeoutMillis} is not positive
+     */
+    public RemoteServer(SocketAddress address, int maxInFlight, long responseTimeoutMillis) throws IOException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of requests in flight must be positive");
+        }
+        if (responseTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Response timeout must be positive");
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.channel = SocketChannel.open(address);
+        try {
+            SocketChannels.configure(channel);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CONFIGURATIONFRAMESIZE);
+            MessageCodec.endFrame(buffer, MessageCodec.beginFrame(buffer, 0, MessageCodec.CONFIGURATION));
+            writeFully(buffer.flip());
+            ByteBuffer response = readFrame(buffer.clear());
+            if (response.getInt() != 0) {
+                throw new IOException("Response to an unknown request");
+            }
+            requireStatus(response, MessageCodec.OK);
+            this.protocolConfiguration = MessageCodec.readConfiguration(response);
+            this.codec = new MessageCodec(protocolConfiguration);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.bufferPool = new BufferPool(codec.getMaxFrameSize(), maxInFlight + 1);
+        this.reader = new Thread(this::readResponses, "remote-server-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return protocolConfiguration;
+    }
+
+    @Override
+    public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        await(async.enrollClientAsync(publicSeedForA, I, salt, vNtt));
+    }
+
+    @Override
+    public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        return await(async.computeSharedSecretAsync(I, piNtt));
+    }
+
+    @Override
+    public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        return await(async.verifyKeysEntitiesAsync(scs, m1));
+    }
+
+    /**
+     * Returns the non-blocking view of this stub, sharing its connection.
+     *
+     * @return {@link AsyncServer} whose futures are completed by the reading thread of the connection
+     */
+    public AsyncServer async() {
+        return async;
+    }
+
+    /**
+     * Non-blocking view of the stub, see {@link #async()}.
+     */
+    private final class Async implements AsyncServer {
+
+        @Override
+        public ProtocolConfiguration getProtocolConfiguration() {
+            return protocolConfiguration;
+        }
+
+        @Override
+        public CompletableFuture<Void> enrollClientAsync(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+            return send(MessageCodec.ENROLLCLIENT, out -> {
+                MessageCodec.writeBytes(out, publicSeedForA);
+                MessageCodec.writeBytes(out, I);
+                MessageCodec.writeBytes(out, salt);
+                codec.writePolynomial(out, vNtt);
+            }).thenApply(response -> {
+                try {
+                    requireStatus(response, MessageCodec.OK);
+                    return null;
+                } finally {
+                    bufferPool.release(response);
+                }
+            });
+        }
+
+        @Override
+        public CompletableFuture<ServersResponseScs> computeSharedSecretAsync(ByteArrayWrapper I, NttPolynomial piNtt) {
+            return send(MessageCodec.COMPUTESHAREDSECRET, out -> {
+                MessageCodec.writeBytes(out, I);
+                codec.writePolynomial(out, piNtt);
+            }).thenApply(response -> {
+                try {
+                    if (response.get(response.position()) == MessageCodec.NOTFOUND) {
+                        return null;
+                    }
+                    requireStatus(response, MessageCodec.OK);
+                    ByteArrayWrapper sessionId = MessageCodec.readBytes(response);
+                    return ServersResponseScs.readFrom(response, codec.getPolynomialCodec(), SessionConfigurationServer.ofSessionId(sessionId));
+                } finally {
+                    bufferPool.release(response);
+                }
+            });
+        }
+
+        @Override
+        public CompletableFuture<ByteArrayWrapper> verifyKeysEntitiesAsync(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+            return send(MessageCodec.VERIFYKEYSENTITIES, out -> {
+                MessageCodec.writeBytes(out, scs.getSessionId());
+                MessageCodec.writeBytes(out, m1);
+            }).thenApply(response -> {
+                try {
+                    if (response.get(response.position()) == MessageCodec.NOTFOUND) {
+                        return null;
+                    }
+                    requireStatus(response, MessageCodec.OK);
+                    return MessageCodec.readBytes(response);
+                } finally {
+                    bufferPool.release(response);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends one request frame, waiting for a permit if {@code maxInFlight} requests are not answered yet.
+     * If the response does not come in {@code responseTimeoutMillis}, the connection is failed.
+     *
+     * @return future of the response, a pooled buffer positioned at its status and limited to its end
+     */
+    private CompletableFuture<ByteBuffer> send(byte type, Consumer<ByteBuffer> body) {
+        inFlight.acquireUninterruptibly();
+        CompletableFuture<ByteBuffer> call = new CompletableFuture<>();
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Void> timer = new CompletableFuture<Void>().orTimeout(responseTimeoutMillis, TimeUnit.MILLISECONDS);
+        timer.whenComplete((ignored, e) -> {
+            if (e instanceof TimeoutException) {  // a server not answering would hold the call and its permit forever
+                fail(new UncheckedIOException(new SocketTimeoutException("No response to request " + id)));
+            }
+        });
+        call.whenComplete((response, e) -> {
+            inFlight.release();
+            timer.complete(null);  // cancels the timeout
+        });
+        pending.put(id, call);
+        if (failure != null) {  // checked after registering, so either this or fail() completes the call
+            pending.remove(id);
+            call.completeExceptionally(failure);
+            return call;
+        }
+        ByteBuffer request = bufferPool.acquire();
+        try {
+            int start = MessageCodec.beginFrame(request, id, type);
+            body.accept(request);
+            MessageCodec.endFrame(request, start);
+            request.flip();
+            synchronized (writeLock) {
+                writeFully(request);
+            }
+        } catch (IOException e) {
+            fail(new UncheckedIOException(e));
+        } catch (RuntimeException e) {  // the request cannot be encoded
+            pending.remove(id);
+            call.completeExceptionally(e);
+        } finally {
+            bufferPool.release(request);
+        }
+        return call;
+    }
+
+    private static <T> T await(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Loop of the reading thread, until the connection fails or is closed.
+     */
+    private void readResponses() {
+        try {
+            while (true) {
+                ByteBuffer response = bufferPool.acquire();
+                try {
+                    readFrame(response);
+                } catch (IOException | RuntimeException e) {
+                    bufferPool.release(response);
+                    throw e;
+                }
+                int id = response.getInt();
+                CompletableFuture<ByteBuffer> call = pending.remove(id);
+                if (call == null) {
+                    bufferPool.release(response);
+                    throw new IOException("Response to an unknown request " + id);
+                }
+                call.complete(response);
+            }
+        } catch (IOException e) {
+            fail(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the connection and fails all requests not answered yet, and all following ones, with {@code cause}.
+     */
+    private void fail(RuntimeException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {  // nothing more to do with a broken connection
+        }
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<ByteBuffer> call = pending.remove(id);
+            if (call != null) {
+                call.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Receives one response frame into {@code buffer}.
+     *
+     * @return the buffer positioned at the id of the response, limited to its end
+     * @throws IllegalStateException if the server does not speak the wire version of this stub
+     */
+    private ByteBuffer readFrame(ByteBuffer buffer) throws IOException {
+        buffer.limit(MessageCodec.LENGTHSIZE);
+        readFully(buffer);
+        int length = buffer.getInt(0);
+        if (length < MessageCodec.HEADERSIZE || length > buffer.capacity() - MessageCodec.LENGTHSIZE) {
+            throw new IOException("Invalid response frame length " + length);
+        }
+        buffer.limit(MessageCodec.LENGTHSIZE + length);
+        readFully(buffer);
+        buffer.flip().position(MessageCodec.LENGTHSIZE);
+        byte version = buffer.get();
+        if (version != MessageCodec.VERSION || buffer.get(buffer.position() + Integer.BYTES) == MessageCodec.UNSUPPORTEDVERSION) {
+            throw new IllegalStateException("Server speaks wire version " + version + ", not " + MessageCodec.VERSION);
+        }
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+        }
+    }
+
+    private static void requireStatus(ByteBuffer response, byte status) {
+        if (response.get() != status) {
+            throw new IllegalStateException("Unexpected response status");
+        }
+    }
+
+    /**
+     * Closes the connection; requests not answered yet fail with {@link UncheckedIOException}.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package protocol.transport;
+
+import protocol.ByteArrayWrapper;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+import protocol.server.Server;
+import protocol.server.SessionConfigurationServer;
+import protocol.server.SessionTableServer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code RequestHandler} class decodes one request frame, calls the corresponding method of a {@link Server}
+ * and encodes its result into a response frame.
+ *
+ * <p>The server is a {@link SessionTableServer}, so server's session configurations never leave it:
+ * a response carries only the session id of the handle, and a verification request brings it back.
+ * A request of an unsupported wire version is answered by {@code UNSUPPORTEDVERSION} instead of being decoded.</p>
+ *
+ * @author Martin Zimka
+ */
+final class RequestHandler {
+
+    private final SessionTableServer server;
+    private final MessageCodec codec;
+
+    RequestHandler(SessionTableServer server) {
+        this.server = server;
+        this.codec = new MessageCodec(server.getProtocolConfiguration());
+    }
+
+    MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Handles one request.
+     *
+     * @param request body of the request frame, from its version to its end
+     * @param response buffer the whole response frame is written to, at its position, with the id of the request
+     * @throws IllegalArgumentException if the request is malformed
+     */
+    void handle(ByteBuffer request, ByteBuffer response) {
+        try {
+            if (request.get() != MessageCodec.VERSION) {
+                MessageCodec.endFrame(response, MessageCodec.beginFrame(response, 0, MessageCodec.UNSUPPORTEDVERSION));
+                return;
+            }
+            int id = request.getInt();
+            byte type = request.get();
+            switch (type) {
+                case MessageCodec.CONFIGURATION -> {
+                    requireEnd(request);
+                    int start = MessageCodec.beginFrame(response, id, MessageCodec.OK);
+                    MessageCodec.writeConfiguration(response, server.getProtocolConfiguration());
+                    MessageCodec.endFrame(response, start);
+                }
+                case MessageCodec.ENROLLCLIENT -> {
+                    ByteArrayWrapper publicSeedForA = MessageCodec.readBytes(request);
+                    ByteArrayWrapper identity = MessageCodec.readBytes(request);
+                    ByteArrayWrapper salt = MessageCodec.readBytes(request);
+                    NttPolynomial vNtt = codec.readPolynomial(request);
+                    requireEnd(request);
+                    server.enrollClient(publicSeedForA, identity, salt, vNtt);
+                    MessageCodec.endFrame(response, MessageCodec.beginFrame(response, id, MessageCodec.OK));
+                }
+                case MessageCodec.COMPUTESHAREDSECRET -> {
+                    ByteArrayWrapper identity = MessageCodec.readBytes(request);
+                    NttPolynomial piNtt = codec.readPolynomial(request);
+                    requireEnd(request);
+                    ServersResponseScs serversResponse = server.computeSharedSecret(identity, piNtt);
+                    if (serversResponse == null) {
+                        MessageCodec.endFrame(response, MessageCodec.beginFrame(response, id, MessageCodec.NOTFOUND));
+                    } else {
+                        int start = MessageCodec.beginFrame(response, id, MessageCodec.OK);
+                        MessageCodec.writeBytes(response, serversResponse.getScs().getSessionId());
+                        serversResponse.writeTo(response, codec.getPolynomialCodec());
+                        MessageCodec.endFrame(response, start);
+                    }
+                }
+                case MessageCodec.VERIFYKEYSENTITIES -> {
+                    ByteArrayWrapper sessionId = MessageCodec.readBytes(request);
+                    ByteArrayWrapper m1 = MessageCodec.readBytes(request);
+                    requireEnd(request);
+                    ByteArrayWrapper m2 = server.verifyKeysEntities(SessionConfigurationServer.ofSessionId(sessionId), m1);
+                    if (m2 == null) {
+                        MessageCodec.endFrame(response, MessageCodec.beginFrame(response, id, MessageCodec.NOTFOUND));
+                    } else {
+                        int start = MessageCodec.beginFrame(response, id, MessageCodec.OK);
+                        MessageCodec.writeBytes(response, m2);
+                        MessageCodec.endFrame(response, start);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown request type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Request is truncated", e);
+        }
+    }
+
+    private static void requireEnd(ByteBuffer request) {
+        if (request.hasRemaining()) {
+            throw new IllegalArgumentException("Request has trailing bytes");
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package protocol.transport;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.polynomial.NttPolynomial;
+import protocol.server.Server;
+import protocol.server.SessionConfigurationServer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The {@code SharedMemoryRemoteServer} class implements {@link Server} interface as a client-side stub of a server
+ * exposed by {@link SharedMemoryServer} in another process on the same host, so that {@code ClientImple} logs in
+ * through shared memory unchanged.
+ *
+ * <p>Every method writes one request frame straight into a slot of the ring of requests and waits, according to
+ * its {@link WaitStrategy}, until the response appears in the ring of responses, from which it is decoded in place.
+ * Calls are serialized, since the rings have a single producer and a single consumer on each side.</p>
+ *
+ * <p>A server that is closed, or does not respond within {@code RESPONSETIMEOUTNANOS}, fails the call with
+ * {@link UncheckedIOException}, as do all following calls.</p>
+ *
+ * @author Martin Zimka
+ */
+public class SharedMemoryRemoteServer implements Server, Closeable {
+
+    private static final long RESPONSETIMEOUTNANOS = 10_000_000_000L;
+
+    private final MappedByteBuffer mapped;
+    private final MappedRing requests;
+    private final MappedRing responses;
+    private final WaitStrategy waitStrategy;
+    private final ProtocolConfiguration protocolConfiguration;
+    private final MessageCodec codec;
+    private int nextId;
+    private IOException failure;
+
+    /**
+     * Attaches to the file of the server and fetches its protocol configuration.
+     *
+     * @param file path of the file created by {@link SharedMemoryServer}
+     * @param waitStrategy how the client waits for responses
+     * @throws IOException if the file cannot be mapped or is not ready
+     * @throws IllegalStateException if the server speaks another wire version
+     */
+    public SharedMemoryRemoteServer(Path file, WaitStrategy waitStrategy) throws IOException {
+        this.waitStrategy = waitStrategy;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < SharedMemoryServer.FILEHEADERSIZE) {
+                throw new IOException("File " + file + " is not shared by a server");
+            }
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        if ((int) SharedMemoryServer.INTS.getAcquire(mapped, 0) != SharedMemoryServer.MAGIC) {
+            throw new IOException("File " + file + " is not shared by a server");
+        }
+        int version = mapped.getInt(SharedMemoryServer.VERSIONOFFSET);
+        if (version != MessageCodec.VERSION) {
+            throw new IllegalStateException("Server speaks wire version " + version + ", not " + MessageCodec.VERSION);
+        }
+        int slots = mapped.getInt(SharedMemoryServer.SLOTSOFFSET);
+        int slotSize = mapped.getInt(SharedMemoryServer.SLOTSIZEOFFSET);
+        if (mapped.capacity() != SharedMemoryServer.FILEHEADERSIZE + 2L * MappedRing.sizeOf(slots, slotSize)) {
+            throw new IOException("File " + file + " has an invalid size");
+        }
+        this.requests = SharedMemoryServer.ring(mapped, 0, slots, slotSize);
+        this.responses = SharedMemoryServer.ring(mapped, 1, slots, slotSize);
+        try {
+            this.protocolConfiguration = exchange(MessageCodec.CONFIGURATION, out -> { }, response -> {
+                requireStatus(response, MessageCodec.OK);
+                return MessageCodec.readConfiguration(response);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        this.codec = new MessageCodec(protocolConfiguration);
+    }
+
+    @Override
+    public ProtocolConfiguration getProtocolConfiguration() {
+        return protocolConfiguration;
+    }
+
+    @Override
+    public void enrollClient(ByteArrayWrapper publicSeedForA, ByteArrayWrapper I, ByteArrayWrapper salt, NttPolynomial vNtt) {
+        exchange(MessageCodec.ENROLLCLIENT, out -> {
+            MessageCodec.writeBytes(out, publicSeedForA);
+            MessageCodec.writeBytes(out, I);
+            MessageCodec.writeBytes(out, salt);
+            codec.writePolynomial(out, vNtt);
+        }, response -> {
+            requireStatus(response, MessageCodec.OK);
+            return null;
+        });
+    }
+
+    @Override
+    public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+        return exchange(MessageCodec.COMPUTESHAREDSECRET, out -> {
+            MessageCodec.writeBytes(out, I);
+            codec.writePolynomial(out, piNtt);
+        }, response -> {
+            if (response.get(response.position()) == MessageCodec.NOTFOUND) {
+                return null;
+            }
+            requireStatus(response, MessageCodec.OK);
+            ByteArrayWrapper sessionId = MessageCodec.readBytes(response);
+            return ServersResponseScs.readFrom(response, codec.getPolynomialCodec(), SessionConfigurationServer.ofSessionId(sessionId));
+        });
+    }
+
+    @Override
+    public ByteArrayWrapper verifyKeysEntities(SessionConfigurationServer scs, ByteArrayWrapper m1) {
+        return exchange(MessageCodec.VERIFYKEYSENTITIES, out -> {
+            MessageCodec.writeBytes(out, scs.getSessionId());
+            MessageCodec.writeBytes(out, m1);
+        }, response -> {
+            if (response.get(response.position()) == MessageCodec.NOTFOUND) {
+                return null;
+            }
+            requireStatus(response, MessageCodec.OK);
+            return MessageCodec.readBytes(response);
+        });
+    }
+
+    /**
+     * Publishes one request frame and decodes its response while it is still in its slot.
+     *
+     * @param decoder decodes the response positioned at its status
+     */
+    private synchronized <T> T exchange(byte type, Consumer<ByteBuffer> body, Function<ByteBuffer, T> decoder) {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        long deadline = System.nanoTime() + RESPONSETIMEOUTNANOS;
+        ByteBuffer request;
+        int attempt = 0;
+        while ((request = requests.claim()) == null) {
+            await(attempt++, deadline);
+        }
+        int id = ++nextId;
+        int start = MessageCodec.beginFrame(request, id, type);
+        body.accept(request);
+        MessageCodec.endFrame(request, start);
+        requests.publish();
+
+        ByteBuffer response;
+        attempt = 0;
+        while ((response = responses.peek()) == null) {
+            await(attempt++, deadline);
+        }
+        try {
+            int length = response.getInt(0);
+            if (length < MessageCodec.HEADERSIZE || length > response.capacity() - MessageCodec.LENGTHSIZE) {
+                throw fail(new IOException("Invalid response frame length " + length));
+            }
+            response.limit(MessageCodec.LENGTHSIZE + length).position(MessageCodec.LENGTHSIZE);
+            byte version = response.get();
+            if (version != MessageCodec.VERSION || response.getInt() != id) {
+                throw fail(new IOException("Response does not belong to the request"));
+            }
+            return decoder.apply(response);
+        } finally {
+            responses.release();
+        }
+    }
+
+    /**
+     * Waits once for the server, unless it is closed or the deadline passed.
+     */
+    private void await(int attempt, long deadline) {
+        if ((int) SharedMemoryServer.INTS.getAcquire(mapped, SharedMemoryServer.CLOSEDOFFSET) != 0) {
+            throw fail(new EOFException("Server is closed"));
+        }
+        if (System.nanoTime() - deadline > 0) {
+            throw fail(new IOException("Server did not respond in time"));
+        }
+        MappedRing.idle(waitStrategy, attempt);
+    }
+
+    private UncheckedIOException fail(IOException cause) {
+        failure = cause;
+        return new UncheckedIOException(cause);
+    }
+
+    private static void requireStatus(ByteBuffer response, byte status) {
+        if (response.get() != status) {
+            throw new IllegalStateException("Unexpected response status");
+        }
+    }
+
+    /**
+     * Detaches from the server; following calls fail.
+     */
+    @Override
+    public synchronized void close() {
+        if (failure == null) {
+            failure = new ClosedChannelException();
+        }
+    }
+}
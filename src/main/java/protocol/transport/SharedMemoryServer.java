@@ -0,0 +1,177 @@
+package protocol.transport;
+
+import protocol.server.PendingSessionTable;
+import protocol.server.Server;
+import protocol.server.SessionOverflowPolicy;
+import protocol.server.SessionTableServer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code SharedMemoryServer} class exposes a {@link Server} to one client process on the same host through
+ * a memory-mapped file, for the lowest latency of co-located deployments; {@link SharedMemoryRemoteServer} is its
+ * client-side stub.
+ *
+ * <p>The file holds a header and two {@link MappedRing}s of frames (see {@link MessageCodec}), requests from the
+ * client and responses to it. One thread of the server polls the ring of requests and computes every response
+ * straight into a slot of the other ring, so no system call, socket buffer or copy is involved. Both sides wait
+ * for each other according to a {@link WaitStrategy}. The server creates the file and removes it when closed.</p>
+ *
+ * <p>Header of the file:</p>
+ * <ul>
+ *   <li>{@code magic}    – {@code int}, {@code MAGIC}, written last, once the rings are ready</li>
+ *   <li>{@code version}  – {@code int}, wire format version of the frames</li>
+ *   <li>{@code slots}    – {@code int}, number of slots of each ring</li>
+ *   <li>{@code slotSize} – {@code int}, number of bytes of one slot, fits the largest frame</li>
+ *   <li>{@code closed}   – {@code int}, set to 1 when the server stops serving</li>
+ * </ul>
+ *
+ * <p>As with the other transports, pending sessions stay in a {@link SessionTableServer}. A malformed request
+ * stops the server, since the only client of the file is broken.</p>
+ *
+ * @author Martin Zimka
+ */
+public class SharedMemoryServer implements AutoCloseable {
+
+    public static final int DEFAULTSLOTS = 4;
+    static final int MAGIC = 0x50515352;
+    static final int FILEHEADERSIZE = 64;
+    static final int VERSIONOFFSET = 4;
+    static final int SLOTSOFFSET = 8;
+    static final int SLOTSIZEOFFSET = 12;
+    static final int CLOSEDOFFSET = 16;
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final RequestHandler handler;
+    private final Path file;
+    private final MappedByteBuffer mapped;
+    private final MappedRing requests;
+    private final MappedRing responses;
+    private final WaitStrategy waitStrategy;
+    private final Thread poller;
+    private volatile boolean closed;
+
+    /**
+     * Exposes the server with {@code DEFAULTSLOTS} slots per ring and a table of at most
+     * {@link NioServer#DEFAULTSESSIONCAPACITY} pending sessions expiring after {@link NioServer#DEFAULTSESSIONTTLMILLIS}.
+     *
+     * @param server server to expose
+     * @param file path of the file to create, it must not exist
+     * @param waitStrategy how the server waits for requests
+     * @throws IOException if the file cannot be created
+     */
+    public SharedMemoryServer(Server server, Path file, WaitStrategy waitStrategy) throws IOException {
+        this(server, new PendingSessionTable(NioServer.DEFAULTSESSIONCAPACITY, NioServer.DEFAULTSESSIONTTLMILLIS, SessionOverflowPolicy.REJECT),
+                file, DEFAULTSLOTS, waitStrategy);
+    }
+
+    /**
+     * @param server server to expose
+     * @param sessionTable table keeping pending sessions of the server
+     * @param file path of the file to create, it must not exist
+     * @param slots number of slots of each ring
+     * @param waitStrategy how the server waits for requests
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if {@code slots} is not positive
+     */
+    public SharedMemoryServer(Server server, PendingSessionTable sessionTable, Path file, int slots, WaitStrategy waitStrategy) throws IOException {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Number of slots must be positive");
+        }
+        this.handler = new RequestHandler(new SessionTableServer(server, sessionTable));
+        this.file = file;
+        this.waitStrategy = waitStrategy;
+        int slotSize = roundUp(handler.getCodec().getMaxFrameSize());
+        int ringSize = MappedRing.sizeOf(slots, slotSize);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILEHEADERSIZE + 2L * ringSize);
+        }
+        this.requests = ring(mapped, 0, slots, slotSize);
+        this.responses = ring(mapped, 1, slots, slotSize);
+        mapped.putInt(VERSIONOFFSET, MessageCodec.VERSION);
+        mapped.putInt(SLOTSOFFSET, slots);
+        mapped.putInt(SLOTSIZEOFFSET, slotSize);
+        INTS.setRelease(mapped, 0, MAGIC);  // publishes the header to the client
+        this.poller = new Thread(this::serve, "shared-memory-server");
+        this.poller.setDaemon(true);
+        this.poller.start();
+    }
+
+    private static int roundUp(int size) {
+        return (size + MappedRing.SLOTALIGNMENT - 1) / MappedRing.SLOTALIGNMENT * MappedRing.SLOTALIGNMENT;
+    }
+
+    /**
+     * @return ring of requests ({@code index} 0) or of responses ({@code index} 1) in the mapped file
+     */
+    static MappedRing ring(ByteBuffer mapped, int index, int slots, int slotSize) {
+        int ringSize = MappedRing.sizeOf(slots, slotSize);
+        return new MappedRing(mapped.slice(FILEHEADERSIZE + index * ringSize, ringSize), slots, slotSize);
+    }
+
+    /**
+     * @return path of the file shared with the client
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Loop of the polling thread.
+     */
+    private void serve() {
+        int attempt = 0;
+        while (!closed) {
+            ByteBuffer request = requests.peek();
+            if (request == null) {
+                MappedRing.idle(waitStrategy, attempt++);
+                continue;
+            }
+            attempt = 0;
+            ByteBuffer response;
+            while ((response = responses.claim()) == null) {  // the client did not take previous responses yet
+                if (closed) {
+                    return;
+                }
+                MappedRing.idle(waitStrategy, attempt++);
+            }
+            attempt = 0;
+            try {
+                int length = request.getInt(0);
+                if (length < MessageCodec.HEADERSIZE || length > request.capacity() - MessageCodec.LENGTHSIZE) {
+                    throw new IllegalArgumentException("Invalid request frame length " + length);
+                }
+                handler.handle(request.limit(MessageCodec.LENGTHSIZE + length).position(MessageCodec.LENGTHSIZE), response);
+            } catch (RuntimeException e) {  // malformed request
+                INTS.setRelease(mapped, CLOSEDOFFSET, 1);
+                return;
+            }
+            requests.release();
+            responses.publish();
+        }
+    }
+
+    /**
+     * Stops serving, tells the client so and removes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        INTS.setRelease(mapped, CLOSEDOFFSET, 1);
+        Files.deleteIfExists(file);
+    }
+}
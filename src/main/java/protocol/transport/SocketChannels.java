@@ -0,0 +1,64 @@
+package protocol.transport;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+
+/**
+ * The {@code SocketChannels} class opens and configures the channels of the transports, so that the same server
+ * listens either on TCP or on a Unix domain socket, depending only on the type of its address.
+ *
+ * <p>A Unix domain socket suits a sidecar serving application servers on the same host: it skips the TCP/IP stack
+ * and needs no port, only a path in the file system, which is removed again when the server is closed.</p>
+ *
+ * @author Martin Zimka
+ */
+final class SocketChannels {
+
+    private SocketChannels() {
+    }
+
+    /**
+     * Opens a server channel bound to {@code address}.
+     *
+     * @param address {@code InetSocketAddress} of TCP or {@code UnixDomainSocketAddress}, whose file must not exist
+     * @throws IOException if the address cannot be bound
+     */
+    static ServerSocketChannel openServer(SocketAddress address) throws IOException {
+        ServerSocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            channel.bind(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Disables Nagle's algorithm on TCP, requests and responses are small and latency-bound.
+     * Unix domain sockets have no such option.
+     */
+    static void configure(NetworkChannel channel) throws IOException {
+        if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+    }
+
+    /**
+     * Closes the server channel and removes the file of its Unix domain socket, if any.
+     */
+    static void closeServer(ServerSocketChannel channel, SocketAddress address) throws IOException {
+        channel.close();
+        if (address instanceof UnixDomainSocketAddress unixAddress) {
+            Files.deleteIfExists(unixAddress.getPath());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package protocol.transport;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.client.ClientImple;
+import protocol.client.ClientsKnowledge;
+import protocol.random.RandomCustomImple;
+import protocol.server.Server;
+import protocol.server.ServerImple;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code TransportBenchmark} class compares throughput and latency of logins over the network transports
+ * exposing the same {@link ServerImple}: {@link NioServer} and {@link VirtualThreadServer}, both over TCP loopback
+ * and over a Unix domain socket, as used by a sidecar on the same host, and {@link SharedMemoryServer}, one per client
+ * since its rings have a single client, with {@link WaitStrategy#PARK} so that waiting sides leave the cores
+ * to the protocol math.
+ *
+ * <p>For every transport, {@code connections} clients log in {@code logins} times each, concurrently,
+ * every one over its own {@link RemoteServer} or {@link SharedMemoryRemoteServer}. The first {@code WARMUPLOGINS} logins of every client are not
+ * measured, measuring starts once all clients are warmed up. Printed are logins per second and the 50th, 99th
+ * and 99.9th percentile of login latency.</p>
+ *
+ * <p>Usage: {@code TransportBenchmark [connections] [logins] [serverThreads]}.</p>
+ *
+ * @author Martin Zimka
+ */
+public final class TransportBenchmark {
+
+    private static final int N = 1024;
+    private static final BigInteger Q = BigInteger.valueOf(1073479681);
+    private static final int ETA = 20;
+    private static final int WARMUPLOGINS = 20;
+
+    private TransportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int logins = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int serverThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        Path directory = Files.createTempDirectory("transport-benchmark");
+        UnixDomainSocketAddress socket = UnixDomainSocketAddress.of(directory.resolve("auth.sock"));
+
+        try {
+            for (SocketAddress address : List.of(loopback, socket)) {
+                String family = address == loopback ? "TCP" : "UDS";
+                try (NioServer server = new NioServer(new ServerImple(new RandomCustomImple(configuration), configuration), address, serverThreads)) {
+                    report("NIO selector " + family, run(client -> new RemoteServer(server.getAddress()), configuration, connections, logins));
+                }
+                try (VirtualThreadServer server = new VirtualThreadServer(new ServerImple(new RandomCustomImple(configuration), configuration), address, serverThreads)) {
+                    report("virtual threads " + family, run(client -> new RemoteServer(server.getAddress()), configuration, connections, logins));
+                }
+            }
+            ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration);
+            List<SharedMemoryServer> sharedMemoryServers = new ArrayList<>();
+            try {
+                for (int c = 0; c < connections; c++) {
+                    sharedMemoryServers.add(new SharedMemoryServer(server, directory.resolve("auth-" + c), WaitStrategy.PARK));
+                }
+                report("shared memory", run(client -> new SharedMemoryRemoteServer(sharedMemoryServers.get(client).getFile(), WaitStrategy.PARK),
+                        configuration, connections, logins));
+            } finally {
+                for (SharedMemoryServer sharedMemoryServer : sharedMemoryServers) {
+                    sharedMemoryServer.close();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Opens the connection of the {@code client}-th client, a {@link Server} stub closed after its logins.
+     */
+    @FunctionalInterface
+    private interface Connector<S extends Server & Closeable> {
+        S connect(int client) throws IOException;
+    }
+
+    /**
+     * Runs the logins and returns latencies of all measured logins in nanoseconds, the last element
+     * being the wall-clock time of the whole run.
+     */
+    private static <S extends Server & Closeable> long[] run(Connector<S> connector, ProtocolConfiguration configuration, int connections, int logins) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            CyclicBarrier warmedUp = new CyclicBarrier(connections + 1);
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int c = 0; c < connections; c++) {
+                int client = c;
+                results.add(executor.submit(() -> {
+                    try (S remote = connector.connect(client)) {
+                        return loginRepeatedly(remote, configuration, logins, warmedUp);
+                    }
+                }));
+            }
+            warmedUp.await();
+            long start = System.nanoTime();
+            long[] latencies = new long[connections * logins + 1];
+            int count = 0;
+            for (Future<long[]> result : results) {
+                long[] clientLatencies = result.get();
+                System.arraycopy(clientLatencies, 0, latencies, count, clientLatencies.length);
+                count += clientLatencies.length;
+            }
+            latencies[count] = System.nanoTime() - start;
+            return Arrays.copyOf(latencies, count + 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long[] loginRepeatedly(Server remote, ProtocolConfiguration configuration, int logins,
+                                          CyclicBarrier warmedUp) throws Exception {
+        RandomCustomImple random = new RandomCustomImple(configuration);
+        ClientImple client = new ClientImple(random, remote);
+        ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(random, 16), new ByteArrayWrapper(random, 16));
+        client.enroll(ck);
+        for (int i = 0; i < WARMUPLOGINS; i++) {
+            client.login(ck);
+        }
+        warmedUp.await();
+        long[] latencies = new long[logins];
+        for (int i = 0; i < logins; i++) {
+            long start = System.nanoTime();
+            if (!client.login(ck).getLoginOK()) {
+                throw new IllegalStateException("Login failed");
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static void report(String transport, long[] result) {
+        long wallNanos = result[result.length - 1];
+        long[] latencies = Arrays.copyOf(result, result.length - 1);
+        Arrays.sort(latencies);
+        System.out.printf("%-20s %8.1f logins/s   p50 %7.3f ms   p99 %7.3f ms   p99.9 %7.3f ms%n",
+                transport, latencies.length * 1e9 / wallNanos,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, percentile(latencies, 0.999) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
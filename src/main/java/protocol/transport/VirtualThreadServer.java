@@ -0,0 +1,282 @@
+package protocol.transport;
+
+import protocol.server.PendingSessionTable;
+import protocol.server.Server;
+import protocol.server.SessionOverflowPolicy;
+import protocol.server.SessionTableServer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The {@code VirtualThreadServer} class exposes a {@link Server} over TCP or a Unix domain socket with blocking sockets
+ * and one virtual thread per connection. It speaks the same frames as {@link NioServer}, so {@link RemoteServer}
+ * connects to either of them.
+ *
+ * <p>Every connection has two plain loops on virtual threads: one reads request frames and hands them to a fixed
+ * pool of {@code cpuThreads} platform threads running the protocol math, the other writes responses in the order
+ * they are computed. Long computations (and the locks taken inside the server) therefore never pin the carrier
+ * threads that run the I/O of all other connections. As with {@link NioServer}, at most {@code maxInFlight}
+ * requests of one connection are processed or waiting to be written; the reading loop waits for the rest.</p>
+ *
+ * <p>It consists of the following attributes:</p>
+ * <ul>
+ *   <li>{@code handler}       – {@code RequestHandler}, decodes requests and calls the server</li>
+ *   <li>{@code bufferPool}    – {@code BufferPool}, direct buffers of the largest frame size</li>
+ *   <li>{@code serverChannel} – {@code ServerSocketChannel}, listening socket</li>
+ *   <li>{@code address}       – {@code SocketAddress}, address of the listening socket</li>
+ *   <li>{@code cpuPool}       – {@code ExecutorService}, platform threads running the protocol math</li>
+ *   <li>{@code maxInFlight}   – {@code int}, maximal number of requests of one connection processed at once</li>
+ *   <li>{@code connections}   – {@code Map}, open connections and their reading threads, closed together
+ *                               with the server</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class VirtualThreadServer implements AutoCloseable {
+
+    private static final int MAXPOOLEDBUFFERS = 1024;
+    private static final long MINACCEPTBACKOFFMILLIS = 1;
+    private static final long MAXACCEPTBACKOFFMILLIS = 1000;
+
+    private final RequestHandler handler;
+    private final BufferPool bufferPool;
+    private final ServerSocketChannel serverChannel;
+    private final SocketAddress address;
+    private final ExecutorService cpuPool;
+    private final int maxInFlight;
+    private final Map<SocketChannel, Thread> connections = new ConcurrentHashMap<>();
+    private final Thread acceptThread;
+
+    /**
+     * Exposes the server with a table of at most {@link NioServer#DEFAULTSESSIONCAPACITY} pending sessions
+     * expiring after {@link NioServer#DEFAULTSESSIONTTLMILLIS}, and {@link NioServer#DEFAULTMAXINFLIGHT} requests
+     * per connection.
+     *
+     * @param server server to expose
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param cpuThreads number of threads running the protocol math
+     * @throws IOException if the address cannot be bound
+     */
+    public VirtualThreadServer(Server server, SocketAddress address, int cpuThreads) throws IOException {
+        this(server, new PendingSessionTable(NioServer.DEFAULTSESSIONCAPACITY, NioServer.DEFAULTSESSIONTTLMILLIS, SessionOverflowPolicy.REJECT),
+                address, cpuThreads);
+    }
+
+    /**
+     * @param server server to expose
+     * @param sessionTable table keeping pending sessions of the server
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param cpuThreads number of threads running the protocol math
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if {@code cpuThreads} is not positive
+     */
+    public VirtualThreadServer(Server server, PendingSessionTable sessionTable, SocketAddress address, int cpuThreads) throws IOException {
+        this(server, sessionTable, address, cpuThreads, NioServer.DEFAULTMAXINFLIGHT);
+    }
+
+    /**
+     * @param server server to expose
+     * @param sessionTable table keeping pending sessions of the server
+     * @param address local address to listen on, TCP port 0 picks a free one, a Unix domain socket path must not exist
+     * @param cpuThreads number of threads running the protocol math
+     * @param maxInFlight maximal number of requests of one connection processed at once
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if {@code cpuThreads} or {@code maxInFlight} is not positive
+     */
+    public VirtualThreadServer(Server server, PendingSessionTable sessionTable, SocketAddress address, int cpuThreads,
+                               int maxInFlight) throws IOException {
+        if (cpuThreads <= 0) {
+            throw new IllegalArgumentException("Number of CPU threads must be positive");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of requests in flight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.handler = new RequestHandler(new SessionTableServer(server, sessionTable));
+        this.bufferPool = new BufferPool(handler.getCodec().getMaxFrameSize(), MAXPOOLEDBUFFERS);
+        this.serverChannel = SocketChannels.openServer(address);
+        this.address = serverChannel.getLocalAddress();
+        this.cpuPool = Executors.newFixedThreadPool(cpuThreads, runnable -> {
+            Thread thread = new Thread(runnable, "virtual-thread-server-cpu");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptThread = Thread.ofVirtual().name("virtual-thread-server-accept").start(this::acceptLoop);
+    }
+
+    /**
+     * @return local address the server listens on, with the chosen port on TCP
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Accepts connections until the server is closed. A failing accept, e.g. when the process is out of file
+     * descriptors, is retried after a back-off growing up to {@code MAXACCEPTBACKOFFMILLIS}, not in a hot spin.
+     */
+    private void acceptLoop() {
+        long backoffMillis = 0;
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+                backoffMillis = 0;
+            } catch (IOException e) {
+                if (!serverChannel.isOpen()) {
+                    return;  // the server was closed
+                }
+                backoffMillis = Math.min(Math.max(2 * backoffMillis, MINACCEPTBACKOFFMILLIS), MAXACCEPTBACKOFFMILLIS);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {  // closed server
+                    return;
+                }
+                continue;
+            }
+            try {
+                SocketChannels.configure(channel);
+            } catch (IOException e) {  // only this connection is broken
+                closeQuietly(channel);
+                continue;
+            }
+            Thread reader = Thread.ofVirtual().name("virtual-thread-server-connection").unstarted(() -> serve(channel));
+            connections.put(channel, reader);
+            reader.start();
+        }
+    }
+
+    /**
+     * Reading loop of one connection, running on its virtual thread.
+     */
+    private void serve(SocketChannel channel) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        LinkedBlockingQueue<ByteBuffer> responses = new LinkedBlockingQueue<>();
+        Thread writer = Thread.ofVirtual().name("virtual-thread-server-writer").start(() -> writeResponses(channel, responses, inFlight));
+        ByteBuffer header = ByteBuffer.allocate(MessageCodec.LENGTHSIZE);
+        try (channel) {
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header, true)) {
+                    return;  // the client closed the connection between requests
+                }
+                int length = header.getInt(0);
+                if (length < MessageCodec.HEADERSIZE || length > bufferPool.getBufferSize() - MessageCodec.LENGTHSIZE) {
+                    return;
+                }
+                inFlight.acquire();
+                ByteBuffer request = bufferPool.acquire().limit(length);
+                try {
+                    readFully(channel, request, false);
+                } catch (IOException e) {
+                    bufferPool.release(request);
+                    throw e;
+                }
+                request.flip();
+                cpuPool.execute(() -> process(channel, request, responses));
+            }
+        } catch (IOException | RejectedExecutionException e) {  // broken connection or closed server
+        } catch (InterruptedException e) {  // closed server
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(channel);
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * Runs on a CPU thread; a malformed request, or anything else the handler throws, even an {@code Error},
+     * closes the connection, so that its client does not wait for a response that never comes.
+     */
+    private void process(SocketChannel channel, ByteBuffer request, LinkedBlockingQueue<ByteBuffer> responses) {
+        ByteBuffer response = bufferPool.acquire();
+        try {
+            handler.handle(request, response);
+            responses.add(response.flip());
+        } catch (Throwable e) {
+            bufferPool.release(response);
+            closeQuietly(channel);
+        } finally {
+            bufferPool.release(request);
+        }
+    }
+
+    /**
+     * Writing loop of one connection, running on its own virtual thread until the connection is closed.
+     */
+    private void writeResponses(SocketChannel channel, LinkedBlockingQueue<ByteBuffer> responses, Semaphore inFlight) {
+        try {
+            while (true) {
+                ByteBuffer response = responses.take();
+                try {
+                    while (response.hasRemaining()) {
+                        channel.write(response);
+                    }
+                } finally {
+                    bufferPool.release(response);
+                }
+                inFlight.release();
+            }
+        } catch (IOException | InterruptedException e) {  // the connection was closed
+            closeQuietly(channel);  // wakes up the reading loop
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {  // nothing more to do with a broken connection
+        }
+    }
+
+    /**
+     * Reads until {@code in} is full.
+     *
+     * @return false if the end of stream was reached before the first byte and {@code endAllowed} is true
+     * @throws EOFException if the end of stream was reached in other cases
+     */
+    private static boolean readFully(SocketChannel channel, ByteBuffer in, boolean endAllowed) throws IOException {
+        boolean first = true;
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                if (first && endAllowed) {
+                    return false;
+                }
+                throw new EOFException("Client closed the connection in the middle of a frame");
+            }
+            first = false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting and serving requests and closes all connections.
+     */
+    @Override
+    public void close() throws IOException {
+        SocketChannels.closeServer(serverChannel, address);
+        acceptThread.interrupt();  // wakes up a back-off after a failed accept
+        for (Map.Entry<SocketChannel, Thread> connection : connections.entrySet()) {
+            connection.getKey().close();
+            connection.getValue().interrupt();  // wakes up a reading loop waiting for requests in flight
+        }
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cpuPool.shutdownNow();
+    }
+}
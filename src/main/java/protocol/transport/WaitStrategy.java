@@ -0,0 +1,18 @@
+package protocol.transport;
+
+/**
+ * The {@code WaitStrategy} enum lists how a side of {@link SharedMemoryServer} waits for the other one
+ * when its ring is empty or full.
+ *
+ * <ul>
+ *   <li>{@link #SPIN} – busy-spins, the lowest latency at the cost of one fully used core per waiting side</li>
+ *   <li>{@link #PARK} – spins briefly, then parks for short periods; the other process cannot unpark it,
+ *                       so a message waits up to one period, but idle sides take almost no CPU</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public enum WaitStrategy {
+    SPIN,
+    PARK
+}
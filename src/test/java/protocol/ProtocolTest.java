@@ -4,19 +4,36 @@ import org.junit.Test;
 import protocol.client.ClientImple;
 import protocol.client.ClientsKnowledge;
 import protocol.client.LoginResponse;
+import protocol.random.BenchmarkSeededRandom;
+import protocol.random.SamplingMode;
 import protocol.random.TestPreSeededRandom;
 import protocol.random.RandomCustomImple;
+import protocol.server.ExecutorAsyncServer;
+import protocol.server.OffHeapServersDatabase;
+import protocol.server.PendingSessionTable;
 import protocol.server.Server;
 import protocol.server.ServerImple;
+import protocol.server.ServerOptions;
+import protocol.server.ServersDatabaseImple;
+import protocol.server.SessionOverflowPolicy;
+import protocol.server.SessionTableServer;
+import protocol.server.TieredServersDatabase;
 import protocol.server.TestServerWrapper;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -28,8 +45,15 @@ import static org.junit.Assert.assertTrue;
  *     <li>different clients derive different shared secret keys</li>
  *     <li>multiple logins after the same enrollment produce distinct shared secret keys</li>
  *     <li>the protocol’s deterministic components results in the same and correct shared secret key</li>
+ *     <li>logins forking their independent steps derive the same correct key; a saturated pool forks nothing</li>
+ *     <li>parties using {@code BenchmarkSeededRandom} replay the same login with the same shared secret key</li>
  *     <li>login fails when using an incorrect verifier</li>
  *     <li>multiple parties can enroll and log in concurrently without interference</li>
+ *     <li>servers do not share their databases; concurrent enrollments and logins to one server succeed</li>
+ *     <li>asynchronous logins (also several at once) succeed and derive distinct keys; unknown client fails</li>
+ *     <li>logins to a server adapted to {@code AsyncServer} succeed, synchronous and asynchronous ones</li>
+ *     <li>logins served from the pool of precomputed server's ephemeral keys succeed and derive distinct keys</li>
+ *     <li>the protocol works in the AES-CTR sampling mode and parties must agree on the mode</li>
  * </ul>
  *
  * @author Martin Zimka
@@ -52,6 +76,10 @@ public class ProtocolTest {
     private static final ByteArrayWrapper PWD = new ByteArrayWrapper("password123".getBytes());
     // THIS IS NOT HOW TO DO IT !!! THIS IS JUST FOR PROOF-OF-CONCEPT !!! THIS IS NOT HOW TO DO IT !!!
 
+    // Key derived by the login with pre-seeded randomness of both parties.
+    private static final ByteArrayWrapper CORRECTKEY = new ByteArrayWrapper(new byte[] {67, -49, -9, 37, -10, 69, -64, 115, -46, 89, 95,
+            10, 82, -11, 102, 107, -100, -6, 83, 84, 54, -102, 107, 57, -115, 83, -12, -25, 20, 76, -32, -65});
+
     // Generate random bytes to generate random identity or random password.
     Random random = new Random();
 
@@ -187,8 +215,6 @@ public class ProtocolTest {
     public void determinismOneCorrectKey() {
 
         Set<ByteArrayWrapper> keys = new HashSet<>();
-        ByteArrayWrapper correctKey = new ByteArrayWrapper(new byte[] {67, -49, -9, 37, -10, 69, -64, 115, -46, 89, 95,
-                10, 82, -11, 102, 107, -100, -6, 83, 84, 54, -102, 107, 57, -115, 83, -12, -25, 20, 76, -32, -65});
 
         for (int i = 0; i < NUMBEROFROUNDS; i++) {
 
@@ -205,7 +231,73 @@ public class ProtocolTest {
         }
 
         assertEquals(1, keys.size());
-        assertTrue(keys.contains(correctKey));
+        assertTrue(keys.contains(CORRECTKEY));
+    }
+
+    /**
+     * Tests that logins forking their independent steps onto the intra-login pool end up with the same correct key
+     * as {@link #determinismOneCorrectKey()}, and that a pool without spare threads forks no login.
+     */
+    @Test
+    public void intraLoginParallelismKeepsKey() {
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ForkJoinPool saturatedPool = new ForkJoinPool(1);
+        try {
+            for (ForkJoinPool intraLoginPool : List.of(pool, saturatedPool)) {
+                long forkedLogins = 0;
+                for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                    ServerImple server = new ServerImple(new TestPreSeededRandom(N, Q, ETA, 123), new ProtocolConfiguration(N, Q, ETA),
+                            ServerOptions.defaults().withIntraLoginPool(intraLoginPool));
+
+                    ClientsKnowledge ck = new ClientsKnowledge(I, PWD);
+                    ClientImple client = new ClientImple(new TestPreSeededRandom(N, Q, ETA, 456), server);
+
+                    client.enroll(ck);
+                    LoginResponse loginResponse = client.login(ck);
+
+                    assertTrue(loginResponse.getLoginOK());
+                    assertEquals(CORRECTKEY, loginResponse.getSharedSecret());
+                    forkedLogins += server.getForkedLogins();
+                }
+                assertEquals(intraLoginPool == pool ? NUMBEROFROUNDS : 0, forkedLogins);
+            }
+        } finally {
+            pool.shutdown();
+            saturatedPool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} client-server interactions, where both parties use {@code BenchmarkSeededRandom}
+     * with fixed seeds, end up with the same key everytime.
+     */
+    @Test
+    public void benchmarkSeededRandomReplaysLogin() {
+
+        System.setProperty(BenchmarkSeededRandom.ALLOWPROPERTY, "true");
+        try {
+            Set<ByteArrayWrapper> keys = new HashSet<>();
+            ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+
+                Server server = new ServerImple(new BenchmarkSeededRandom(configuration, 123), configuration);
+
+                ClientsKnowledge ck = new ClientsKnowledge(I, PWD);
+                ClientImple client = new ClientImple(new BenchmarkSeededRandom(configuration, 456), server);
+
+                client.enroll(ck);
+                LoginResponse loginResponse = client.login(ck);
+
+                assertTrue(loginResponse.getLoginOK());
+                keys.add(loginResponse.getSharedSecret());
+            }
+
+            assertEquals(1, keys.size());
+        } finally {
+            System.clearProperty(BenchmarkSeededRandom.ALLOWPROPERTY);
+        }
     }
 
     /**
@@ -269,4 +361,222 @@ public class ProtocolTest {
             assertTrue(loginResponse.getLoginOK());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that client enrolled to one server cannot log in to another one.
+     */
+    @Test
+    public void serversDoNotShareDatabase() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+        Server enrolledTo = new ServerImple(new RandomCustomImple(configuration), configuration,
+                ServerOptions.defaults().withServersDatabase(new ServersDatabaseImple()));
+        Server other = new ServerImple(new RandomCustomImple(configuration), configuration,
+                ServerOptions.defaults().withServersDatabase(new ServersDatabaseImple()));
+        ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(7), generateSeededBAW(8));
+
+        ClientImple client = new ClientImple(new RandomCustomImple(configuration), enrolledTo);
+        client.enroll(ck);
+
+        assertTrue(client.login(ck).getLoginOK());
+        assertFalse(new ClientImple(new RandomCustomImple(configuration), other).login(ck).getLoginOK());
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} logins to a server with a tiered database succeed, whether the client
+     * is served by the hot tier (with a expanded) or by the cold off-heap database.
+     */
+    @Test
+    public void tieredDatabaseLoginsSucceeded() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+        RandomCustomImple random = new RandomCustomImple(configuration);
+        TieredServersDatabase database = new TieredServersDatabase(new OffHeapServersDatabase(configuration), configuration, random, 1);
+        Server server = new ServerImple(random, configuration, ServerOptions.defaults().withServersDatabase(database));
+
+        ClientImple hotClient = new ClientImple(new RandomCustomImple(configuration), server);
+        ClientsKnowledge hotKnowledge = new ClientsKnowledge(generateSeededBAW(7), generateSeededBAW(8));
+        hotClient.enroll(hotKnowledge);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            ClientImple coldClient = new ClientImple(new RandomCustomImple(configuration), server);
+            ClientsKnowledge coldKnowledge = new ClientsKnowledge(generateSeededBAW(100 + 2 * i), generateSeededBAW(101 + 2 * i));
+            coldClient.enroll(coldKnowledge);
+            assertTrue(hotClient.login(hotKnowledge).getLoginOK());
+            assertTrue(coldClient.login(coldKnowledge).getLoginOK());
+        }
+        assertTrue(database.getHits() > 0);
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} logins to a server keeping pending sessions in its own table succeed
+     * and leave no session behind.
+     */
+    @Test
+    public void sessionTableLoginsSucceeded() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+        PendingSessionTable sessionTable = new PendingSessionTable(4, 60_000, SessionOverflowPolicy.REJECT);
+        Server server = new SessionTableServer(new ServerImple(new RandomCustomImple(configuration), configuration), sessionTable);
+        ClientImple client = new ClientImple(new RandomCustomImple(configuration), server);
+        ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(7), generateSeededBAW(8));
+        client.enroll(ck);
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            assertTrue(client.login(ck).getLoginOK());
+        }
+        assertEquals(0, sessionTable.size());
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} clients enrolling and logging in to the same server concurrently all succeed.
+     */
+    @Test
+    public void concurrentEnrollmentsAndLoginsSucceeded() throws Exception {
+
+        Server server = new ServerImple(new RandomCustomImple(N, Q, ETA), N, Q, ETA);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<LoginResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(i), generateSeededBAW(2L * i));
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    ClientImple client = new ClientImple(new RandomCustomImple(N, Q, ETA), server);
+                    client.enroll(ck);
+                    return client.login(ck);
+                }, executor));
+            }
+            for (CompletableFuture<LoginResponse> future : futures) {
+                assertTrue(future.get().getLoginOK());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that logins to a server running on an executor behind {@code ExecutorAsyncServer} succeed,
+     * {@code NUMBEROFROUNDS} synchronous and {@code NUMBEROFROUNDS} asynchronous ones started all at once.
+     */
+    @Test
+    public void asyncServerLoginsSucceeded() {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(4);
+        try {
+            Server server = new ServerImple(new RandomCustomImple(N, Q, ETA), N, Q, ETA);
+            ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(3), generateSeededBAW(4));
+            ClientImple client = new ClientImple(new RandomCustomImple(N, Q, ETA), new ExecutorAsyncServer(server, serverExecutor), executor, 4);
+            client.enroll(ck);
+
+            List<CompletableFuture<LoginResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                assertTrue(client.login(ck).getLoginOK());
+                futures.add(client.loginAsync(ck));
+            }
+            for (CompletableFuture<LoginResponse> future : futures) {
+                assertTrue(future.join().getLoginOK());
+            }
+        } finally {
+            executor.shutdown();
+            serverExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} asynchronous logins of the same client, started all at once,
+     * succeed and derive distinct keys, and that asynchronous login of not enrolled client fails.
+     */
+    @Test
+    public void loginAsyncSucceeded() {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Server server = new ServerImple(new RandomCustomImple(N, Q, ETA), N, Q, ETA);
+            ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(3), generateSeededBAW(4));
+            ClientImple client = new ClientImple(new RandomCustomImple(N, Q, ETA), server, executor, 4);
+            client.enroll(ck);
+
+            List<CompletableFuture<LoginResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                futures.add(client.loginAsync(ck));
+            }
+            Set<ByteArrayWrapper> keys = new HashSet<>();
+            for (CompletableFuture<LoginResponse> future : futures) {
+                LoginResponse loginResponse = future.join();
+                assertTrue(loginResponse.getLoginOK());
+                keys.add(loginResponse.getSharedSecret());
+            }
+            assertEquals(NUMBEROFROUNDS, keys.size());
+
+            ClientsKnowledge unknown = new ClientsKnowledge(generateSeededBAW(5), generateSeededBAW(6));
+            assertFalse(client.loginAsync(unknown).join().getLoginOK());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} logins of the same client to the server with the pool of precomputed
+     * ephemeral keys succeed, derive distinct keys and are (mostly) served from the pool.
+     */
+    @Test
+    public void ephemeralKeyPoolLoginsSucceeded() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+        Set<ByteArrayWrapper> keys = new HashSet<>();
+
+        try (ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration,
+                ServerOptions.defaults().withEphemeralKeyPool(4, 2))) {
+
+            ClientsKnowledge ck = new ClientsKnowledge(generateSeededBAW(1), generateSeededBAW(2));
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), server);
+            client.enroll(ck);
+
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                LoginResponse loginResponse = client.login(ck);
+                assertTrue(loginResponse.getLoginOK());
+                keys.add(loginResponse.getSharedSecret());
+            }
+
+            assertEquals(NUMBEROFROUNDS, keys.size());
+            assertEquals(NUMBEROFROUNDS, server.getEphemeralKeyPool().getHits() + server.getEphemeralKeyPool().getMisses());
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that client and server using {@code SamplingMode.AES_CTR}
+     * will at the end have the same key.
+     */
+    @Test
+    public void aesCtrModeBothSameKey() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA, SamplingMode.AES_CTR);
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+
+            Server delegate = new ServerImple(new RandomCustomImple(configuration), configuration);
+            TestServerWrapper serverWrapper = new TestServerWrapper(delegate);
+
+            ClientsKnowledge ck = new ClientsKnowledge(generateRandomI(), generateRandomPWD());
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), serverWrapper);
+
+            client.enroll(ck);
+            LoginResponse loginResponse = client.login(ck);
+
+            assertTrue(loginResponse.getLoginOK());
+            assertEquals(loginResponse.getSharedSecret(), serverWrapper.getCapturedSkj());
+        }
+    }
+
+    /**
+     * Tests that client using different sampling mode than the server is refused.
+     */
+    @Test
+    public void differentSamplingModesRefused() {
+
+        ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA, SamplingMode.AES_CTR);
+        Server server = new ServerImple(new RandomCustomImple(configuration), configuration);
+
+        assertThrows(IllegalArgumentException.class, () -> new ClientImple(new RandomCustomImple(N, Q, ETA), server));
+    }
+}
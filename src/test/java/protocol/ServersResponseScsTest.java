@@ -0,0 +1,107 @@
+package protocol;
+
+import org.junit.Test;
+import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PackedPolynomialCodec;
+import protocol.polynomial.PolynomialConfig;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * The {@code ServersResponseScsTest} class tests the wire form of {@code ServersResponseScs}:
+ * <ul>
+ *     <li>{@code writeTo} and {@code readFrom} – round trip and encoded length</li>
+ *     <li>{@code writeTo} – rejects Signal function outputs other than 0 and 1</li>
+ *     <li>{@code readFrom} – rejects truncated wire forms</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class ServersResponseScsTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+
+    private static final int N = 1024;
+    private static final BigInteger Q = BigInteger.valueOf(1073479681);
+    private static final int ETA = 20;
+
+    private final ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+    private final PolynomialConfig pc = new PolynomialConfig(N, Q);
+    private final PackedPolynomialCodec codec = new PackedPolynomialCodec(pc);
+    private final RandomCustom rc = new RandomCustomImple(configuration);
+    Random random = new Random();
+
+    private ServersResponseScs randomResponse(List<Integer> wj) {
+        List<BigInteger> coeffs = new ArrayList<>(N);
+        for (int i = 0; i < N; i++) {
+            coeffs.add(BigInteger.valueOf(random.nextLong(Q.longValue())));
+        }
+        return new ServersResponseScs(new ByteArrayWrapper(rc, 16), NttPolynomial.fromNttCoefficients(coeffs, pc), wj, null);
+    }
+
+    private List<Integer> randomSignal() {
+        List<Integer> wj = new ArrayList<>(N);
+        for (int i = 0; i < N; i++) {
+            wj.add(random.nextInt(2));
+        }
+        return wj;
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a response read back from its wire form equals the written one
+     * and that the wire form takes one bit per Signal function output.
+     */
+    @Test
+    public void roundTrip() {
+        int length = ServersResponseScs.getEncodedLength(codec, 16);
+        assertEquals(Short.BYTES + 16 + codec.getPackedLength() + N / 8, length);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            ServersResponseScs response = randomResponse(randomSignal());
+            response.writeTo(buffer.clear(), codec);
+            assertEquals(length, buffer.position());
+
+            ServersResponseScs read = ServersResponseScs.readFrom(buffer.flip(), codec, null);
+            assertEquals(length, buffer.position());
+            assertEquals(response.getSalt(), read.getSalt());
+            assertEquals(response.getPjNtt().toByteArrayWrapper(), read.getPjNtt().toByteArrayWrapper());
+            assertEquals(response.getWj(), read.getWj());
+            assertNull(read.getScs());
+        }
+    }
+
+    /**
+     * Tests that a Signal function output other than 0 and 1 cannot be written.
+     */
+    @Test
+    public void nonBinarySignalRejected() {
+        List<Integer> wj = randomSignal();
+        wj.set(N - 1, 2);
+        ServersResponseScs response = randomResponse(wj);
+        ByteBuffer buffer = ByteBuffer.allocate(ServersResponseScs.getEncodedLength(codec, 16));
+        assertThrows(IllegalArgumentException.class, () -> response.writeTo(buffer, codec));
+    }
+
+    /**
+     * Tests that a wire form missing its last byte is rejected.
+     */
+    @Test
+    public void truncatedRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(ServersResponseScs.getEncodedLength(codec, 16));
+        randomResponse(randomSignal()).writeTo(buffer, codec);
+        buffer.flip().limit(buffer.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> ServersResponseScs.readFrom(buffer, codec, null));
+    }
+}
@@ -0,0 +1,104 @@
+package protocol.hash;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code HashProvidersTest} class tests all providers returned by {@code HashProviders.available()}
+ * against the reference {@code BouncyCastleHashProvider} and the following methods of the class {@code HashProviders}:
+ * <ul>
+ *     <li>{@code byName(String)}</li>
+ *     <li>{@code fastest(List<HashProvider>)}</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class HashProvidersTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    // Maximal length of hashed or absorbed input. Greater than all rates, so that also multi-block inputs are tested.
+    private static final int MAXINPUTLEN = 700;
+    // Maximal length of squeezed output.
+    private static final int MAXOUTPUTLEN = 700;
+
+    private final HashProvider reference = new BouncyCastleHashProvider();
+
+    Random random = new Random();
+
+    private byte[] squeeze(Xof xof, byte[] input, int outLen) {
+        // absorb in two parts and squeeze in two parts to test streaming
+        int inSplit = random.nextInt(input.length + 1);
+        xof.update(input, 0, inSplit);
+        xof.update(input, inSplit, input.length - inSplit);
+        byte[] out = new byte[outLen];
+        int outSplit = random.nextInt(outLen + 1);
+        xof.doOutput(out, 0, outSplit);
+        xof.doFinal(out, outSplit, outLen - outSplit);
+        return out;
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that SHA3-256, SHAKE-128 and SHAKE-256 of every available provider
+     * produce the same output as the reference provider for random input.
+     */
+    @Test
+    public void allProvidersAgreeWithReference() {
+        for (HashProvider provider : HashProviders.available()) {
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                byte[] input = new byte[random.nextInt(MAXINPUTLEN)];
+                random.nextBytes(input);
+                int outLen = random.nextInt(MAXOUTPUTLEN);
+
+                assertArrayEquals(reference.sha3256(input, 0, input.length), provider.sha3256(input, 0, input.length));
+
+                Xof expected128 = reference.newShake128();
+                expected128.update(input, 0, input.length);
+                byte[] expectedOut128 = new byte[outLen];
+                expected128.doFinal(expectedOut128, 0, outLen);
+                assertArrayEquals(expectedOut128, squeeze(provider.newShake128(), input, outLen));
+
+                Xof expected256 = reference.newShake256();
+                expected256.update(input, 0, input.length);
+                byte[] expectedOut256 = new byte[outLen];
+                expected256.doFinal(expectedOut256, 0, outLen);
+                assertArrayEquals(expectedOut256, squeeze(provider.newShake256(), input, outLen));
+            }
+        }
+    }
+
+    /**
+     * Tests that providers can be selected by their names and unknown name is refused.
+     */
+    @Test
+    public void byName() {
+        for (HashProvider provider : HashProviders.available()) {
+            assertEquals(provider.getName(), HashProviders.byName(provider.getName()).getName());
+        }
+        assertThrows(IllegalArgumentException.class, () -> HashProviders.byName("md5"));
+    }
+
+    /**
+     * Tests that benchmark picks one of the given providers and never an incorrect one.
+     */
+    @Test
+    public void fastestIsCorrect() {
+        HashProvider broken = new KeccakHashProvider() {
+            @Override
+            public byte[] sha3256(byte[] data, int off, int len) {
+                return new byte[32];
+            }
+        };
+        HashProvider fastest = HashProviders.fastest(List.of(broken));
+        assertEquals(BouncyCastleHashProvider.NAME, fastest.getName());
+        List<HashProvider> available = HashProviders.available();
+        assertTrue(available.stream().anyMatch(p -> p.getName().equals(HashProviders.fastest(available).getName())));
+    }
+}
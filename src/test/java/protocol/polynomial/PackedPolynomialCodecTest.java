@@ -0,0 +1,143 @@
+package protocol.polynomial;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * The {@code PackedPolynomialCodecTest} class tests the following methods in the class {@code PackedPolynomialCodec}:
+ * <ul>
+ *     <li>{@code encode(NttPolynomial)} and {@code decode(byte[])} – round trip and packed length</li>
+ *     <li>{@code encode(NttPolynomial, ByteBuffer, int)} and {@code decode(ByteBuffer, int)} – round trip
+ *     at an offset of a direct buffer</li>
+ *     <li>{@code decode(byte[])} and {@code encode(NttPolynomial, ByteBuffer, int)} – reject coefficients
+ *     not reduced modulo q</li>
+ *     <li>{@code NttPolynomial.writeTo} and {@code NttPolynomial.readFrom} – round trip at relative positions</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class PackedPolynomialCodecTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int OFFSET = 13;
+
+    private static final int N = 1024;
+    private static final BigInteger Q = BigInteger.valueOf(1073479681);
+
+    private final PolynomialConfig pc = new PolynomialConfig(N, Q);
+    private final PackedPolynomialCodec codec = new PackedPolynomialCodec(pc);
+    Random random = new Random();
+
+    private NttPolynomial randomPolynomial() {
+        List<BigInteger> coeffs = new ArrayList<>(N);
+        for (int i = 0; i < N; i++) {
+            coeffs.add(BigInteger.valueOf(random.nextLong(Q.longValue())));
+        }
+        coeffs.set(0, Q.subtract(BigInteger.ONE));  // the largest coefficient must fit as well
+        return NttPolynomial.fromNttCoefficients(coeffs, pc);
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that decoded polynomial equals the encoded one
+     * and that every coefficient takes exactly bit length of q - 1 bits.
+     */
+    @Test
+    public void roundTrip() {
+        assertEquals(30, codec.getBitsPerCoeff());
+        assertEquals(N * 30 / 8, codec.getPackedLength());
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            NttPolynomial polynomial = randomPolynomial();
+            byte[] packed = codec.encode(polynomial);
+            assertEquals(codec.getPackedLength(), packed.length);
+            assertEquals(polynomial.getCoefficients(), codec.decode(packed).getCoefficients());
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times the round trip at an offset of a direct buffer.
+     */
+    @Test
+    public void roundTripDirectBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(OFFSET + codec.getPackedLength());
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            NttPolynomial polynomial = randomPolynomial();
+            codec.encode(polynomial, buffer, OFFSET);
+            assertEquals(0, buffer.position());
+            assertEquals(polynomial.getCoefficients(), codec.decode(buffer, OFFSET).getCoefficients());
+        }
+    }
+
+    /**
+     * Tests that polynomials of different configuration are refused.
+     */
+    @Test
+    public void differentConfigurationRefused() {
+        PolynomialConfig other = new PolynomialConfig(256, BigInteger.valueOf(7681));
+        NttPolynomial polynomial = NttPolynomial.constantTwoNtt(other);
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(polynomial));
+    }
+
+    /**
+     * Tests that a packed coefficient equal to q is rejected.
+     */
+    @Test
+    public void unreducedCoefficientRejected() {
+        byte[] packed = codec.encode(randomPolynomial());
+        long q = Q.longValue();
+        for (int i = 0; i < 3; i++) {  // the first coefficient takes the lowest 30 bits
+            packed[i] = (byte) (q >>> (8 * i));
+        }
+        packed[3] = (byte) ((packed[3] & 0xC0) | ((q >>> 24) & 0x3F));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(packed));
+    }
+
+    /**
+     * Tests that a negative coefficient and a coefficient equal to q are refused by the encoder
+     * and leave the buffer untouched.
+     */
+    @Test
+    public void unreducedCoefficientRefused() {
+        for (BigInteger coeff : List.of(BigInteger.ONE.negate(), Q)) {
+            List<BigInteger> coeffs = new ArrayList<>(randomPolynomial().getCoefficients());
+            coeffs.set(N / 2, coeff);
+            NttPolynomial polynomial = NttPolynomial.fromNttCoefficients(coeffs, pc);
+            ByteBuffer buffer = ByteBuffer.allocate(codec.getPackedLength());
+            assertThrows(IllegalArgumentException.class, () -> codec.encode(polynomial, buffer, 0));
+            assertEquals(ByteBuffer.allocate(codec.getPackedLength()), buffer);
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that polynomials written one after another by {@code writeTo}
+     * are read back by {@code readFrom}, both advancing the position past the packed polynomial.
+     */
+    @Test
+    public void relativeRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(OFFSET + 2 * codec.getPackedLength());
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            NttPolynomial first = randomPolynomial();
+            NttPolynomial second = randomPolynomial();
+            buffer.clear().position(OFFSET);
+            first.writeTo(buffer, codec);
+            second.writeTo(buffer, codec);
+            assertEquals(buffer.capacity(), buffer.position());
+
+            buffer.flip().position(OFFSET);
+            assertEquals(first.getCoefficients(), NttPolynomial.readFrom(buffer, codec).getCoefficients());
+            assertEquals(second.getCoefficients(), NttPolynomial.readFrom(buffer, codec).getCoefficients());
+            assertEquals(buffer.limit(), buffer.position());
+            assertThrows(IllegalArgumentException.class, () -> NttPolynomial.readFrom(buffer, codec));
+        }
+    }
+}
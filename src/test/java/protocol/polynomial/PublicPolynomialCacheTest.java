@@ -0,0 +1,106 @@
+package protocol.polynomial;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code PublicPolynomialCacheTest} class tests the following methods in the class {@code PublicPolynomialCache}:
+ * <ul>
+ *     <li>{@code getOrExpand(RandomCustom, ByteArrayWrapper)} – results, hits and misses</li>
+ *     <li>eviction of the least recently used polynomials once the capacity is reached</li>
+ *     <li>disabled cache of capacity 0</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class PublicPolynomialCacheTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int SEEDSIZE = 32;
+    private static final int CAPACITY = 20;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final PolynomialConfig pc = new PolynomialConfig(N, Q);
+    private final RandomCustom rc = new RandomCustomImple(N, Q, ETA);
+    Random random = new Random();
+
+    private ByteArrayWrapper randomSeed() {
+        byte[] seed = new byte[SEEDSIZE];
+        random.nextBytes(seed);
+        return new ByteArrayWrapper(seed);
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that the cached polynomial equals the freshly expanded one
+     * and that the second request of the same seed is a hit.
+     */
+    @Test
+    public void getOrExpand() {
+        PublicPolynomialCache cache = new PublicPolynomialCache(pc, NUMBEROFROUNDS);
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            ByteArrayWrapper seed = randomSeed();
+            NttPolynomial aNtt = cache.getOrExpand(rc, seed);
+            assertEquals(Utils.generateUniformPolyNtt(pc, rc, seed).getCoefficients(), aNtt.getCoefficients());
+            assertSame(aNtt, cache.getOrExpand(rc, seed));
+        }
+        assertEquals(NUMBEROFROUNDS, cache.getHits());
+        assertEquals(NUMBEROFROUNDS, cache.getMisses());
+    }
+
+    /**
+     * Tests that the cache never exceeds its capacity and evicts polynomials that were not used recently.
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PublicPolynomialCache cache = new PublicPolynomialCache(pc, CAPACITY);
+        ByteArrayWrapper hot = randomSeed();
+        List<ByteArrayWrapper> seeds = new ArrayList<>();
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            cache.getOrExpand(rc, hot);  // hot seed is used all the time, so it must stay cached
+            ByteArrayWrapper seed = randomSeed();
+            seeds.add(seed);
+            cache.getOrExpand(rc, seed);
+            assertTrue(cache.size() <= CAPACITY);
+        }
+        assertEquals(NUMBEROFROUNDS - 1, cache.getHits());
+        assertEquals(NUMBEROFROUNDS + 1 - cache.size(), cache.getEvictions());
+
+        long misses = cache.getMisses();
+        cache.getOrExpand(rc, seeds.get(0));  // the oldest seed must have been evicted
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    /**
+     * Tests that the cache of capacity 0 caches nothing and negative capacity is refused.
+     */
+    @Test
+    public void disabled() {
+        PublicPolynomialCache cache = new PublicPolynomialCache(pc, 0);
+        ByteArrayWrapper seed = randomSeed();
+        cache.getOrExpand(rc, seed);
+        cache.getOrExpand(rc, seed);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        assertThrows(IllegalArgumentException.class, () -> new PublicPolynomialCache(pc, -1));
+    }
+}
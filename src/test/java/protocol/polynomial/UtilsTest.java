@@ -0,0 +1,58 @@
+package protocol.polynomial;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The {@code UtilsTest} class tests the following methods in the class {@code Utils}:
+ * <ul>
+ *     <li>{@code multiply2NttTuplesAddThemTogetherNtt(PolynomialConfig, RandomCustom, ByteArrayWrapper,
+ *     NttPolynomial, NttPolynomial, NttPolynomial)}</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class UtilsTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int SEEDSIZE = 32;
+
+    private static final int N = 1024;
+    private static final BigInteger Q = BigInteger.valueOf(1073479681);
+    private static final int ETA = 3;
+
+    Random random = new Random();
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that fused expansion and multiplication gives the same result
+     * as the multiplication of the materialized uniform polynomial.
+     */
+    @Test
+    public void fusedMultiply2NttTuplesAddThemTogetherNtt() {
+        PolynomialConfig pc = new PolynomialConfig(N, Q);
+        RandomCustom rc = new RandomCustomImple(N, Q, ETA);
+        NttPolynomial constantTwo = NttPolynomial.constantTwoNtt(pc);
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            byte[] seed = new byte[SEEDSIZE];
+            random.nextBytes(seed);
+            ByteArrayWrapper seedForA = new ByteArrayWrapper(seed);
+            List<NttPolynomial> se = Utils.generateRandomErrorPolysNtt(pc, rc, 2);
+
+            NttPolynomial aNtt = Utils.generateUniformPolyNtt(pc, rc, seedForA);
+            NttPolynomial expected = Utils.multiply2NttTuplesAddThemTogetherNtt(aNtt, se.get(0), constantTwo, se.get(1));
+            NttPolynomial result = Utils.multiply2NttTuplesAddThemTogetherNtt(pc, rc, seedForA, se.get(0), constantTwo, se.get(1));
+
+            assertEquals(expected.getCoefficients(), result.getCoefficients());
+        }
+    }
+}
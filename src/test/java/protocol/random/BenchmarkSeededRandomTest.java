@@ -0,0 +1,66 @@
+package protocol.random;
+
+import org.junit.After;
+import org.junit.Test;
+import protocol.ProtocolConfiguration;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * The {@code BenchmarkSeededRandomTest} class tests that {@code BenchmarkSeededRandom}:
+ * <ul>
+ *     <li>cannot be created unless explicitly allowed</li>
+ *     <li>generates the same bytes and integers for the same seed</li>
+ *     <li>generates different bytes for different seeds</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class BenchmarkSeededRandomTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int NUMBEROFBYTES = 5000;  // more than one internal buffer of the generator
+    private static final int BOUND = 1000;
+
+    private static final ProtocolConfiguration CONFIGURATION = new ProtocolConfiguration(1024, BigInteger.valueOf(1073479681), 3);
+
+    @After
+    public void disallow() {
+        System.clearProperty(BenchmarkSeededRandom.ALLOWPROPERTY);
+    }
+
+    /**
+     * Tests that the constructor throws unless the system property allows deterministic random.
+     */
+    @Test
+    public void refusedUnlessAllowed() {
+        System.clearProperty(BenchmarkSeededRandom.ALLOWPROPERTY);
+        assertThrows(IllegalStateException.class, () -> new BenchmarkSeededRandom(CONFIGURATION, 123));
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that two instances with the same seed generate the same sequence
+     * and instance with a different seed generates a different one.
+     */
+    @Test
+    public void sameSeedSameSequence() {
+        System.setProperty(BenchmarkSeededRandom.ALLOWPROPERTY, "true");
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            RandomCustom fst = new BenchmarkSeededRandom(CONFIGURATION, i);
+            RandomCustom snd = new BenchmarkSeededRandom(CONFIGURATION, i);
+            RandomCustom other = new BenchmarkSeededRandom(CONFIGURATION, i + NUMBEROFROUNDS);
+
+            byte[] fstBytes = fst.getRandomBytes(NUMBEROFBYTES);
+            assertArrayEquals(fstBytes, snd.getRandomBytes(NUMBEROFBYTES));
+            assertEquals(fst.getRandomInt(BOUND), snd.getRandomInt(BOUND));
+            assertFalse(Arrays.equals(fstBytes, other.getRandomBytes(NUMBEROFBYTES)));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package protocol.random;
+
+import org.bouncycastle.crypto.digests.SHAKEDigest;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * The {@code MultiLaneKeccakTest} class tests the following methods in the class {@code MultiLaneKeccak}:
+ * <ul>
+ *     <li>{@code absorb(byte[][])}</li>
+ *     <li>{@code squeeze(byte[][], int, int)}</li>
+ * </ul>
+ * <p>Output of every lane is compared with the output of {@code SHAKEDigest} from BouncyCastle.</p>
+ *
+ * @author Martin Zimka
+ */
+public class MultiLaneKeccakTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    // Maximal number of lanes in tests.
+    private static final int MAXLANES = 8;
+    // Maximal length of absorbed input. Greater than both rates, so that also multi-block inputs are tested.
+    private static final int MAXINPUTLEN = 400;
+    // Maximal length of squeezed output.
+    private static final int MAXOUTPUTLEN = 1000;
+
+    Random random = new Random();
+
+    private byte[] shake(int bitLength, byte[] input, int outLen) {
+        SHAKEDigest shake = new SHAKEDigest(bitLength);
+        shake.update(input, 0, input.length);
+        byte[] out = new byte[outLen];
+        shake.doFinal(out, 0, outLen);
+        return out;
+    }
+
+    private void compareWithShake(int bitLength) {
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            int lanes = 1 + random.nextInt(MAXLANES);
+            int inputLen = random.nextInt(MAXINPUTLEN);
+            int outLen = random.nextInt(MAXOUTPUTLEN);
+            byte[][] inputs = new byte[lanes][inputLen];
+            for (byte[] input : inputs) {
+                random.nextBytes(input);
+            }
+            byte[][] outputs = new byte[lanes][outLen];
+
+            MultiLaneKeccak keccak = new MultiLaneKeccak(lanes, bitLength);
+            keccak.absorb(inputs);
+            int fstPart = random.nextInt(outLen + 1);  // squeeze in two calls to test continuation
+            keccak.squeeze(outputs, 0, fstPart);
+            keccak.squeeze(outputs, fstPart, outLen - fstPart);
+
+            for (int l = 0; l < lanes; l++) {
+                assertArrayEquals(shake(bitLength, inputs[l], outLen), outputs[l]);
+            }
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that random number of SHAKE-128 lanes with random inputs
+     * produce the same output as sequential {@code SHAKEDigest(128)}.
+     */
+    @Test
+    public void sameAsShake128() {
+        compareWithShake(128);
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that random number of SHAKE-256 lanes with random inputs
+     * produce the same output as sequential {@code SHAKEDigest(256)}.
+     */
+    @Test
+    public void sameAsShake256() {
+        compareWithShake(256);
+    }
+}
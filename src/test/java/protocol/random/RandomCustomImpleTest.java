@@ -3,8 +3,10 @@ package protocol.random;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 
@@ -13,6 +15,9 @@ import static org.junit.Assert.assertEquals;
  * <ul>
  *     <li>{@code generateUniformCoefficients(byte[]}</li>
  *     <li>{@code generateCbdCoefficients(byte[]}</li>
+ *     <li>{@code generateUniformCoefficientsBatch(List<byte[]>)}</li>
+ *     <li>{@code generateCbdCoefficientsBatch(List<byte[]>)}</li>
+ *     <li>{@code generateUniformCoefficients(byte[], CoefficientConsumer)}</li>
  * </ul>
  *
  * @author Martin Zimka
@@ -26,6 +31,24 @@ public class RandomCustomImpleTest {
     private static final BigInteger Q = BigInteger.valueOf(17);
     private static final int ETA = 3;
 
+    // Protocol-sized parameters for batch tests.
+    private static final int BATCHN = 1024;
+    private static final BigInteger BATCHQ = BigInteger.valueOf(1073479681);
+    private static final int BATCHSIZE = 4;
+    private static final int BATCHSEEDLEN = 32;
+
+    Random random = new Random();
+
+    private List<byte[]> generateRandomSeeds() {
+        List<byte[]> seeds = new ArrayList<>(BATCHSIZE);
+        for (int i = 0; i < BATCHSIZE; i++) {
+            byte[] seed = new byte[BATCHSEEDLEN];
+            random.nextBytes(seed);
+            seeds.add(seed);
+        }
+        return seeds;
+    }
+
     /**
      * Tests {@code NUMBEROFROUNDS}-times method {@code generateUniformCoefficients(byte[])}.
      * <p>
@@ -77,4 +100,55 @@ public class RandomCustomImpleTest {
             assertEquals(expectedResult, result);
         }
     }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times method {@code generateUniformCoefficientsBatch(List<byte[]>)}.
+     * <p>Result for every seed must be the same as the result of {@code generateUniformCoefficients(byte[])}.</p>
+     */
+    @Test
+    public void generateUniformCoefficientsBatch() {
+        RandomCustom rc = new RandomCustomImple(BATCHN, BATCHQ, ETA);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            List<byte[]> seeds = generateRandomSeeds();
+            List<List<BigInteger>> result = rc.generateUniformCoefficientsBatch(seeds);
+            for (int j = 0; j < BATCHSIZE; j++) {
+                assertEquals(rc.generateUniformCoefficients(seeds.get(j)), result.get(j));
+            }
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times method {@code generateCbdCoefficientsBatch(List<byte[]>)}.
+     * <p>Result for every seed must be the same as the result of {@code generateCbdCoefficients(byte[])}.</p>
+     */
+    @Test
+    public void generateCbdCoefficientsBatch() {
+        RandomCustom rc = new RandomCustomImple(BATCHN, BATCHQ, ETA);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            List<byte[]> seeds = generateRandomSeeds();
+            List<List<BigInteger>> result = rc.generateCbdCoefficientsBatch(seeds);
+            for (int j = 0; j < BATCHSIZE; j++) {
+                assertEquals(rc.generateCbdCoefficients(seeds.get(j)), result.get(j));
+            }
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times method {@code generateUniformCoefficients(byte[], CoefficientConsumer)}.
+     * <p>Consumer must receive the same coefficients in the same order as returned by
+     * {@code generateUniformCoefficients(byte[])}.</p>
+     */
+    @Test
+    public void generateUniformCoefficientsStreamed() {
+        RandomCustom rc = new RandomCustomImple(BATCHN, BATCHQ, ETA);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            byte[] seed = generateRandomSeeds().get(0);
+            List<BigInteger> result = new ArrayList<>(BATCHN);
+            rc.generateUniformCoefficients(seed, (index, coefficient) -> {
+                assertEquals(result.size(), index);
+                result.add(coefficient);
+            });
+            assertEquals(rc.generateUniformCoefficients(seed), result);
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package protocol.server;
+
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.NttPolynomial;
+import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.Utils;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The {@code ClientRecordFixtures} class is the fixture shared by the tests of {@link ServersDatabase} implementations:
+ * <ul>
+ *     <li>the protocol configuration the records are created for</li>
+ *     <li>random client records</li>
+ *     <li>comparison of a found record with the saved one</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+final class ClientRecordFixtures {
+
+    static final int N = 256;
+    static final BigInteger Q = BigInteger.valueOf(7681);
+    static final int ETA = 3;
+
+    static final ProtocolConfiguration CONFIGURATION = new ProtocolConfiguration(N, Q, ETA);
+    static final PolynomialConfig PC = new PolynomialConfig(N, Q);
+    static final RandomCustom RC = new RandomCustomImple(N, Q, ETA);
+
+    private ClientRecordFixtures() {
+    }
+
+    /**
+     * @return record with random public seed, salt and verifier
+     */
+    static ClientRecord randomRecord() {
+        NttPolynomial vNtt = Utils.generateUniformPolyNtt(PC, RC, new ByteArrayWrapper(RC, 32));
+        return new ClientRecord(new ByteArrayWrapper(RC, 32), new ByteArrayWrapper(RC, 32), vNtt);
+    }
+
+    static void assertSameRecord(ClientRecord expected, ClientRecord actual) {
+        assertEquals(expected.getPublicSeedForA(), actual.getPublicSeedForA());
+        assertEquals(expected.getSalt(), actual.getSalt());
+        assertEquals(expected.getVerifierNtt().toByteArrayWrapper(), actual.getVerifierNtt().toByteArrayWrapper());
+    }
+}
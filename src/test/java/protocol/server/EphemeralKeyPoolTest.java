@@ -0,0 +1,113 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.polynomial.PolynomialConfig;
+import protocol.polynomial.PublicPolynomialCache;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code EphemeralKeyPoolTest} class tests that {@code EphemeralKeyPool}:
+ * <ul>
+ *     <li>refills ready keys up to its depth in the background</li>
+ *     <li>hands out every key at most once</li>
+ *     <li>does not serve more public seeds than allowed, evicting the least recently used one</li>
+ *     <li>refuses non-positive depth, number of threads and number of groups</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class EphemeralKeyPoolTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int DEPTH = 4;
+    private static final long TIMEOUTMILLIS = 10_000;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final PolynomialConfig pc = new PolynomialConfig(N, Q);
+    private final RandomCustom rc = new RandomCustomImple(N, Q, ETA);
+
+    private EphemeralKeyPool newPool(int maxGroups) {
+        return new EphemeralKeyPool(pc, rc, new PublicPolynomialCache(pc, 16), DEPTH, 2, maxGroups);
+    }
+
+    private static void awaitFull(EphemeralKeyPool pool, ByteArrayWrapper seed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUTMILLIS;
+        while (pool.size(seed) < pool.getDepth()) {
+            assertTrue("Pool was not refilled in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a drained pool is refilled and no key is handed out twice.
+     */
+    @Test
+    public void refilledAndSingleUse() throws InterruptedException {
+        ByteArrayWrapper seed = new ByteArrayWrapper(rc, 32);
+        Set<ServerEphemeralKey> handedOut = Collections.newSetFromMap(new IdentityHashMap<>());
+        try (EphemeralKeyPool pool = newPool(1)) {
+            pool.register(seed);
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                awaitFull(pool, seed);
+                for (int j = 0; j < DEPTH; j++) {
+                    ServerEphemeralKey key = pool.poll(seed);
+                    assertNotNull(key);
+                    assertTrue(handedOut.add(key));
+                }
+            }
+            assertEquals(NUMBEROFROUNDS * DEPTH, pool.getHits());
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a new seed over the maximal number of groups evicts the least recently
+     * used one, whose keys are dropped, and that the number of groups never exceeds the maximum.
+     */
+    @Test
+    public void leastRecentlyUsedGroupEvicted() throws InterruptedException {
+        try (EphemeralKeyPool pool = newPool(2)) {
+            ByteArrayWrapper hot = new ByteArrayWrapper(rc, 32);
+            pool.register(hot);
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ByteArrayWrapper cold = new ByteArrayWrapper(rc, 32);
+                pool.register(cold);
+                awaitFull(pool, hot);  // uses hot, so cold is the least recently used one
+                ByteArrayWrapper newcomer = new ByteArrayWrapper(rc, 32);
+                pool.register(newcomer);
+                assertEquals(2, pool.getGroupCount());
+                assertEquals(0, pool.size(cold));
+                awaitFull(pool, newcomer);
+                assertNotNull(pool.poll(newcomer));
+                pool.poll(hot);
+            }
+            assertEquals(2L * NUMBEROFROUNDS - 1, pool.getEvictions());
+        }
+    }
+
+    /**
+     * Tests that the pool cannot be created with non-positive parameters.
+     */
+    @Test
+    public void invalidParameters() {
+        PublicPolynomialCache cache = new PublicPolynomialCache(pc, 0);
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(pc, rc, cache, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(pc, rc, cache, 1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new EphemeralKeyPool(pc, rc, cache, 1, 1, 0));
+    }
+}
@@ -0,0 +1,124 @@
+package protocol.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.polynomial.PackedPolynomialCodec;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static protocol.server.ClientRecordFixtures.*;
+
+/**
+ * The {@code MappedServersDatabaseTest} class tests that {@code MappedServersDatabase}:
+ * <ul>
+ *     <li>finds saved records and returns null for unknown identities</li>
+ *     <li>rewrites the record of an identity saved again</li>
+ *     <li>keeps records after it is closed and opened again</li>
+ *     <li>refuses files of a different CONFIGURATION and new clients over its load factor</li>
+ *     <li>detects a record torn or corrupted on the disk</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class MappedServersDatabaseTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int CAPACITY = 256;
+    private static final int HEADERSIZE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} saved records are found, also after the database is opened again,
+     * and that a rewritten record is found in its new version.
+     */
+    @Test
+    public void persistedRecords() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("clients.db");
+        List<ByteArrayWrapper> identities = new ArrayList<>();
+        List<ClientRecord> records = new ArrayList<>();
+
+        try (MappedServersDatabase database = new MappedServersDatabase(file, CONFIGURATION, CAPACITY)) {
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                identities.add(new ByteArrayWrapper(RC, 11));
+                records.add(randomRecord());
+                database.saveClient(identities.get(i), records.get(i));
+            }
+            records.set(0, randomRecord());
+            database.saveClient(identities.get(0), records.get(0));
+            assertEquals(NUMBEROFROUNDS, database.size());
+            assertNull(database.findClient(new ByteArrayWrapper(RC, 11)));
+        }
+
+        try (MappedServersDatabase database = new MappedServersDatabase(file, CONFIGURATION, 0)) {
+            assertEquals(NUMBEROFROUNDS, database.size());
+            assertEquals(CAPACITY, database.getCapacity());
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                assertSameRecord(records.get(i), database.findClient(identities.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Tests that the database refuses a file of different CONFIGURATION and clients over its load factor.
+     */
+    @Test
+    public void refusals() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("small.db");
+        try (MappedServersDatabase database = new MappedServersDatabase(file, CONFIGURATION, 4)) {
+            for (int i = 0; i < 3; i++) {
+                database.saveClient(new ByteArrayWrapper(RC, 11), randomRecord());
+            }
+            assertThrows(IllegalStateException.class, () -> database.saveClient(new ByteArrayWrapper(RC, 11), randomRecord()));
+        }
+        ProtocolConfiguration other = new ProtocolConfiguration(1024, BigInteger.valueOf(1073479681), ETA);
+        assertThrows(IllegalArgumentException.class, () -> new MappedServersDatabase(file, other, 4));
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a record with one byte of its verifier changed on the disk,
+     * as after a torn rewrite, is refused when it is read after reopening, while other records are still found.
+     */
+    @Test
+    public void tornRecordDetected() throws IOException {
+        int recordSize = new ClientRecordLayout(new PackedPolynomialCodec(PC)).getRecordSize();
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            Path file = folder.getRoot().toPath().resolve("torn-" + i + ".db");
+            ByteArrayWrapper torn = new ByteArrayWrapper(RC, 11);
+            ByteArrayWrapper intact = new ByteArrayWrapper(RC, 11);
+            ClientRecord intactRecord = randomRecord();
+            try (MappedServersDatabase database = new MappedServersDatabase(file, CONFIGURATION, CAPACITY)) {
+                database.saveClient(torn, randomRecord());
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE, HEADERSIZE, (long) CAPACITY * recordSize);
+                int offset = 0;
+                while (slots.get(offset) != ClientRecordLayout.USED) {
+                    offset += recordSize;
+                }
+                int last = offset + recordSize - 1;
+                slots.put(last, (byte) (slots.get(last) ^ 1));
+            }
+            try (MappedServersDatabase database = new MappedServersDatabase(file, CONFIGURATION, 0)) {
+                assertThrows(IllegalStateException.class, () -> database.findClient(torn));
+                database.saveClient(intact, intactRecord);
+                assertSameRecord(intactRecord, database.findClient(intact));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.client.ClientImple;
+import protocol.client.ClientsKnowledge;
+import protocol.polynomial.NttPolynomial;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code MicroBatchingServerTest} class tests that:
+ * <ul>
+ *     <li>concurrent logins gathered by {@code MicroBatchingServer} all succeed</li>
+ *     <li>responses of {@code ServerImple.computeSharedSecrets} verify, with or without the public polynomial cache,
+ *     and unknown clients in a batch get null</li>
+ *     <li>batches with a different number of identities and keys, and non-positive batch parameters, are refused</li>
+ *     <li>an {@code Error} thrown while computing a batch reaches every login of it, and batching goes on</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class MicroBatchingServerTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int MAXBATCHSIZE = 8;
+    private static final long WINDOWMICROS = 200;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+    private final RandomCustom rc = new RandomCustomImple(N, Q, ETA);
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} clients logging in concurrently through the batching server all succeed
+     * and that every login was computed in some batch.
+     */
+    @Test
+    public void concurrentLoginsSucceeded() throws Exception {
+        MicroBatchingServer server = new MicroBatchingServer(new ServerImple(new RandomCustomImple(configuration), configuration),
+                MAXBATCHSIZE, WINDOWMICROS);
+        ExecutorService executor = Executors.newFixedThreadPool(MAXBATCHSIZE);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                results.add(executor.submit(() -> {
+                    ClientImple client = new ClientImple(new RandomCustomImple(configuration), server);
+                    client.enroll(ck);
+                    return client.login(ck).getLoginOK();
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            assertEquals(NUMBEROFROUNDS, server.getBatchedRequests());
+            assertTrue(server.getBatches() <= NUMBEROFROUNDS);
+            assertNull(server.computeSharedSecret(new ByteArrayWrapper(rc, 11), null));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a login computed inside a batch, next to an unknown client and another login of the same client,
+     * succeeds, both with the public polynomial cache and without it.
+     */
+    @Test
+    public void batchedResponsesVerified() {
+        for (int capacity : new int[]{0, 16}) {
+            Server server = new ServerImple(new RandomCustomImple(configuration), configuration,
+                    ServerOptions.defaults().withPublicPolynomialCacheCapacity(capacity));
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                ClientImple client = new ClientImple(new RandomCustomImple(configuration), new BatchingWrapper(server));
+                client.enroll(ck);
+                assertTrue(client.login(ck).getLoginOK());
+            }
+        }
+    }
+
+    /**
+     * Tests that batches with a different number of identities and keys, and non-positive batch parameters,
+     * are refused.
+     */
+    @Test
+    public void invalidBatchRefused() {
+        Server server = new ServerImple(new RandomCustomImple(configuration), configuration);
+        assertThrows(IllegalArgumentException.class, () -> server.computeSharedSecrets(List.of(new ByteArrayWrapper(rc, 11)), List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new MicroBatchingServer(server, 0, WINDOWMICROS));
+        assertThrows(IllegalArgumentException.class, () -> new MicroBatchingServer(server, MAXBATCHSIZE, 0));
+    }
+
+    /**
+     * Tests that an {@code Error} thrown by the wrapped server while computing a batch is rethrown to all
+     * concurrent logins of it instead of leaving them waiting, and that later batches are still computed.
+     */
+    @Test
+    public void errorReachesWholeBatch() throws Exception {
+        Server failing = new TestServerWrapper(new ServerImple(new RandomCustomImple(configuration), configuration)) {
+            @Override
+            public List<ServersResponseScs> computeSharedSecrets(List<ByteArrayWrapper> identities, List<NttPolynomial> piNtts) {
+                throw new AssertionError("Batch failed");
+            }
+        };
+        MicroBatchingServer server = new MicroBatchingServer(failing, MAXBATCHSIZE, WINDOWMICROS);
+        ExecutorService executor = Executors.newFixedThreadPool(MAXBATCHSIZE);
+        try {
+            List<Future<Throwable>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                results.add(executor.submit(() -> {
+                    try {
+                        server.computeSharedSecret(new ByteArrayWrapper(rc, 11), null);
+                        return null;
+                    } catch (Throwable e) {
+                        return e;
+                    }
+                }));
+            }
+            for (Future<Throwable> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS) instanceof AssertionError);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Computes every login as the second of a batch of three: an unknown client, the login and the same login again.
+     */
+    private final class BatchingWrapper extends TestServerWrapper {
+
+        private final Server delegate;
+
+        private BatchingWrapper(Server delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+            List<ServersResponseScs> responses = delegate.computeSharedSecrets(List.of(new ByteArrayWrapper(rc, 11), I, I),
+                    List.of(piNtt, piNtt, piNtt));
+            assertEquals(3, responses.size());
+            assertNull(responses.get(0));
+            assertNotNull(responses.get(2));
+            return responses.get(1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static protocol.server.ClientRecordFixtures.*;
+
+/**
+ * The {@code OffHeapServersDatabaseTest} class tests that {@code OffHeapServersDatabase}:
+ * <ul>
+ *     <li>finds saved records (also after its index grew) and returns null for unknown identities</li>
+ *     <li>rewrites the record of an identity saved again in place</li>
+ *     <li>refuses seeds too long for a fixed-width record</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class OffHeapServersDatabaseTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int INITIALCAPACITY = 4;
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} saved records (many more than the initial capacity) are found,
+     * and that rewriting a record does not take another one.
+     */
+    @Test
+    public void savedRecordsFound() {
+        OffHeapServersDatabase database = new OffHeapServersDatabase(CONFIGURATION, INITIALCAPACITY);
+        List<ByteArrayWrapper> identities = new ArrayList<>();
+        List<ClientRecord> records = new ArrayList<>();
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            identities.add(new ByteArrayWrapper(RC, 11));
+            records.add(randomRecord());
+            database.saveClient(identities.get(i), records.get(i));
+        }
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            records.set(i, randomRecord());
+            database.saveClient(identities.get(i), records.get(i));
+        }
+
+        assertEquals(NUMBEROFROUNDS, database.size());
+        assertTrue(database.getOffHeapBytes() > 0);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            assertSameRecord(records.get(i), database.findClient(identities.get(i)));
+        }
+        assertNull(database.findClient(new ByteArrayWrapper(RC, 11)));
+    }
+
+    /**
+     * Tests that a seed longer than the fixed-width record allows is refused.
+     */
+    @Test
+    public void tooLongSeedRefused() {
+        OffHeapServersDatabase database = new OffHeapServersDatabase(CONFIGURATION);
+        ClientRecord record = randomRecord();
+        ClientRecord tooLong = new ClientRecord(new ByteArrayWrapper(RC, 65), record.getSalt(), record.getVerifierNtt());
+        assertThrows(IllegalArgumentException.class, () -> database.saveClient(new ByteArrayWrapper(RC, 11), tooLong));
+        assertEquals(0, database.size());
+    }
+}
@@ -0,0 +1,125 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.client.ClientImple;
+import protocol.client.ClientsKnowledge;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code PartitionedServerTest} class tests that {@code PartitionedServer}:
+ * <ul>
+ *     <li>serves concurrent enrollments and logins of clients spread over all partitions</li>
+ *     <li>keeps every client in exactly one partition's database</li>
+ *     <li>returns null for an unknown client</li>
+ *     <li>keeps serving a partition whose request threw an {@code Error}</li>
+ *     <li>refuses requests once closed and a non-positive number of partitions</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class PartitionedServerTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int PARTITIONS = 4;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+    private final RandomCustom rc = new RandomCustomImple(N, Q, ETA);
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} clients enrolling and logging in concurrently all succeed and that
+     * every one of them is stored in one partition only.
+     */
+    @Test
+    public void concurrentLoginsSucceeded() throws Exception {
+        List<ServersDatabaseImple> databases = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            databases.add(new ServersDatabaseImple());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (PartitionedServer server = new PartitionedServer(configuration, PARTITIONS,
+                i -> new RandomCustomImple(configuration), databases::get)) {
+            List<ByteArrayWrapper> identities = new ArrayList<>();
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                identities.add(new ByteArrayWrapper(rc, 11));
+                ClientsKnowledge ck = new ClientsKnowledge(identities.get(i), new ByteArrayWrapper(rc, 11));
+                results.add(executor.submit(() -> {
+                    ClientImple client = new ClientImple(new RandomCustomImple(configuration), server);
+                    client.enroll(ck);
+                    return client.login(ck).getLoginOK();
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            for (ByteArrayWrapper identity : identities) {
+                long owners = databases.stream().filter(database -> database.findClient(identity) != null).count();
+                assertEquals(1, owners);
+            }
+            assertNull(server.computeSharedSecret(new ByteArrayWrapper(rc, 11), null));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that an {@code Error} thrown by a request is rethrown to its caller
+     * and the partition serves the following requests.
+     */
+    @Test
+    public void errorDoesNotStopPartition() {
+        ServersDatabaseImple database = new ServersDatabaseImple();
+        ServersDatabase failingDatabase = new ServersDatabase() {
+            @Override
+            public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+                database.saveClient(identity, clientRecord);
+            }
+
+            @Override
+            public ClientRecord findClient(ByteArrayWrapper identity) {
+                throw new AssertionError("Broken database");
+            }
+        };
+        try (PartitionedServer server = new PartitionedServer(configuration, 1, i -> new RandomCustomImple(configuration), i -> failingDatabase)) {
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                assertThrows(AssertionError.class, () -> server.computeSharedSecret(new ByteArrayWrapper(rc, 11), null));
+                ByteArrayWrapper identity = new ByteArrayWrapper(rc, 11);
+                new ClientImple(new RandomCustomImple(configuration), server).enroll(new ClientsKnowledge(identity, new ByteArrayWrapper(rc, 11)));
+                assertNotNull(database.findClient(identity));
+            }
+        }
+    }
+
+    /**
+     * Tests that a closed server refuses requests and that a server without partitions cannot be created.
+     */
+    @Test
+    public void closedServerRefusesRequests() {
+        PartitionedServer server = new PartitionedServer(configuration, PARTITIONS);
+        assertEquals(PARTITIONS, server.getPartitionCount());
+        server.close();
+        assertThrows(IllegalStateException.class, () -> server.computeSharedSecret(new ByteArrayWrapper(rc, 11), null));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedServer(configuration, 0));
+    }
+}
@@ -0,0 +1,129 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code PendingSessionTableTest} class tests that {@code PendingSessionTable}:
+ * <ul>
+ *     <li>hands out every session at most once</li>
+ *     <li>drops sessions after their time-to-live, also when nobody asks for them</li>
+ *     <li>never holds more sessions than its capacity, under both overflow policies</li>
+ *     <li>refuses non-positive capacity and time-to-live</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class PendingSessionTableTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int CAPACITY = 16;
+    private static final long TTLMILLIS = 1_000;
+    private static final long MILLIS = 1_000_000;
+
+    // Starts negative, as System.nanoTime may.
+    private final AtomicLong clock = new AtomicLong(-123_456_789L);
+
+    private static SessionConfigurationServer newSession() {
+        ByteArrayWrapper digest = new ByteArrayWrapper(new byte[32]);
+        return new SessionConfigurationServer(digest, digest, digest);
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a stored session is taken once and then is gone.
+     */
+    @Test
+    public void sessionTakenOnce() {
+        PendingSessionTable table = new PendingSessionTable(CAPACITY, TTLMILLIS, SessionOverflowPolicy.REJECT, clock::get);
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            SessionConfigurationServer session = newSession();
+            ByteArrayWrapper id = table.put(session);
+            assertEquals(PendingSessionTable.SESSIONIDSIZE, id.getData().length);
+            clock.addAndGet(TTLMILLIS * MILLIS / 2);
+            assertSame(session, table.take(id));
+            assertNull(table.take(id));
+        }
+        assertEquals(0, table.size());
+        assertEquals(0, table.getExpired());
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} abandoned sessions are dropped by the wheel after their time-to-live
+     * and that a late second phase fails.
+     */
+    @Test
+    public void abandonedSessionsExpire() {
+        PendingSessionTable table = new PendingSessionTable(NUMBEROFROUNDS, TTLMILLIS, SessionOverflowPolicy.REJECT, clock::get);
+        List<ByteArrayWrapper> ids = new ArrayList<>();
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            ids.add(table.put(newSession()));
+            clock.addAndGet(MILLIS);
+        }
+        assertEquals(NUMBEROFROUNDS, table.size());
+
+        clock.addAndGet(2 * TTLMILLIS * MILLIS);  // sessions expiring in the current tick are dropped in the next one
+        assertNull(table.take(ids.get(NUMBEROFROUNDS - 1)));
+        assertEquals(0, table.size());
+        assertEquals(NUMBEROFROUNDS, table.getExpired());
+
+        ByteArrayWrapper id = table.put(newSession());
+        clock.addAndGet(100 * TTLMILLIS * MILLIS);  // much longer than the whole wheel
+        assertNull(table.take(id));
+        assertEquals(NUMBEROFROUNDS + 1, table.getExpired());
+    }
+
+    /**
+     * Tests that a full table with {@code REJECT} policy refuses new sessions and keeps the pending ones.
+     */
+    @Test
+    public void fullTableRejects() {
+        PendingSessionTable table = new PendingSessionTable(CAPACITY, TTLMILLIS, SessionOverflowPolicy.REJECT, clock::get);
+        List<ByteArrayWrapper> ids = new ArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            ids.add(table.put(newSession()));
+        }
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            assertFalse(table.accepts());
+            assertNull(table.put(newSession()));
+        }
+        assertEquals(CAPACITY, table.size());
+        assertEquals(2 * NUMBEROFROUNDS, table.getRejected());
+        for (ByteArrayWrapper id : ids) {
+            assertNotNull(table.take(id));
+        }
+        assertTrue(table.accepts());
+    }
+
+    /**
+     * Tests that a full table with {@code EVICT_OLDEST} policy drops its oldest sessions for new ones.
+     */
+    @Test
+    public void fullTableEvictsOldest() {
+        PendingSessionTable table = new PendingSessionTable(CAPACITY, TTLMILLIS, SessionOverflowPolicy.EVICT_OLDEST, clock::get);
+        List<ByteArrayWrapper> ids = new ArrayList<>();
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            assertTrue(table.accepts());
+            ids.add(table.put(newSession()));
+        }
+        assertEquals(CAPACITY, table.size());
+        assertEquals(NUMBEROFROUNDS - CAPACITY, table.getEvicted());
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            assertEquals(i >= NUMBEROFROUNDS - CAPACITY, table.take(ids.get(i)) != null);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PendingSessionTable(0, TTLMILLIS, SessionOverflowPolicy.REJECT));
+        assertThrows(IllegalArgumentException.class, () -> new PendingSessionTable(CAPACITY, 0, SessionOverflowPolicy.REJECT));
+    }
+}
@@ -0,0 +1,67 @@
+package protocol.server;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * The {@code ServerOptionsTest} class tests that:
+ * <ul>
+ *     <li>default options give an own database, the default cache capacity and no pools</li>
+ *     <li>every {@code with} method changes one setting of a copy and keeps the others</li>
+ *     <li>negative capacity or depth, and an enabled pool of ephemeral keys without a thread, are refused</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class ServerOptionsTest {
+
+    /**
+     * Tests the default options.
+     */
+    @Test
+    public void defaultsSet() {
+        ServerOptions options = ServerOptions.defaults();
+        assertNull(options.getServersDatabase());
+        assertEquals(ServerImple.DEFAULTPUBLICPOLYNOMIALCACHECAPACITY, options.getPublicPolynomialCacheCapacity());
+        assertEquals(0, options.getEphemeralKeyPoolDepth());
+        assertEquals(0, options.getEphemeralKeyPoolThreads());
+        assertNull(options.getIntraLoginPool());
+    }
+
+    /**
+     * Tests that the {@code with} methods return copies with one setting changed, leaving the original unchanged.
+     */
+    @Test
+    public void copiesChanged() {
+        ServersDatabase database = new ServersDatabaseImple();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ServerOptions options = ServerOptions.defaults().withServersDatabase(database).withPublicPolynomialCacheCapacity(0)
+                .withEphemeralKeyPool(4, 2).withIntraLoginPool(pool);
+        assertSame(database, options.getServersDatabase());
+        assertEquals(0, options.getPublicPolynomialCacheCapacity());
+        assertEquals(4, options.getEphemeralKeyPoolDepth());
+        assertEquals(2, options.getEphemeralKeyPoolThreads());
+        assertSame(pool, options.getIntraLoginPool());
+        assertEquals(0, options.withEphemeralKeyPool(0, 0).getEphemeralKeyPoolThreads());
+        assertSame(database, options.withEphemeralKeyPool(0, 0).getServersDatabase());
+        assertNull(ServerOptions.defaults().getServersDatabase());
+    }
+
+    /**
+     * Tests that invalid settings are refused.
+     */
+    @Test
+    public void invalidOptionsRefused() {
+        ServerOptions options = ServerOptions.defaults();
+        assertThrows(IllegalArgumentException.class, () -> options.withPublicPolynomialCacheCapacity(-1));
+        assertThrows(IllegalArgumentException.class, () -> options.withEphemeralKeyPool(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> options.withEphemeralKeyPool(1, 0));
+        assertThrows(NullPointerException.class, () -> options.withServersDatabase(null));
+    }
+}
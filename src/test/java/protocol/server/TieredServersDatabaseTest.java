@@ -0,0 +1,168 @@
+package protocol.server;
+
+import org.junit.Test;
+import protocol.ByteArrayWrapper;
+import protocol.polynomial.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static protocol.server.ClientRecordFixtures.*;
+
+/**
+ * The {@code TieredServersDatabaseTest} class tests that {@code TieredServersDatabase}:
+ * <ul>
+ *     <li>promotes a looked-up client with its public polynomial a expanded</li>
+ *     <li>keeps frequently looked-up clients while one-off clients are looked up</li>
+ *     <li>evicts clients that stopped logging in in favour of frequent ones</li>
+ *     <li>returns the new record of a client saved again</li>
+ *     <li>does not promote a record read before a concurrent save of the same client, but does promote it
+ *     when another client is saved meanwhile</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class TieredServersDatabaseTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int CAPACITY = 4;
+    private static final int FREQUENTLOOKUPS = 20;
+
+    private List<ByteArrayWrapper> enroll(ServersDatabase database, int count) {
+        List<ByteArrayWrapper> identities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            identities.add(new ByteArrayWrapper(RC, 11));
+            database.saveClient(identities.get(i), randomRecord());
+        }
+        return identities;
+    }
+
+    /**
+     * Tests that a looked-up client is promoted with its record and expanded a, and that the next lookup is a hit.
+     */
+    @Test
+    public void promotedRecordCarriesPublicPolynomial() {
+        OffHeapServersDatabase cold = new OffHeapServersDatabase(CONFIGURATION);
+        TieredServersDatabase database = new TieredServersDatabase(cold, CONFIGURATION, RC, CAPACITY);
+        ByteArrayWrapper identity = new ByteArrayWrapper(RC, 11);
+        ClientRecord record = randomRecord();
+        database.saveClient(identity, record);
+
+        ClientRecord promoted = database.findClient(identity);
+        assertSameRecord(record, promoted);
+        assertEquals(Utils.generateUniformPolyNtt(PC, RC, record.getPublicSeedForA()).toByteArrayWrapper(),
+                promoted.getPublicPolynomialNtt().toByteArrayWrapper());
+        assertSame(promoted, database.findClient(identity));
+        assertEquals(1, database.getHits());
+        assertEquals(1, database.getMisses());
+        assertNull(database.findClient(new ByteArrayWrapper(RC, 11)));
+        assertThrows(IllegalArgumentException.class, () -> new TieredServersDatabase(cold, CONFIGURATION, RC, 0));
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} one-off lookups do not evict {@code CAPACITY} frequently looked-up clients.
+     */
+    @Test
+    public void frequentClientsSurviveOneOffLookups() {
+        TieredServersDatabase database = new TieredServersDatabase(new OffHeapServersDatabase(CONFIGURATION), CONFIGURATION, RC, CAPACITY);
+        List<ByteArrayWrapper> frequent = enroll(database, CAPACITY);
+        List<ByteArrayWrapper> oneOff = enroll(database, NUMBEROFROUNDS);
+
+        for (int i = 0; i < FREQUENTLOOKUPS; i++) {
+            frequent.forEach(database::findClient);
+        }
+        oneOff.forEach(database::findClient);
+        long hits = database.getHits();
+        frequent.forEach(database::findClient);
+
+        assertEquals(hits + CAPACITY, database.getHits());
+        assertEquals(0, database.getEvictions());
+        assertEquals(CAPACITY, database.size());
+    }
+
+    /**
+     * Tests that clients which stopped logging in are replaced by clients which log in frequently now.
+     */
+    @Test
+    public void staleClientsEvicted() {
+        TieredServersDatabase database = new TieredServersDatabase(new OffHeapServersDatabase(CONFIGURATION), CONFIGURATION, RC, CAPACITY);
+        List<ByteArrayWrapper> stale = enroll(database, CAPACITY);
+        List<ByteArrayWrapper> current = enroll(database, CAPACITY);
+
+        stale.forEach(database::findClient);
+        for (int i = 0; i < FREQUENTLOOKUPS; i++) {
+            current.forEach(database::findClient);
+        }
+        long hits = database.getHits();
+        current.forEach(database::findClient);
+
+        assertEquals(hits + CAPACITY, database.getHits());
+        assertEquals(CAPACITY, database.getEvictions());
+    }
+
+    /**
+     * Tests that a client saved again is found with its new record, also if it was promoted before.
+     */
+    @Test
+    public void savedAgainRecordFound() {
+        TieredServersDatabase database = new TieredServersDatabase(new ServersDatabaseImple(), CONFIGURATION, RC, CAPACITY);
+        ByteArrayWrapper identity = new ByteArrayWrapper(RC, 11);
+        database.saveClient(identity, randomRecord());
+        assertTrue(database.findClient(identity).getPublicPolynomialNtt() != null);
+
+        ClientRecord record = randomRecord();
+        database.saveClient(identity, record);
+        ClientRecord found = database.findClient(identity);
+        assertEquals(record.getPublicSeedForA(), found.getPublicSeedForA());
+        assertEquals(record.getVerifierNtt().toByteArrayWrapper(), found.getVerifierNtt().toByteArrayWrapper());
+    }
+
+    /**
+     * Tests {@code NUMBEROFROUNDS}-times that a save of another client during the cold read of a lookup does not stop
+     * its promotion, while a save of the same client does, so that its stale record never enters the hot tier.
+     */
+    @Test
+    public void promotionVetoedOnlyBySaveOfSameClient() {
+        ServersDatabaseImple cold = new ServersDatabaseImple();
+        TieredServersDatabase[] tiered = new TieredServersDatabase[1];
+        ByteArrayWrapper[] savedDuringRead = new ByteArrayWrapper[1];
+        ClientRecord[] recordSavedDuringRead = new ClientRecord[1];
+        tiered[0] = new TieredServersDatabase(new ServersDatabase() {
+            @Override
+            public void saveClient(ByteArrayWrapper identity, ClientRecord clientRecord) {
+                cold.saveClient(identity, clientRecord);
+            }
+
+            @Override
+            public ClientRecord findClient(ByteArrayWrapper identity) {
+                ClientRecord clientRecord = cold.findClient(identity);
+                tiered[0].saveClient(savedDuringRead[0], recordSavedDuringRead[0]);  // saved after the read
+                return clientRecord;
+            }
+        }, CONFIGURATION, RC, NUMBEROFROUNDS);
+        TieredServersDatabase database = tiered[0];
+
+        for (int i = 0; i < NUMBEROFROUNDS; i++) {
+            ByteArrayWrapper identity = new ByteArrayWrapper(RC, 11);
+            database.saveClient(identity, randomRecord());
+            savedDuringRead[0] = new ByteArrayWrapper(RC, 11);
+            recordSavedDuringRead[0] = randomRecord();
+            database.findClient(identity);
+            assertEquals(i + 1, database.getPromotions());
+
+            ByteArrayWrapper other = new ByteArrayWrapper(RC, 11);
+            database.saveClient(other, randomRecord());
+            savedDuringRead[0] = other;
+            recordSavedDuringRead[0] = randomRecord();
+            database.findClient(other);
+            assertEquals(i + 1, database.getPromotions());
+            assertEquals(i + 1, database.size());
+        }
+    }
+}
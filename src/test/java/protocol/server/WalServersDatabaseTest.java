@@ -0,0 +1,140 @@
+package protocol.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import protocol.ByteArrayWrapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static protocol.server.ClientRecordFixtures.*;
+
+/**
+ * The {@code WalServersDatabaseTest} class tests that {@code WalServersDatabase}:
+ * <ul>
+ *     <li>recovers all records (in their latest version) after it is closed and opened again</li>
+ *     <li>commits concurrent enrollments with at most one force per enrollment</li>
+ *     <li>compacts logs into a snapshot and recovers from it</li>
+ *     <li>ignores a torn mutation at the end of a log, also one with a garbage length</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class WalServersDatabaseTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final long NOCOMPACTION = Long.MAX_VALUE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void saveAndRecover(Path directory, long compactionThreshold) throws IOException {
+        List<ByteArrayWrapper> identities = new ArrayList<>();
+        List<ClientRecord> records = new ArrayList<>();
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, compactionThreshold)) {
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                identities.add(new ByteArrayWrapper(RC, 11));
+                records.add(randomRecord());
+                database.saveClient(identities.get(i), records.get(i));
+            }
+            records.set(0, randomRecord());
+            database.saveClient(identities.get(0), records.get(0));
+        }
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, compactionThreshold)) {
+            assertEquals(NUMBEROFROUNDS, database.size());
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                assertSameRecord(records.get(i), database.findClient(identities.get(i)));
+            }
+            assertNull(database.findClient(new ByteArrayWrapper(RC, 11)));
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} records are recovered from the log.
+     */
+    @Test
+    public void recoveredFromLog() throws IOException {
+        saveAndRecover(folder.getRoot().toPath(), NOCOMPACTION);
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} records are recovered from the snapshot and the remaining log,
+     * and that compacted logs are deleted.
+     */
+    @Test
+    public void recoveredFromSnapshot() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        saveAndRecover(directory, 10_000);  // a few records per log generation
+        assertTrue(Files.exists(directory.resolve("snapshot.db")));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.filter(path -> path.getFileName().toString().startsWith("wal-")).count() < NUMBEROFROUNDS / 2);
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} concurrent enrollments are all durable and need at most one force each.
+     */
+    @Test
+    public void groupCommit() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<ByteArrayWrapper> identities = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, NOCOMPACTION)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ByteArrayWrapper identity = new ByteArrayWrapper(RC, 11);
+                ClientRecord clientRecord = randomRecord();
+                identities.add(identity);
+                futures.add(executor.submit(() -> database.saveClient(identity, clientRecord)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(database.getForces() <= NUMBEROFROUNDS);
+        } finally {
+            executor.shutdown();
+        }
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, NOCOMPACTION)) {
+            for (ByteArrayWrapper identity : identities) {
+                assertTrue(database.findClient(identity) != null);
+            }
+        }
+    }
+
+    /**
+     * Tests that a torn mutation at the end of the log is ignored and the preceding ones are recovered.
+     */
+    @Test
+    public void tornTailIgnored() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        ByteArrayWrapper identity = new ByteArrayWrapper(RC, 11);
+        ClientRecord clientRecord = randomRecord();
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, NOCOMPACTION)) {
+            database.saveClient(identity, clientRecord);
+        }
+        Files.write(directory.resolve("wal-0.log"), new byte[]{0, 0, 4, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, NOCOMPACTION)) {
+            assertEquals(1, database.size());
+            assertSameRecord(clientRecord, database.findClient(identity));
+        }
+        // a garbage length far beyond the end of the log must not be allocated
+        Files.write(directory.resolve("wal-1.log"), new byte[]{0x7f, -1, -1, -1, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (WalServersDatabase database = new WalServersDatabase(directory, CONFIGURATION, NOCOMPACTION)) {
+            assertEquals(1, database.size());
+            assertSameRecord(clientRecord, database.findClient(identity));
+        }
+    }
+}
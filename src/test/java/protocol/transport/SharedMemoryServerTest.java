@@ -0,0 +1,103 @@
+package protocol.transport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.client.ClientImple;
+import protocol.client.ClientsKnowledge;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+import protocol.server.ServerImple;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code SharedMemoryServerTest} class tests that {@code SharedMemoryServer} with {@code SharedMemoryRemoteServer}:
+ * <ul>
+ *     <li>lets a client enroll and log in with both wait strategies and refuses an unknown client</li>
+ *     <li>removes its file when closed and fails calls of the stub afterwards</li>
+ *     <li>is not attached to files not shared by a server</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+public class SharedMemoryServerTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+    private final RandomCustom rc = new RandomCustomImple(configuration);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests for both wait strategies that {@code NUMBEROFROUNDS} logins of one client succeed
+     * and that a client not enrolled is refused.
+     */
+    @Test
+    public void loginsSucceeded() throws IOException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            Path file = temporaryFolder.getRoot().toPath().resolve("auth-" + waitStrategy);
+            ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration);
+            try (SharedMemoryServer sharedMemoryServer = new SharedMemoryServer(server, file, waitStrategy);
+                 SharedMemoryRemoteServer remote = new SharedMemoryRemoteServer(sharedMemoryServer.getFile(), waitStrategy)) {
+                assertEquals(N, remote.getProtocolConfiguration().getN());
+                assertEquals(Q, remote.getProtocolConfiguration().getQ());
+
+                ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                client.enroll(ck);
+                for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                    assertTrue(client.login(ck).getLoginOK());
+                }
+                ClientsKnowledge unknown = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                assertFalse(new ClientImple(new RandomCustomImple(configuration), remote).login(unknown).getLoginOK());
+            }
+        }
+    }
+
+    /**
+     * Tests that closing the server removes its file and fails the stub with {@code UncheckedIOException}.
+     */
+    @Test
+    public void closedServerFails() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("auth");
+        ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration);
+        SharedMemoryServer sharedMemoryServer = new SharedMemoryServer(server, file, WaitStrategy.PARK);
+        try (SharedMemoryRemoteServer remote = new SharedMemoryRemoteServer(file, WaitStrategy.PARK)) {
+            sharedMemoryServer.close();
+            assertFalse(Files.exists(file));
+            ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+            assertThrows(UncheckedIOException.class, () -> client.enroll(ck));
+            assertThrows(UncheckedIOException.class, () -> client.login(ck));
+        }
+    }
+
+    /**
+     * Tests that the stub refuses a file not created by a server.
+     */
+    @Test
+    public void foreignFileRefused() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, new byte[4096]);
+        assertThrows(IOException.class, () -> new SharedMemoryRemoteServer(file, WaitStrategy.SPIN));
+    }
+}
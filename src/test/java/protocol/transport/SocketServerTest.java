@@ -0,0 +1,382 @@
+package protocol.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import protocol.ByteArrayWrapper;
+import protocol.ProtocolConfiguration;
+import protocol.ServersResponseScs;
+import protocol.client.ClientImple;
+import protocol.client.ClientsKnowledge;
+import protocol.client.LoginResponse;
+import protocol.polynomial.NttPolynomial;
+import protocol.random.RandomCustom;
+import protocol.random.RandomCustomImple;
+import protocol.server.Server;
+import protocol.server.ServerImple;
+import protocol.server.TestServerWrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code SocketServerTest} class tests over loopback that both {@code NioServer} and {@code VirtualThreadServer},
+ * with {@code RemoteServer}:
+ * <ul>
+ *     <li>hands the server's protocol configuration to the client</li>
+ *     <li>lets clients enroll and log in, also many of them concurrently</li>
+ *     <li>carries concurrent logins of many clients over one connection</li>
+ *     <li>serves asynchronous logins through the {@code AsyncServer} view of the stub</li>
+ *     <li>serves logins over a Unix domain socket and removes its file when closed</li>
+ *     <li>refuses login of an unknown client</li>
+ *     <li>closes a connection sending a malformed frame and keeps serving others</li>
+ *     <li>answers a frame of another wire version with {@code UNSUPPORTEDVERSION}</li>
+ *     <li>closes a connection whose request threw an {@code Error}</li>
+ *     <li>fails a request the server does not answer in time</li>
+ * </ul>
+ *
+ * @author Martin Zimka
+ */
+@RunWith(Parameterized.class)
+public class SocketServerTest {
+
+    // Number of rounds in tests.
+    private static final int NUMBEROFROUNDS = 111;
+    private static final int CONNECTIONS = 8;
+    private static final int MAXINFLIGHT = 3;
+    private static final long RESPONSETIMEOUTMILLIS = 200;
+
+    private static final int N = 256;
+    private static final BigInteger Q = BigInteger.valueOf(7681);
+    private static final int ETA = 3;
+
+    private final ProtocolConfiguration configuration = new ProtocolConfiguration(N, Q, ETA);
+    private final RandomCustom rc = new RandomCustomImple(configuration);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private final TransportFactory factory;
+    private Transport transport;
+
+    /**
+     * Running socket server, either {@code NioServer} or {@code VirtualThreadServer}.
+     */
+    interface Transport extends Closeable {
+        SocketAddress getAddress();
+    }
+
+    /**
+     * Starts a socket server serving {@code server} at {@code address} with {@code threads} threads.
+     */
+    interface TransportFactory {
+        Transport start(Server server, SocketAddress address, int threads) throws IOException;
+    }
+
+    public SocketServerTest(String name, TransportFactory factory) {
+        this.factory = factory;
+    }
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> transports() {
+        TransportFactory nio = (server, address, threads) -> {
+            NioServer nioServer = new NioServer(server, address, threads);
+            return transport(nioServer.getAddress(), nioServer::close);
+        };
+        TransportFactory virtualThread = (server, address, threads) -> {
+            VirtualThreadServer virtualThreadServer = new VirtualThreadServer(server, address, threads);
+            return transport(virtualThreadServer.getAddress(), virtualThreadServer::close);
+        };
+        return List.of(new Object[]{"NioServer", nio}, new Object[]{"VirtualThreadServer", virtualThread});
+    }
+
+    private static Transport transport(SocketAddress address, Closeable server) {
+        return new Transport() {
+            @Override
+            public SocketAddress getAddress() {
+                return address;
+            }
+
+            @Override
+            public void close() throws IOException {
+                server.close();
+            }
+        };
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration);
+        transport = factory.start(server, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        transport.close();
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} logins of one client over one connection succeed.
+     */
+    @Test
+    public void loginsOverNetworkSucceeded() throws IOException {
+        try (RemoteServer remote = new RemoteServer(transport.getAddress())) {
+            assertEquals(N, remote.getProtocolConfiguration().getN());
+            assertEquals(Q, remote.getProtocolConfiguration().getQ());
+            assertEquals(ETA, remote.getProtocolConfiguration().getEta());
+
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+            ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            client.enroll(ck);
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                assertTrue(client.login(ck).getLoginOK());
+            }
+            ClientsKnowledge unknown = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            assertFalse(new ClientImple(new RandomCustomImple(configuration), remote).login(unknown).getLoginOK());
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} logins of one client over a Unix domain socket succeed
+     * and that the socket file is removed when the server is closed.
+     */
+    @Test
+    public void unixDomainSocketLoginsSucceeded() throws IOException {
+        Path path = temporaryFolder.getRoot().toPath().resolve("auth.sock");
+        ServerImple server = new ServerImple(new RandomCustomImple(configuration), configuration);
+        try (Transport sidecar = factory.start(server, UnixDomainSocketAddress.of(path), 2)) {
+            assertTrue(Files.exists(path));
+            try (RemoteServer remote = new RemoteServer(sidecar.getAddress())) {
+                ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                client.enroll(ck);
+                for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                    assertTrue(client.login(ck).getLoginOK());
+                }
+            }
+        }
+        assertFalse(Files.exists(path));
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} clients enrolling and logging in over {@code CONNECTIONS} concurrent
+     * connections all succeed.
+     */
+    @Test
+    public void concurrentConnectionsSucceeded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONNECTIONS);
+        List<RemoteServer> remotes = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                remotes.add(new RemoteServer(transport.getAddress()));
+            }
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                RemoteServer remote = remotes.get(i % CONNECTIONS);
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                results.add(executor.submit(() -> {
+                    ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+                    client.enroll(ck);
+                    return client.login(ck).getLoginOK();
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+            for (RemoteServer remote : remotes) {
+                remote.close();
+            }
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} clients enrolling and logging in from {@code CONNECTIONS} threads over one
+     * connection, with at most {@code MAXINFLIGHT} requests in flight, all succeed.
+     */
+    @Test
+    public void multiplexedConnectionSucceeded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONNECTIONS);
+        try (RemoteServer remote = new RemoteServer(transport.getAddress(), MAXINFLIGHT)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                results.add(executor.submit(() -> {
+                    ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+                    client.enroll(ck);
+                    return client.login(ck).getLoginOK();
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that {@code NUMBEROFROUNDS} asynchronous logins of one client, started all at once through the stub
+     * through its {@code AsyncServer} view with at most {@code MAXINFLIGHT} requests in flight, all succeed.
+     */
+    @Test
+    public void asyncLoginsSucceeded() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(CONNECTIONS);
+        try (RemoteServer remote = new RemoteServer(transport.getAddress(), MAXINFLIGHT)) {
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote.async(), executor, MAXINFLIGHT);
+            ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            client.enroll(ck);
+            List<CompletableFuture<LoginResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBEROFROUNDS; i++) {
+                futures.add(client.loginAsync(ck));
+            }
+            for (CompletableFuture<LoginResponse> future : futures) {
+                assertTrue(future.join().getLoginOK());
+            }
+            ClientsKnowledge unknown = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            assertFalse(client.loginAsync(unknown).join().getLoginOK());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a connection sending an unknown request and one sending an oversized frame are closed,
+     * while the server keeps serving other connections.
+     */
+    @Test
+    public void malformedFrameClosesConnection() throws IOException {
+        for (ByteBuffer frame : List.of(ByteBuffer.allocate(10).putInt(6).put(MessageCodec.VERSION).putInt(1).put((byte) 99).flip(),
+                ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip())) {
+            try (SocketChannel channel = SocketChannel.open(transport.getAddress())) {
+                channel.write(frame);
+                assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+            }
+        }
+        try (RemoteServer remote = new RemoteServer(transport.getAddress())) {
+            assertEquals(N, remote.getProtocolConfiguration().getN());
+        }
+    }
+
+    /**
+     * Tests that a frame of another wire version is answered with {@code UNSUPPORTEDVERSION}
+     * and the connection stays usable.
+     */
+    @Test
+    public void unsupportedVersionAnswered() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(transport.getAddress())) {
+            for (int i = 0; i < 2; i++) {
+                channel.write(ByteBuffer.allocate(10).putInt(6).put((byte) (MessageCodec.VERSION + 1)).putInt(7)
+                        .put(MessageCodec.CONFIGURATION).flip());
+                ByteBuffer response = ByteBuffer.allocate(10);
+                while (response.hasRemaining()) {
+                    assertTrue(channel.read(response) >= 0);
+                }
+                assertEquals(MessageCodec.HEADERSIZE, response.getInt(0));
+                assertEquals(MessageCodec.VERSION, response.get(4));
+                assertEquals(0, response.getInt(5));
+                assertEquals(MessageCodec.UNSUPPORTEDVERSION, response.get(9));
+            }
+        }
+    }
+
+    /**
+     * Tests that a request whose handling throws an {@code Error} closes its connection, so the stub fails
+     * with {@code UncheckedIOException} instead of waiting, also after more such requests than {@code MAXINFLIGHT},
+     * and that the server keeps serving new connections.
+     */
+    @Test
+    public void errorClosesConnection() throws IOException {
+        Server failing = new TestServerWrapper(new ServerImple(new RandomCustomImple(configuration), configuration)) {
+            @Override
+            public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+                throw new AssertionError("Login failed");
+            }
+        };
+        try (Transport failingTransport = factory.start(failing, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+            for (int i = 0; i <= MAXINFLIGHT; i++) {
+                try (RemoteServer remote = new RemoteServer(failingTransport.getAddress(), 1)) {
+                    ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+                    ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+                    client.enroll(ck);
+                    UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> client.login(ck));
+                    assertFalse(e.getCause() instanceof SocketTimeoutException);  // closed, not timed out
+                }
+            }
+            try (RemoteServer remote = new RemoteServer(failingTransport.getAddress())) {
+                assertEquals(N, remote.getProtocolConfiguration().getN());
+            }
+        }
+    }
+
+    /**
+     * Tests that a login to a server which does not answer fails with {@code UncheckedIOException} caused by
+     * {@code SocketTimeoutException} once the response timeout passed, instead of waiting forever.
+     */
+    @Test
+    public void unansweredRequestTimesOut() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        Server stuck = new TestServerWrapper(new ServerImple(new RandomCustomImple(configuration), configuration)) {
+            @Override
+            public ServersResponseScs computeSharedSecret(ByteArrayWrapper I, NttPolynomial piNtt) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.computeSharedSecret(I, piNtt);
+            }
+        };
+        try (Transport stuckTransport = factory.start(stuck, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+             RemoteServer remote = new RemoteServer(stuckTransport.getAddress(), MAXINFLIGHT, RESPONSETIMEOUTMILLIS)) {
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+            ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            client.enroll(ck);
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> client.login(ck));
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        } finally {
+            released.countDown();
+        }
+    }
+
+    /**
+     * Tests that a stub of a closed server fails with {@code UncheckedIOException}.
+     */
+    @Test
+    public void closedServerFails() throws IOException {
+        try (RemoteServer remote = new RemoteServer(transport.getAddress())) {
+            transport.close();
+            ClientsKnowledge ck = new ClientsKnowledge(new ByteArrayWrapper(rc, 11), new ByteArrayWrapper(rc, 11));
+            ClientImple client = new ClientImple(new RandomCustomImple(configuration), remote);
+            assertThrows(UncheckedIOException.class, () -> client.enroll(ck));
+        }
+    }
+}